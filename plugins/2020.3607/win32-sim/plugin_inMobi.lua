@@ -27,10 +27,26 @@ function lib.load()
     showWarning("inMobi.load()")
 end
 
+function lib.loadMany()
+    showWarning("inMobi.loadMany()")
+end
+
+function lib.loadGroup()
+    showWarning("inMobi.loadGroup()")
+end
+
 function lib.isLoaded()
     showWarning("inMobi.isLoaded()")
 end
 
+function lib.canShow()
+    showWarning("inMobi.canShow()")
+end
+
+function lib.getState()
+    showWarning("inMobi.getState()")
+end
+
 function lib.show()
     showWarning("inMobi.show()")
 end
@@ -43,6 +59,14 @@ function lib.setUserDetails()
     showWarning("inMobi.setUserDetails()")
 end
 
+function lib.getEventBatchStats()
+    showWarning("inMobi.getEventBatchStats()")
+end
+
+function lib.getStats()
+    showWarning("inMobi.getStats()")
+end
+
 -------------------------------------------------------------------------------
 -- END
 -------------------------------------------------------------------------------
@@ -0,0 +1,86 @@
+//
+//  Activity.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package android.app;
+
+import java.io.File;
+import java.util.ArrayList;
+
+import android.content.ComponentCallbacks;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Resources;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.DisplayMetrics;
+
+// Fake of an activity, whose UI thread is the main looper
+public class Activity extends Context
+{
+  private final File fFilesDir;
+  private final Resources fResources;
+  private final Handler fHandler = new Handler(Looper.getMainLooper());
+  private final ArrayList<ComponentCallbacks> fCallbacks = new ArrayList<>();
+
+  public Activity(File filesDir, float density)
+  {
+    final DisplayMetrics metrics = new DisplayMetrics();
+    metrics.density = density;
+    fFilesDir = filesDir;
+    fResources = new Resources(metrics);
+  }
+
+  @Override
+  public Context getApplicationContext()
+  {
+    return this;
+  }
+
+  @Override
+  public Resources getResources()
+  {
+    return fResources;
+  }
+
+  @Override
+  public File getFilesDir()
+  {
+    return fFilesDir;
+  }
+
+  @Override
+  public void registerComponentCallbacks(ComponentCallbacks callback)
+  {
+    fCallbacks.add(callback);
+  }
+
+  @Override
+  public void unregisterComponentCallbacks(ComponentCallbacks callback)
+  {
+    fCallbacks.remove(callback);
+  }
+
+  // Always posted, as if called from another thread
+  public final void runOnUiThread(Runnable action)
+  {
+    fHandler.post(action);
+  }
+
+  // Tell the registered callbacks that memory is low
+  public void trimMemory(int level)
+  {
+    for (ComponentCallbacks callback : new ArrayList<>(fCallbacks))
+    {
+      if (callback instanceof ComponentCallbacks2)
+      {
+        ((ComponentCallbacks2)callback).onTrimMemory(level);
+      }
+    }
+  }
+}
@@ -0,0 +1,19 @@
+//
+//  ComponentCallbacks.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package android.content;
+
+import android.content.res.Configuration;
+
+// Fake of the system callbacks a component can register for
+public interface ComponentCallbacks
+{
+  void onConfigurationChanged(Configuration newConfig);
+  void onLowMemory();
+}
@@ -0,0 +1,24 @@
+//
+//  Context.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package android.content;
+
+import java.io.File;
+
+import android.content.res.Resources;
+
+// Fake of an Android context
+public abstract class Context
+{
+  public abstract Context getApplicationContext();
+  public abstract Resources getResources();
+  public abstract File getFilesDir();
+  public abstract void registerComponentCallbacks(ComponentCallbacks callback);
+  public abstract void unregisterComponentCallbacks(ComponentCallbacks callback);
+}
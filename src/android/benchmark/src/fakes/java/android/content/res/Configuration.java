@@ -0,0 +1,15 @@
+//
+//  Configuration.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package android.content.res;
+
+// Fake of a device configuration
+public class Configuration
+{
+}
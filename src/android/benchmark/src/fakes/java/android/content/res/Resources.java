@@ -0,0 +1,28 @@
+//
+//  Resources.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package android.content.res;
+
+import android.util.DisplayMetrics;
+
+// Fake of an app's resources, only the display metrics
+public class Resources
+{
+  private final DisplayMetrics fDisplayMetrics;
+
+  public Resources(DisplayMetrics displayMetrics)
+  {
+    fDisplayMetrics = displayMetrics;
+  }
+
+  public DisplayMetrics getDisplayMetrics()
+  {
+    return fDisplayMetrics;
+  }
+}
@@ -0,0 +1,63 @@
+//
+//  Handler.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package android.os;
+
+// Fake of a handler posting to a looper's queue
+public class Handler
+{
+  private final Looper fLooper;
+
+  public Handler(Looper looper)
+  {
+    fLooper = looper;
+  }
+
+  public final Looper getLooper()
+  {
+    return fLooper;
+  }
+
+  public final boolean post(Runnable r)
+  {
+    return postAtTime(r, null, SystemClock.uptimeMillis());
+  }
+
+  public final boolean postDelayed(Runnable r, long delayMillis)
+  {
+    return postAtTime(r, null, SystemClock.uptimeMillis() + Math.max(0, delayMillis));
+  }
+
+  public final boolean postAtTime(Runnable r, long uptimeMillis)
+  {
+    return postAtTime(r, null, uptimeMillis);
+  }
+
+  public final boolean postAtTime(Runnable r, Object token, long uptimeMillis)
+  {
+    fLooper.getQueue().enqueue(this, r, token, uptimeMillis);
+    return true;
+  }
+
+  public final void removeCallbacks(Runnable r)
+  {
+    fLooper.getQueue().remove(this, r, null);
+  }
+
+  public final void removeCallbacks(Runnable r, Object token)
+  {
+    fLooper.getQueue().remove(this, r, token);
+  }
+
+  // A null token removes everything this handler posted
+  public final void removeCallbacksAndMessages(Object token)
+  {
+    fLooper.getQueue().remove(this, null, token);
+  }
+}
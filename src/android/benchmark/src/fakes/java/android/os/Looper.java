@@ -0,0 +1,49 @@
+//
+//  Looper.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package android.os;
+
+// Fake of the main looper, its queue only runs when asked to (see MessageQueue.runUntilIdle())
+public final class Looper
+{
+  private static final Looper sMainLooper = new Looper();
+
+  private final MessageQueue fQueue = new MessageQueue();
+  private final Thread fThread = Thread.currentThread();
+
+  private Looper()
+  {
+  }
+
+  public static Looper getMainLooper()
+  {
+    return sMainLooper;
+  }
+
+  // Every thread plays the main thread
+  public static Looper myLooper()
+  {
+    return sMainLooper;
+  }
+
+  public static MessageQueue myQueue()
+  {
+    return sMainLooper.fQueue;
+  }
+
+  public MessageQueue getQueue()
+  {
+    return fQueue;
+  }
+
+  public Thread getThread()
+  {
+    return fThread;
+  }
+}
@@ -0,0 +1,230 @@
+//
+//  MessageQueue.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package android.os;
+
+import java.util.ArrayList;
+
+/**
+ * Fake of a looper's message queue.
+ * <p>
+ * Messages run in time order, and in the order they were posted when due at the same time, but only
+ * when a test or benchmark runs them: {@link #runUntilIdle()} runs everything that is due, then the
+ * idle handlers, and {@link #advanceBy(long)} moves the clock forward running messages as they fall due.
+ * Messages are recycled, so posting doesn't allocate in steady state.
+ */
+public final class MessageQueue
+{
+  public interface IdleHandler
+  {
+    boolean queueIdle();
+  }
+
+  private static final class Message
+  {
+    Handler handler;
+    Runnable callback;
+    Object token;
+    long when;
+    Message next;
+  }
+
+  // Pending messages, earliest first
+  private Message fMessages;
+  private Message fFree;
+  private int fCount;
+  private final ArrayList<IdleHandler> fIdleHandlers = new ArrayList<>();
+  private final ArrayList<IdleHandler> fRunningIdleHandlers = new ArrayList<>();
+
+  MessageQueue()
+  {
+  }
+
+  synchronized void enqueue(Handler handler, Runnable callback, Object token, long when)
+  {
+    Message message = fFree;
+    if (message != null)
+    {
+      fFree = message.next;
+    }
+    else
+    {
+      message = new Message();
+    }
+    message.handler = handler;
+    message.callback = callback;
+    message.token = token;
+    message.when = when;
+
+    // After every message due at the same time or earlier
+    Message previous = null;
+    Message current = fMessages;
+    while (current != null && current.when <= when)
+    {
+      previous = current;
+      current = current.next;
+    }
+    message.next = current;
+    if (previous == null)
+    {
+      fMessages = message;
+    }
+    else
+    {
+      previous.next = message;
+    }
+    fCount++;
+  }
+
+  // Remove the handler's messages, a null callback or token matches any
+  synchronized void remove(Handler handler, Runnable callback, Object token)
+  {
+    Message previous = null;
+    Message current = fMessages;
+    while (current != null)
+    {
+      final Message next = current.next;
+      if (current.handler == handler && (callback == null || current.callback == callback) && (token == null || current.token == token))
+      {
+        if (previous == null)
+        {
+          fMessages = next;
+        }
+        else
+        {
+          previous.next = next;
+        }
+        recycle(current);
+      }
+      else
+      {
+        previous = current;
+      }
+      current = next;
+    }
+  }
+
+  private void recycle(Message message)
+  {
+    message.handler = null;
+    message.callback = null;
+    message.token = null;
+    message.next = fFree;
+    fFree = message;
+    fCount--;
+  }
+
+  public void addIdleHandler(IdleHandler handler)
+  {
+    synchronized (this)
+    {
+      fIdleHandlers.add(handler);
+    }
+  }
+
+  public void removeIdleHandler(IdleHandler handler)
+  {
+    synchronized (this)
+    {
+      fIdleHandlers.remove(handler);
+    }
+  }
+
+  // The number of pending messages
+  public synchronized int size()
+  {
+    return fCount;
+  }
+
+  // When the next message is due, Long.MAX_VALUE if there is none
+  public synchronized long nextWhen()
+  {
+    return fMessages != null ? fMessages.when : Long.MAX_VALUE;
+  }
+
+  // Drop every pending message and idle handler
+  public synchronized void clear()
+  {
+    while (fMessages != null)
+    {
+      final Message next = fMessages.next;
+      recycle(fMessages);
+      fMessages = next;
+    }
+    fIdleHandlers.clear();
+  }
+
+  // Run the next message if it is due, returns false if none is
+  public boolean runNext()
+  {
+    final Runnable callback;
+    synchronized (this)
+    {
+      final Message message = fMessages;
+      if (message == null || message.when > SystemClock.uptimeMillis())
+      {
+        return false;
+      }
+      fMessages = message.next;
+      callback = message.callback;
+      recycle(message);
+    }
+    callback.run();
+    return true;
+  }
+
+  // Run every message that is due, then the idle handlers, until nothing more is due; returns how many messages ran
+  public int runUntilIdle()
+  {
+    int count = 0;
+    while (true)
+    {
+      while (runNext())
+      {
+        count++;
+      }
+
+      synchronized (this)
+      {
+        fRunningIdleHandlers.addAll(fIdleHandlers);
+      }
+      for (IdleHandler handler : fRunningIdleHandlers)
+      {
+        if (!handler.queueIdle())
+        {
+          removeIdleHandler(handler);
+        }
+      }
+      fRunningIdleHandlers.clear();
+
+      if (nextWhen() > SystemClock.uptimeMillis())
+      {
+        return count;
+      }
+    }
+  }
+
+  // Move the clock forward, running messages as they fall due; returns how many messages ran
+  public int advanceBy(long millis)
+  {
+    final long until = SystemClock.uptimeMillis() + millis;
+    int count = runUntilIdle();
+    long next;
+    while ((next = nextWhen()) <= until)
+    {
+      if (next > SystemClock.uptimeMillis())
+      {
+        SystemClock.setUptimeMillis(next);
+      }
+      count += runUntilIdle();
+    }
+    SystemClock.setUptimeMillis(until);
+    return count + runUntilIdle();
+  }
+}
@@ -0,0 +1,40 @@
+//
+//  SystemClock.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package android.os;
+
+// Fake of the system clock: time only moves when a test or benchmark moves it
+public final class SystemClock
+{
+  private static volatile long sUptimeMillis = 0;
+
+  private SystemClock()
+  {
+  }
+
+  public static long uptimeMillis()
+  {
+    return sUptimeMillis;
+  }
+
+  public static long elapsedRealtime()
+  {
+    return sUptimeMillis;
+  }
+
+  public static long elapsedRealtimeNanos()
+  {
+    return sUptimeMillis * 1000000;
+  }
+
+  public static void setUptimeMillis(long uptimeMillis)
+  {
+    sUptimeMillis = uptimeMillis;
+  }
+}
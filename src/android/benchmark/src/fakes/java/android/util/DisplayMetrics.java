@@ -0,0 +1,16 @@
+//
+//  DisplayMetrics.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package android.util;
+
+// Fake of the display metrics
+public class DisplayMetrics
+{
+  public float density = 1;
+}
@@ -0,0 +1,49 @@
+//
+//  Log.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package android.util;
+
+// Fake of the Android log, printed to stderr when the android.log system property is true
+public final class Log
+{
+  private static final boolean kPrint = Boolean.getBoolean("android.log");
+
+  private Log()
+  {
+  }
+
+  private static int print(String level, String tag, String message)
+  {
+    if (kPrint)
+    {
+      System.err.println(level + "/" + tag + ": " + message);
+    }
+    return 0;
+  }
+
+  public static int d(String tag, String message)
+  {
+    return print("D", tag, message);
+  }
+
+  public static int i(String tag, String message)
+  {
+    return print("I", tag, message);
+  }
+
+  public static int w(String tag, String message)
+  {
+    return print("W", tag, message);
+  }
+
+  public static int e(String tag, String message)
+  {
+    return print("E", tag, message);
+  }
+}
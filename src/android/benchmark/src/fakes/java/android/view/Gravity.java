@@ -0,0 +1,20 @@
+//
+//  Gravity.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package android.view;
+
+// Fake of the gravity constants
+public class Gravity
+{
+  public static final int CENTER_HORIZONTAL = 1;
+  public static final int CENTER_VERTICAL = 16;
+  public static final int CENTER = 17;
+  public static final int TOP = 48;
+  public static final int BOTTOM = 80;
+}
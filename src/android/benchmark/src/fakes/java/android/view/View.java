@@ -0,0 +1,96 @@
+//
+//  View.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package android.view;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+// Fake of a view: it keeps its visibility, layout and parent, and draws nothing
+public class View
+{
+  public static final int VISIBLE = 0;
+  public static final int INVISIBLE = 4;
+  public static final int GONE = 8;
+
+  private static final Handler sHandler = new Handler(Looper.getMainLooper());
+
+  private final Context fContext;
+  private int fVisibility = VISIBLE;
+  private ViewGroup.LayoutParams fLayoutParams;
+  ViewParent fParent;
+  private int fLayoutRequests;
+
+  public View(Context context)
+  {
+    fContext = context;
+  }
+
+  public Context getContext()
+  {
+    return fContext;
+  }
+
+  public void setVisibility(int visibility)
+  {
+    fVisibility = visibility;
+  }
+
+  public int getVisibility()
+  {
+    return fVisibility;
+  }
+
+  public void setLayoutParams(ViewGroup.LayoutParams params)
+  {
+    fLayoutParams = params;
+    requestLayout();
+  }
+
+  public ViewGroup.LayoutParams getLayoutParams()
+  {
+    return fLayoutParams;
+  }
+
+  public ViewParent getParent()
+  {
+    return fParent;
+  }
+
+  // Visible and attached to visible parents
+  public boolean isShown()
+  {
+    if (fVisibility != VISIBLE)
+    {
+      return false;
+    }
+    return fParent instanceof View && ((View)fParent).isShown();
+  }
+
+  public void requestLayout()
+  {
+    fLayoutRequests++;
+  }
+
+  // How many times the view asked to be laid out again
+  public int getLayoutRequestCount()
+  {
+    return fLayoutRequests;
+  }
+
+  public boolean post(Runnable action)
+  {
+    return sHandler.post(action);
+  }
+
+  public void setBackgroundColor(int color)
+  {
+  }
+}
@@ -0,0 +1,83 @@
+//
+//  ViewGroup.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package android.view;
+
+import java.util.ArrayList;
+
+import android.content.Context;
+
+// Fake of a view group, it only keeps its children
+public class ViewGroup extends View implements ViewParent
+{
+  private final ArrayList<View> fChildren = new ArrayList<>();
+
+  public ViewGroup(Context context)
+  {
+    super(context);
+  }
+
+  public void addView(View child)
+  {
+    if (child.fParent != null)
+    {
+      throw new IllegalStateException("The specified child already has a parent");
+    }
+    child.fParent = this;
+    fChildren.add(child);
+    requestLayout();
+  }
+
+  public void removeView(View child)
+  {
+    if (fChildren.remove(child))
+    {
+      child.fParent = null;
+      requestLayout();
+    }
+  }
+
+  public int getChildCount()
+  {
+    return fChildren.size();
+  }
+
+  public View getChildAt(int index)
+  {
+    return fChildren.get(index);
+  }
+
+  public static class LayoutParams
+  {
+    public static final int MATCH_PARENT = -1;
+    public static final int WRAP_CONTENT = -2;
+
+    public int width;
+    public int height;
+
+    public LayoutParams(int width, int height)
+    {
+      this.width = width;
+      this.height = height;
+    }
+  }
+
+  public static class MarginLayoutParams extends LayoutParams
+  {
+    public int leftMargin;
+    public int topMargin;
+    public int rightMargin;
+    public int bottomMargin;
+
+    public MarginLayoutParams(int width, int height)
+    {
+      super(width, height);
+    }
+  }
+}
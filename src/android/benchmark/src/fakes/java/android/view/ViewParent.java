@@ -0,0 +1,15 @@
+//
+//  ViewParent.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package android.view;
+
+// Fake of a view's parent
+public interface ViewParent
+{
+}
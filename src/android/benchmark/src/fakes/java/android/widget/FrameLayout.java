@@ -0,0 +1,32 @@
+//
+//  FrameLayout.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package android.widget;
+
+import android.content.Context;
+import android.view.ViewGroup;
+
+// Fake of a frame layout
+public class FrameLayout extends ViewGroup
+{
+  public FrameLayout(Context context)
+  {
+    super(context);
+  }
+
+  public static class LayoutParams extends ViewGroup.MarginLayoutParams
+  {
+    public int gravity = -1;
+
+    public LayoutParams(int width, int height)
+    {
+      super(width, height);
+    }
+  }
+}
@@ -0,0 +1,32 @@
+//
+//  CoronaActivity.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package com.ansca.corona;
+
+import java.io.File;
+
+import android.app.Activity;
+import android.widget.FrameLayout;
+
+// Fake of the Corona activity, with the overlay that plugins add their views to
+public class CoronaActivity extends Activity
+{
+  private final FrameLayout fOverlay;
+
+  public CoronaActivity(File filesDir, float density)
+  {
+    super(filesDir, density);
+    fOverlay = new FrameLayout(this);
+  }
+
+  public FrameLayout getOverlayView()
+  {
+    return fOverlay;
+  }
+}
@@ -0,0 +1,34 @@
+//
+//  CoronaBeacon.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package com.ansca.corona;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.naef.jnlua.JavaFunction;
+
+// Fake of Corona's beacon endpoint, it only counts requests
+public class CoronaBeacon
+{
+  public static final String REQUEST = "request";
+  public static final String IMPRESSION = "impression";
+
+  private static final AtomicInteger sSent = new AtomicInteger();
+
+  public static void sendDeviceDataToBeacon(CoronaRuntimeTaskDispatcher dispatcher, String pluginName, String pluginVersion, String eventType, String placementId, JavaFunction listener)
+  {
+    sSent.incrementAndGet();
+  }
+
+  // How many beacon requests have been sent
+  public static int sentCount()
+  {
+    return sSent.get();
+  }
+}
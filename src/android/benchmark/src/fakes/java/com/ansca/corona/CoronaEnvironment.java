@@ -0,0 +1,53 @@
+//
+//  CoronaEnvironment.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package com.ansca.corona;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import android.content.Context;
+
+// Fake of the Corona environment: the current activity and the runtime listeners
+public class CoronaEnvironment
+{
+  private static volatile CoronaActivity sActivity;
+  private static final ArrayList<CoronaRuntimeListener> sListeners = new ArrayList<>();
+
+  public static CoronaActivity getCoronaActivity()
+  {
+    return sActivity;
+  }
+
+  public static void setCoronaActivity(CoronaActivity activity)
+  {
+    sActivity = activity;
+  }
+
+  public static Context getApplicationContext()
+  {
+    final CoronaActivity activity = sActivity;
+    return activity != null ? activity.getApplicationContext() : null;
+  }
+
+  public static synchronized void addRuntimeListener(CoronaRuntimeListener listener)
+  {
+    sListeners.add(listener);
+  }
+
+  public static synchronized void removeRuntimeListener(CoronaRuntimeListener listener)
+  {
+    sListeners.remove(listener);
+  }
+
+  public static synchronized List<CoronaRuntimeListener> getRuntimeListeners()
+  {
+    return new ArrayList<>(sListeners);
+  }
+}
@@ -0,0 +1,115 @@
+//
+//  CoronaLua.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package com.ansca.corona;
+
+import java.util.Map;
+
+import com.naef.jnlua.LuaState;
+import com.naef.jnlua.LuaType;
+
+/**
+ * Fake of Corona's Lua helpers.
+ * <p>
+ * Everything is done with {@link LuaState} calls, as the real helpers are, so a state that discards
+ * what is written also makes these allocation-free.
+ */
+public class CoronaLua
+{
+  public static final int REFNIL = LuaState.REFNIL;
+
+  // A function, or a table with a function field named after the event
+  public static boolean isListener(LuaState L, int index, String eventName)
+  {
+    final LuaType type = L.type(index);
+    if (type == LuaType.FUNCTION)
+    {
+      return true;
+    }
+    if (type != LuaType.TABLE)
+    {
+      return false;
+    }
+    L.getField(index, eventName);
+    final boolean isListener = L.type(-1) == LuaType.FUNCTION;
+    L.pop(1);
+    return isListener;
+  }
+
+  public static int newRef(LuaState L, int index)
+  {
+    L.pushValue(index);
+    return L.ref(LuaState.REGISTRYINDEX);
+  }
+
+  public static void deleteRef(LuaState L, int ref)
+  {
+    L.unref(LuaState.REGISTRYINDEX, ref);
+  }
+
+  // Push an event table with its name set
+  public static void newEvent(LuaState L, String eventName)
+  {
+    L.newTable();
+    L.pushString(eventName);
+    L.setField(-2, CoronaLuaEvent.NAME_KEY);
+  }
+
+  // Push a Java value: booleans, numbers, strings and maps of them
+  public static void pushValue(LuaState L, Object value)
+  {
+    if (value instanceof Boolean)
+    {
+      L.pushBoolean((Boolean)value);
+    }
+    else if (value instanceof Number)
+    {
+      L.pushNumber(((Number)value).doubleValue());
+    }
+    else if (value instanceof String)
+    {
+      L.pushString((String)value);
+    }
+    else if (value instanceof Map)
+    {
+      final Map<?, ?> map = (Map<?, ?>)value;
+      L.newTable(0, map.size());
+      for (Map.Entry<?, ?> entry : map.entrySet())
+      {
+        pushValue(L, entry.getKey());
+        pushValue(L, entry.getValue());
+        L.rawSet(-3);
+      }
+    }
+    else
+    {
+      L.pushNil();
+    }
+  }
+
+  // Call the listener with the event at the top of the stack, which is popped
+  public static void dispatchEvent(LuaState L, int listenerRef, int resultCount)
+  {
+    L.rawGet(LuaState.REGISTRYINDEX, listenerRef);
+    if (L.type(-1) == LuaType.TABLE)
+    {
+      // listener:eventName(event)
+      L.getField(-2, CoronaLuaEvent.NAME_KEY);
+      L.rawGet(-2);
+      L.insert(-3);
+      L.insert(-2);
+      L.call(2, resultCount);
+    }
+    else
+    {
+      L.insert(-2);
+      L.call(1, resultCount);
+    }
+  }
+}
@@ -0,0 +1,85 @@
+//
+//  CoronaRuntime.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package com.ansca.corona;
+
+import java.util.ArrayDeque;
+
+import com.naef.jnlua.LuaState;
+
+/**
+ * A fake Corona runtime.
+ * <p>
+ * Tasks sent to the Lua thread wait in a queue until {@link #runTasks()} is called, on whichever
+ * thread plays the Lua thread. The queue doesn't allocate once it has grown to the largest burst.
+ */
+public class CoronaRuntime
+{
+  private volatile LuaState fLuaState;
+  private final ArrayDeque<CoronaRuntimeTask> fTasks = new ArrayDeque<>();
+  private boolean fRunning = true;
+
+  public CoronaRuntime(LuaState L)
+  {
+    fLuaState = L;
+  }
+
+  public LuaState getLuaState()
+  {
+    return fLuaState;
+  }
+
+  // Replace the Lua state tasks are run with (eg. by one that discards what they write)
+  public void setLuaState(LuaState L)
+  {
+    fLuaState = L;
+  }
+
+  public synchronized boolean isRunning()
+  {
+    return fRunning;
+  }
+
+  // Stop taking tasks, as the runtime does when it exits
+  public synchronized void stop()
+  {
+    fRunning = false;
+    fTasks.clear();
+  }
+
+  synchronized boolean post(CoronaRuntimeTask task)
+  {
+    if (!fRunning)
+    {
+      return false;
+    }
+    fTasks.addLast(task);
+    return true;
+  }
+
+  // Run the queued tasks, including ones queued while running, returns how many ran
+  public int runTasks()
+  {
+    int count = 0;
+    while (true)
+    {
+      final CoronaRuntimeTask task;
+      synchronized (this)
+      {
+        task = fTasks.pollFirst();
+      }
+      if (task == null)
+      {
+        return count;
+      }
+      task.executeUsing(this);
+      count++;
+    }
+  }
+}
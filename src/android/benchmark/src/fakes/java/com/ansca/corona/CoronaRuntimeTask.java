@@ -0,0 +1,16 @@
+//
+//  CoronaRuntimeTask.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package com.ansca.corona;
+
+// Fake of a task run on the Lua thread
+public interface CoronaRuntimeTask
+{
+  void executeUsing(CoronaRuntime runtime);
+}
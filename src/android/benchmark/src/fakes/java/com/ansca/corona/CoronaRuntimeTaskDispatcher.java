@@ -0,0 +1,31 @@
+//
+//  CoronaRuntimeTaskDispatcher.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package com.ansca.corona;
+
+// Fake of the dispatcher that sends tasks to the Lua thread, see CoronaRuntime.runTasks()
+public class CoronaRuntimeTaskDispatcher
+{
+  private final CoronaRuntime fRuntime;
+
+  public CoronaRuntimeTaskDispatcher(CoronaRuntime runtime)
+  {
+    fRuntime = runtime;
+  }
+
+  public boolean isRuntimeAvailable()
+  {
+    return fRuntime.isRunning();
+  }
+
+  public void send(CoronaRuntimeTask task)
+  {
+    fRuntime.post(task);
+  }
+}
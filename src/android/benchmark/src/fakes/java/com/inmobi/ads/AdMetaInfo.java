@@ -0,0 +1,40 @@
+//
+//  AdMetaInfo.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package com.inmobi.ads;
+
+import org.json.JSONObject;
+
+// Fake of a loaded ad's metadata
+public class AdMetaInfo
+{
+  private final double fBid;
+  private final String fCreativeId;
+
+  public AdMetaInfo(double bid, String creativeId)
+  {
+    fBid = bid;
+    fCreativeId = creativeId;
+  }
+
+  public double getBid()
+  {
+    return fBid;
+  }
+
+  public String getCreativeID()
+  {
+    return fCreativeId;
+  }
+
+  public JSONObject getBidInfo()
+  {
+    return new JSONObject();
+  }
+}
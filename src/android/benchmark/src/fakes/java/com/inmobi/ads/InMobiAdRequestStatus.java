@@ -0,0 +1,46 @@
+//
+//  InMobiAdRequestStatus.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package com.inmobi.ads;
+
+// Fake of a request status
+public class InMobiAdRequestStatus
+{
+  public enum StatusCode
+  {
+    NO_ERROR, NETWORK_UNREACHABLE, NO_FILL, REQUEST_INVALID, REQUEST_PENDING, REQUEST_TIMED_OUT, INTERNAL_ERROR, SERVER_ERROR,
+    AD_ACTIVE, EARLY_REFRESH_REQUEST, AD_NO_LONGER_AVAILABLE, MISSING_REQUIRED_DEPENDENCIES, REPETITIVE_LOAD,
+    GDPR_COMPLIANCE_ENFORCED, MONETIZATION_DISABLED, CALLED_FROM_WRONG_THREAD, CONFIGURATION_ERROR, LOW_MEMORY
+  }
+
+  private final StatusCode fStatusCode;
+  private String fMessage;
+
+  public InMobiAdRequestStatus(StatusCode statusCode)
+  {
+    fStatusCode = statusCode;
+    fMessage = statusCode.name();
+  }
+
+  public StatusCode getStatusCode()
+  {
+    return fStatusCode;
+  }
+
+  public String getMessage()
+  {
+    return fMessage;
+  }
+
+  public InMobiAdRequestStatus setCustomMessage(String message)
+  {
+    fMessage = message;
+    return this;
+  }
+}
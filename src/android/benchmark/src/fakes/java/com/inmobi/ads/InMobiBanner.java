@@ -0,0 +1,77 @@
+//
+//  InMobiBanner.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package com.inmobi.ads;
+
+import java.util.Map;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.widget.FrameLayout;
+
+import com.inmobi.ads.listeners.BannerAdEventListener;
+
+// Fake of an InMobi banner, every load fills on the next pass of the main looper
+public class InMobiBanner extends FrameLayout
+{
+  private final Handler fHandler = new Handler(Looper.getMainLooper());
+  private final long fPlacementId;
+  private BannerAdEventListener fListener;
+  private boolean fDestroyed;
+
+  public InMobiBanner(Context context, long placementId)
+  {
+    super(context);
+    fPlacementId = placementId;
+  }
+
+  public void setListener(BannerAdEventListener listener)
+  {
+    fListener = listener;
+  }
+
+  public void setEnableAutoRefresh(boolean enabled)
+  {
+  }
+
+  public void setRefreshInterval(int intervalSeconds)
+  {
+  }
+
+  public void setExtras(Map<String, String> extras)
+  {
+  }
+
+  public void load()
+  {
+    fHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        if (!fDestroyed && fListener != null) {
+          fListener.onAdLoadSucceeded(InMobiBanner.this, new AdMetaInfo(0.5, "banner-" + fPlacementId));
+        }
+      }
+    });
+  }
+
+  public void pause()
+  {
+  }
+
+  public void resume()
+  {
+  }
+
+  public void destroy()
+  {
+    fDestroyed = true;
+    fHandler.removeCallbacksAndMessages(null);
+  }
+}
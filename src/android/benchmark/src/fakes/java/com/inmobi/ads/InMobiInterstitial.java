@@ -0,0 +1,75 @@
+//
+//  InMobiInterstitial.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package com.inmobi.ads;
+
+import java.util.Map;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.inmobi.ads.listeners.InterstitialAdEventListener;
+
+// Fake of an InMobi interstitial, every load fills on the next pass of the main looper and stays up until dismissed
+public class InMobiInterstitial
+{
+  private final Handler fHandler = new Handler(Looper.getMainLooper());
+  private final long fPlacementId;
+  private final InterstitialAdEventListener fListener;
+  private boolean fReady;
+  private boolean fShowing;
+
+  public InMobiInterstitial(Context context, long placementId, InterstitialAdEventListener listener)
+  {
+    fPlacementId = placementId;
+    fListener = listener;
+  }
+
+  public void setExtras(Map<String, String> extras)
+  {
+  }
+
+  public void load()
+  {
+    fHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        fReady = true;
+        fListener.onAdLoadSucceeded(InMobiInterstitial.this, new AdMetaInfo(1, "interstitial-" + fPlacementId));
+      }
+    });
+  }
+
+  public boolean isReady()
+  {
+    return fReady;
+  }
+
+  public void show()
+  {
+    if (!fReady) {
+      fListener.onAdDisplayFailed(this);
+      return;
+    }
+    fReady = false;
+    fShowing = true;
+    fListener.onAdWillDisplay(this);
+    fListener.onAdDisplayed(this, new AdMetaInfo(1, "interstitial-" + fPlacementId));
+  }
+
+  // Close the interstitial on screen, as the user would
+  public void dismiss()
+  {
+    if (fShowing) {
+      fShowing = false;
+      fListener.onAdDismissed(this);
+    }
+  }
+}
@@ -0,0 +1,28 @@
+//
+//  BannerAdEventListener.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package com.inmobi.ads.listeners;
+
+import java.util.Map;
+
+import com.inmobi.ads.AdMetaInfo;
+import com.inmobi.ads.InMobiAdRequestStatus;
+import com.inmobi.ads.InMobiBanner;
+
+// Fake of the banner listener
+public abstract class BannerAdEventListener
+{
+  public void onAdLoadSucceeded(InMobiBanner ad, AdMetaInfo info) {}
+  public void onAdLoadFailed(InMobiBanner ad, InMobiAdRequestStatus status) {}
+  public void onAdDisplayed(InMobiBanner ad) {}
+  public void onAdDismissed(InMobiBanner ad) {}
+  public void onAdClicked(InMobiBanner ad, Map<Object, Object> params) {}
+  public void onUserLeftApplication(InMobiBanner ad) {}
+  public void onRewardsUnlocked(InMobiBanner ad, Map<Object, Object> rewards) {}
+}
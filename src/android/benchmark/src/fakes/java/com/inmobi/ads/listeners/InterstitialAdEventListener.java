@@ -0,0 +1,31 @@
+//
+//  InterstitialAdEventListener.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package com.inmobi.ads.listeners;
+
+import java.util.Map;
+
+import com.inmobi.ads.AdMetaInfo;
+import com.inmobi.ads.InMobiAdRequestStatus;
+import com.inmobi.ads.InMobiInterstitial;
+
+// Fake of the interstitial listener
+public abstract class InterstitialAdEventListener
+{
+  public void onAdLoadSucceeded(InMobiInterstitial ad, AdMetaInfo info) {}
+  public void onAdLoadFailed(InMobiInterstitial ad, InMobiAdRequestStatus status) {}
+  public void onAdDisplayed(InMobiInterstitial ad, AdMetaInfo info) {}
+  public void onAdDisplayFailed(InMobiInterstitial ad) {}
+  public void onAdReceived(InMobiInterstitial ad) {}
+  public void onAdWillDisplay(InMobiInterstitial ad) {}
+  public void onAdDismissed(InMobiInterstitial ad) {}
+  public void onAdClicked(InMobiInterstitial ad, Map<Object, Object> params) {}
+  public void onUserLeftApplication(InMobiInterstitial ad) {}
+  public void onRewardsUnlocked(InMobiInterstitial ad, Map<Object, Object> rewards) {}
+}
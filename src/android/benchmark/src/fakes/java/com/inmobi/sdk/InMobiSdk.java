@@ -0,0 +1,117 @@
+//
+//  InMobiSdk.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package com.inmobi.sdk;
+
+import android.content.Context;
+
+import org.json.JSONObject;
+
+// Fake of the InMobi SDK entry point, it keeps what it was given
+public class InMobiSdk
+{
+  public static final String IM_GDPR_CONSENT_AVAILABLE = "gdpr_consent_available";
+
+  public enum Gender { MALE, FEMALE }
+  public enum Education { HIGH_SCHOOL_OR_LESS, COLLEGE_OR_GRADUATE, POST_GRADUATE_OR_ABOVE }
+  public enum AgeGroup { BELOW_18, BETWEEN_18_AND_24, BETWEEN_25_AND_29, BETWEEN_30_AND_34, BETWEEN_35_AND_44, BETWEEN_45_AND_54, BETWEEN_55_AND_65, ABOVE_65 }
+  public enum LogLevel { NONE, ERROR, DEBUG }
+
+  private static volatile boolean sInitialized;
+  private static volatile JSONObject sConsent;
+  private static volatile LogLevel sLogLevel = LogLevel.NONE;
+  private static volatile int sUserDetailCalls;
+
+  public static String getVersion()
+  {
+    return "fake";
+  }
+
+  public static void init(Context context, String accountId, JSONObject consent)
+  {
+    sConsent = consent;
+    sInitialized = true;
+  }
+
+  public static boolean isSDKInitialized()
+  {
+    return sInitialized;
+  }
+
+  public static void updateGDPRConsent(JSONObject consent)
+  {
+    sConsent = consent;
+  }
+
+  public static JSONObject getConsent()
+  {
+    return sConsent;
+  }
+
+  public static void setLogLevel(LogLevel logLevel)
+  {
+    sLogLevel = logLevel;
+  }
+
+  public static LogLevel getLogLevel()
+  {
+    return sLogLevel;
+  }
+
+  // How many user details have been set
+  public static int getUserDetailCalls()
+  {
+    return sUserDetailCalls;
+  }
+
+  public static void setGender(Gender gender)
+  {
+    sUserDetailCalls++;
+  }
+
+  public static void setPostalCode(String postalCode)
+  {
+    sUserDetailCalls++;
+  }
+
+  public static void setAreaCode(String areaCode)
+  {
+    sUserDetailCalls++;
+  }
+
+  public static void setLanguage(String language)
+  {
+    sUserDetailCalls++;
+  }
+
+  public static void setYearOfBirth(int yearOfBirth)
+  {
+    sUserDetailCalls++;
+  }
+
+  public static void setAge(int age)
+  {
+    sUserDetailCalls++;
+  }
+
+  public static void setAgeGroup(AgeGroup ageGroup)
+  {
+    sUserDetailCalls++;
+  }
+
+  public static void setEducation(Education education)
+  {
+    sUserDetailCalls++;
+  }
+
+  public static void setInterests(String interests)
+  {
+    sUserDetailCalls++;
+  }
+}
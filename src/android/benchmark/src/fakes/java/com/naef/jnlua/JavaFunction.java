@@ -0,0 +1,16 @@
+//
+//  JavaFunction.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package com.naef.jnlua;
+
+// Fake of a JNLua function implemented in Java
+public interface JavaFunction
+{
+  int invoke(LuaState L);
+}
@@ -0,0 +1,21 @@
+//
+//  LuaRuntimeException.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package com.naef.jnlua;
+
+// Fake of the error raised by bad stack operations
+public class LuaRuntimeException extends RuntimeException
+{
+  private static final long serialVersionUID = 1L;
+
+  public LuaRuntimeException(String message)
+  {
+    super(message);
+  }
+}
@@ -0,0 +1,453 @@
+//
+//  LuaState.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package com.naef.jnlua;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * A fake of the JNLua state: a Lua value stack without a Lua interpreter.
+ * <p>
+ * Values are nil ({@code null}), {@link Boolean}, {@link Double}, {@link String}, {@link LuaTable},
+ * {@link JavaFunction} and Java objects (userdata). Calling a function runs it in its own frame, so
+ * positive indices address its arguments just as in JNLua. Every method can be overridden, which lets
+ * a benchmark swap in a state that discards what the plugin writes.
+ */
+public class LuaState
+{
+  public static final int REGISTRYINDEX = -10000;
+  public static final int MULTRET = -1;
+  public static final int REFNIL = -1;
+
+  private Object[] fStack = new Object[64];
+  // The stack slots of the current call frame are [fBase, fTop)
+  private int fBase = 0;
+  private int fTop = 0;
+  private final LuaTable fGlobals = new LuaTable();
+  // References made by ref(), indexed by reference - 1
+  private final ArrayList<Object> fRegistry = new ArrayList<>();
+
+  // -- Stack addressing
+
+  // The stack slot of an index, -1 if it holds no value
+  private int slot(int index)
+  {
+    final int slot = index > 0 ? fBase + index - 1 : fTop + index;
+    return slot >= fBase && slot < fTop ? slot : -1;
+  }
+
+  private Object value(int index)
+  {
+    final int slot = slot(index);
+    return slot >= 0 ? fStack[slot] : null;
+  }
+
+  private LuaTable table(int index)
+  {
+    final Object value = value(index);
+    if (!(value instanceof LuaTable))
+    {
+      throw new LuaRuntimeException("table expected at index " + index + ", got " + typeName(index));
+    }
+    return (LuaTable)value;
+  }
+
+  private void push(Object value)
+  {
+    if (fTop == fStack.length)
+    {
+      final Object[] stack = new Object[fStack.length * 2];
+      System.arraycopy(fStack, 0, stack, 0, fTop);
+      fStack = stack;
+    }
+    fStack[fTop++] = value;
+  }
+
+  private Object popValue()
+  {
+    if (fTop <= fBase)
+    {
+      throw new LuaRuntimeException("stack underflow");
+    }
+    final Object value = fStack[--fTop];
+    fStack[fTop] = null;
+    return value;
+  }
+
+  public int getTop()
+  {
+    return fTop - fBase;
+  }
+
+  public void setTop(int index)
+  {
+    final int top = index >= 0 ? fBase + index : fTop + index + 1;
+    while (fTop < top)
+    {
+      push(null);
+    }
+    while (fTop > top)
+    {
+      fStack[--fTop] = null;
+    }
+  }
+
+  public int absIndex(int index)
+  {
+    return index > 0 || index <= REGISTRYINDEX ? index : getTop() + index + 1;
+  }
+
+  public void pop(int count)
+  {
+    for (int i = 0; i < count; i++)
+    {
+      popValue();
+    }
+  }
+
+  public void pushValue(int index)
+  {
+    push(value(index));
+  }
+
+  // Move the top value to the given index, shifting the values above it up
+  public void insert(int index)
+  {
+    final int slot = slot(index);
+    final Object value = fStack[fTop - 1];
+    System.arraycopy(fStack, slot, fStack, slot + 1, fTop - 1 - slot);
+    fStack[slot] = value;
+  }
+
+  // Remove the value at the given index, shifting the values above it down
+  public void remove(int index)
+  {
+    final int slot = slot(index);
+    System.arraycopy(fStack, slot + 1, fStack, slot, fTop - 1 - slot);
+    fStack[--fTop] = null;
+  }
+
+  // -- Type checks and conversions
+
+  public LuaType type(int index)
+  {
+    if (slot(index) < 0)
+    {
+      return null;
+    }
+    final Object value = value(index);
+    if (value == null)
+    {
+      return LuaType.NIL;
+    }
+    if (value instanceof Boolean)
+    {
+      return LuaType.BOOLEAN;
+    }
+    if (value instanceof Double)
+    {
+      return LuaType.NUMBER;
+    }
+    if (value instanceof String)
+    {
+      return LuaType.STRING;
+    }
+    if (value instanceof LuaTable)
+    {
+      return LuaType.TABLE;
+    }
+    if (value instanceof JavaFunction)
+    {
+      return LuaType.FUNCTION;
+    }
+    return LuaType.USERDATA;
+  }
+
+  public String typeName(int index)
+  {
+    final LuaType type = type(index);
+    return type != null ? type.displayText() : "no value";
+  }
+
+  public boolean isNumber(int index)
+  {
+    final Object value = value(index);
+    if (value instanceof String)
+    {
+      try
+      {
+        Double.parseDouble((String)value);
+        return true;
+      }
+      catch (NumberFormatException e)
+      {
+        return false;
+      }
+    }
+    return value instanceof Double;
+  }
+
+  public String toString(int index)
+  {
+    final Object value = value(index);
+    if (value instanceof String)
+    {
+      return (String)value;
+    }
+    if (value instanceof Double)
+    {
+      final double number = (Double)value;
+      return number == Math.rint(number) && Math.abs(number) < 1e15 ? Long.toString((long)number) : Double.toString(number);
+    }
+    return null;
+  }
+
+  public double toNumber(int index)
+  {
+    final Object value = value(index);
+    if (value instanceof Double)
+    {
+      return (Double)value;
+    }
+    return isNumber(index) ? Double.parseDouble((String)value) : 0;
+  }
+
+  public int toInteger(int index)
+  {
+    return (int)toNumber(index);
+  }
+
+  public boolean toBoolean(int index)
+  {
+    final Object value = value(index);
+    return value != null && !Boolean.FALSE.equals(value);
+  }
+
+  // The value as a Java object: tables are copied deeply into lists and maps
+  public <T> T toJavaObject(int index, Class<T> type)
+  {
+    final Object value = value(index);
+    return type.cast(value instanceof LuaTable ? ((LuaTable)value).toJava() : value);
+  }
+
+  // -- Pushing values
+
+  public void pushNil()
+  {
+    push(null);
+  }
+
+  public void pushBoolean(boolean value)
+  {
+    push(value);
+  }
+
+  public void pushNumber(double value)
+  {
+    push(value);
+  }
+
+  public void pushInteger(int value)
+  {
+    push((double)value);
+  }
+
+  public void pushString(String value)
+  {
+    push(value);
+  }
+
+  public void pushJavaFunction(JavaFunction function)
+  {
+    push(function);
+  }
+
+  public void pushJavaObject(Object object)
+  {
+    push(object);
+  }
+
+  // -- Tables
+
+  public void newTable()
+  {
+    push(new LuaTable());
+  }
+
+  public void newTable(int arrayCount, int recordCount)
+  {
+    newTable();
+  }
+
+  public void getField(int index, String key)
+  {
+    push(table(index).get(key));
+  }
+
+  public void setField(int index, String key)
+  {
+    final LuaTable table = table(index);
+    table.put(key, popValue());
+  }
+
+  public void rawGet(int index)
+  {
+    final LuaTable table = table(index);
+    push(table.get(popValue()));
+  }
+
+  public void rawGet(int index, int key)
+  {
+    if (index == REGISTRYINDEX)
+    {
+      push(key >= 1 && key <= fRegistry.size() ? fRegistry.get(key - 1) : null);
+      return;
+    }
+    push(table(index).get((double)key));
+  }
+
+  public void rawSet(int index)
+  {
+    final LuaTable table = table(index);
+    final Object value = popValue();
+    table.put(popValue(), value);
+  }
+
+  public void rawSet(int index, int key)
+  {
+    final LuaTable table = table(index);
+    table.put((double)key, popValue());
+  }
+
+  public int length(int index)
+  {
+    final Object value = value(index);
+    if (value instanceof String)
+    {
+      return ((String)value).length();
+    }
+    return value instanceof LuaTable ? ((LuaTable)value).length() : 0;
+  }
+
+  // Pops a key and pushes the next key and value, returns false when the table has no more
+  public boolean next(int index)
+  {
+    final LuaTable table = table(index);
+    final Map.Entry<Object, Object> entry = table.next(popValue());
+    if (entry == null)
+    {
+      return false;
+    }
+    push(entry.getKey());
+    push(entry.getValue());
+    return true;
+  }
+
+  // -- Globals, references and modules
+
+  public void getGlobal(String name)
+  {
+    push(fGlobals.get(name));
+  }
+
+  public void setGlobal(String name)
+  {
+    fGlobals.put(name, popValue());
+  }
+
+  // Pops the top value into the registry and returns a reference to it
+  public int ref(int index)
+  {
+    final Object value = popValue();
+    if (value == null)
+    {
+      return REFNIL;
+    }
+    for (int i = 0; i < fRegistry.size(); i++)
+    {
+      if (fRegistry.get(i) == null)
+      {
+        fRegistry.set(i, value);
+        return i + 1;
+      }
+    }
+    fRegistry.add(value);
+    return fRegistry.size();
+  }
+
+  public void unref(int index, int reference)
+  {
+    if (reference >= 1 && reference <= fRegistry.size())
+    {
+      fRegistry.set(reference - 1, null);
+    }
+  }
+
+  // Registers the functions in a module table (created under its dotted name if needed) and pushes the table
+  public void register(String moduleName, NamedJavaFunction[] functions)
+  {
+    LuaTable table = fGlobals;
+    for (String part : moduleName.split("\\."))
+    {
+      Object child = table.get(part);
+      if (!(child instanceof LuaTable))
+      {
+        child = new LuaTable();
+        table.put(part, child);
+      }
+      table = (LuaTable)child;
+    }
+    for (NamedJavaFunction function : functions)
+    {
+      table.put(function.getName(), function);
+    }
+    push(table);
+  }
+
+  // -- Calls
+
+  // Calls the function below the arguments in a frame of its own, and leaves its results in their place
+  public void call(int argCount, int returnCount)
+  {
+    final int function = fTop - argCount - 1;
+    if (function < fBase || !(fStack[function] instanceof JavaFunction))
+    {
+      throw new LuaRuntimeException("attempt to call a " + (function < fBase ? "missing" : typeName(function - fBase + 1)) + " value");
+    }
+
+    final int base = fBase;
+    final int results;
+    fBase = function + 1;
+    try
+    {
+      results = Math.min(((JavaFunction)fStack[function]).invoke(this), fTop - fBase);
+    }
+    catch (RuntimeException e)
+    {
+      // Unwind the frame like a Lua error would
+      fBase = base;
+      setTop(function - base);
+      throw e;
+    }
+
+    System.arraycopy(fStack, fTop - results, fStack, function, results);
+    for (int i = function + results; i < fTop; i++)
+    {
+      fStack[i] = null;
+    }
+    fTop = function + results;
+    fBase = base;
+
+    if (returnCount != MULTRET)
+    {
+      setTop(function - base + returnCount);
+    }
+  }
+}
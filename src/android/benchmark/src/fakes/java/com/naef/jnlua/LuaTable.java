@@ -0,0 +1,121 @@
+//
+//  LuaTable.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package com.naef.jnlua;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A table in the fake {@link LuaState}.
+ * <p>
+ * Keys keep their insertion order, so iterating a table is deterministic. Numeric keys are stored as
+ * doubles, like every number on the fake stack.
+ */
+public final class LuaTable
+{
+  private final LinkedHashMap<Object, Object> fEntries = new LinkedHashMap<>();
+
+  // Numbers are compared by value whatever their boxed type
+  static Object key(Object key)
+  {
+    if (key instanceof Number && !(key instanceof Double))
+    {
+      return ((Number)key).doubleValue();
+    }
+    return key;
+  }
+
+  public Object get(Object key)
+  {
+    return fEntries.get(key(key));
+  }
+
+  // Setting a key to nil removes it
+  public void put(Object key, Object value)
+  {
+    if (key == null)
+    {
+      throw new LuaRuntimeException("table index is nil");
+    }
+    if (value == null)
+    {
+      fEntries.remove(key(key));
+    }
+    else
+    {
+      fEntries.put(key(key), value);
+    }
+  }
+
+  // The border of the sequence part, as the # operator sees it
+  public int length()
+  {
+    int length = 0;
+    while (fEntries.containsKey((double)(length + 1)))
+    {
+      length++;
+    }
+    return length;
+  }
+
+  // The key after the given one, or null when iteration is over
+  Map.Entry<Object, Object> next(Object key)
+  {
+    final Iterator<Map.Entry<Object, Object>> entries = fEntries.entrySet().iterator();
+    if (key != null)
+    {
+      final Object k = key(key);
+      while (entries.hasNext())
+      {
+        if (entries.next().getKey().equals(k))
+        {
+          break;
+        }
+      }
+    }
+    return entries.hasNext() ? entries.next() : null;
+  }
+
+  // A deep copy as Java values: nested tables become maps, or lists when they are sequences
+  public Object toJava()
+  {
+    final int length = length();
+    if (length > 0 && length == fEntries.size())
+    {
+      final List<Object> list = new ArrayList<>(length);
+      for (int i = 1; i <= length; i++)
+      {
+        list.add(toJava(fEntries.get((double)i)));
+      }
+      return list;
+    }
+
+    final Map<Object, Object> map = new LinkedHashMap<>();
+    for (Map.Entry<Object, Object> entry : fEntries.entrySet())
+    {
+      map.put(entry.getKey(), toJava(entry.getValue()));
+    }
+    return map;
+  }
+
+  private static Object toJava(Object value)
+  {
+    return value instanceof LuaTable ? ((LuaTable)value).toJava() : value;
+  }
+
+  @Override
+  public String toString()
+  {
+    return "table: " + fEntries;
+  }
+}
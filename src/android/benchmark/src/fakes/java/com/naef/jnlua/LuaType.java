@@ -0,0 +1,21 @@
+//
+//  LuaType.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package com.naef.jnlua;
+
+// Fake of the JNLua value types
+public enum LuaType
+{
+  NIL, BOOLEAN, LIGHTUSERDATA, NUMBER, STRING, TABLE, FUNCTION, USERDATA, THREAD;
+
+  public String displayText()
+  {
+    return name().toLowerCase();
+  }
+}
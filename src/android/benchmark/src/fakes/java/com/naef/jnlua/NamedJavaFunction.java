@@ -0,0 +1,16 @@
+//
+//  NamedJavaFunction.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package com.naef.jnlua;
+
+// Fake of a JNLua function registered under a name
+public interface NamedJavaFunction extends JavaFunction
+{
+  String getName();
+}
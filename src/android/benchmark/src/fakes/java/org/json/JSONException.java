@@ -0,0 +1,21 @@
+//
+//  JSONException.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package org.json;
+
+// Fake of the JSON error
+public class JSONException extends Exception
+{
+  private static final long serialVersionUID = 1L;
+
+  public JSONException(String message)
+  {
+    super(message);
+  }
+}
@@ -0,0 +1,71 @@
+//
+//  JSONObject.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package org.json;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Fake of a JSON object, a map of names to values
+public class JSONObject
+{
+  private final LinkedHashMap<String, Object> fValues = new LinkedHashMap<>();
+
+  public JSONObject put(String name, Object value) throws JSONException
+  {
+    if (name == null)
+    {
+      throw new JSONException("Names must be non-null");
+    }
+    if (value == null)
+    {
+      fValues.remove(name);
+    }
+    else
+    {
+      fValues.put(name, value);
+    }
+    return this;
+  }
+
+  public Object opt(String name)
+  {
+    return name != null ? fValues.get(name) : null;
+  }
+
+  public Iterator<String> keys()
+  {
+    return fValues.keySet().iterator();
+  }
+
+  @Override
+  public String toString()
+  {
+    final StringBuilder builder = new StringBuilder("{");
+    for (Map.Entry<String, Object> entry : fValues.entrySet())
+    {
+      if (builder.length() > 1)
+      {
+        builder.append(',');
+      }
+      builder.append('"').append(entry.getKey()).append("\":");
+      final Object value = entry.getValue();
+      if (value instanceof String)
+      {
+        builder.append('"').append(value).append('"');
+      }
+      else
+      {
+        builder.append(value);
+      }
+    }
+    return builder.append('}').toString();
+  }
+}
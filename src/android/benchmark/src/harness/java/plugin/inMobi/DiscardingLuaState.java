@@ -0,0 +1,167 @@
+//
+//  DiscardingLuaState.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.inMobi;
+
+import com.naef.jnlua.LuaState;
+import com.naef.jnlua.LuaType;
+
+/**
+ * A Lua state that throws away everything written to it and only counts the calls made.
+ * <p>
+ * Swapped in as the runtime's state, it leaves nothing but the plugin's own work when events are
+ * delivered: no tables are built and no values are boxed, so any allocation seen is the plugin's.
+ */
+public final class DiscardingLuaState extends LuaState
+{
+  private int fTop;
+  // Listener calls, ie. events delivered
+  public long calls;
+  // Values written to the stack
+  public long pushes;
+
+  @Override
+  public int getTop()
+  {
+    return fTop;
+  }
+
+  @Override
+  public void setTop(int index)
+  {
+    fTop = index >= 0 ? index : fTop + index + 1;
+  }
+
+  @Override
+  public LuaType type(int index)
+  {
+    return LuaType.NIL;
+  }
+
+  @Override
+  public void pop(int count)
+  {
+    fTop -= count;
+  }
+
+  @Override
+  public void pushValue(int index)
+  {
+    pushed();
+  }
+
+  @Override
+  public void insert(int index)
+  {
+  }
+
+  @Override
+  public void remove(int index)
+  {
+    fTop--;
+  }
+
+  @Override
+  public void pushNil()
+  {
+    pushed();
+  }
+
+  @Override
+  public void pushBoolean(boolean value)
+  {
+    pushed();
+  }
+
+  @Override
+  public void pushNumber(double value)
+  {
+    pushed();
+  }
+
+  @Override
+  public void pushInteger(int value)
+  {
+    pushed();
+  }
+
+  @Override
+  public void pushString(String value)
+  {
+    pushed();
+  }
+
+  @Override
+  public void pushJavaObject(Object object)
+  {
+    pushed();
+  }
+
+  @Override
+  public void newTable()
+  {
+    pushed();
+  }
+
+  @Override
+  public void newTable(int arrayCount, int recordCount)
+  {
+    pushed();
+  }
+
+  @Override
+  public void getField(int index, String key)
+  {
+    pushed();
+  }
+
+  @Override
+  public void setField(int index, String key)
+  {
+    fTop--;
+  }
+
+  @Override
+  public void rawGet(int index)
+  {
+  }
+
+  @Override
+  public void rawGet(int index, int key)
+  {
+    pushed();
+  }
+
+  @Override
+  public void rawSet(int index)
+  {
+    fTop -= 2;
+  }
+
+  @Override
+  public void rawSet(int index, int key)
+  {
+    fTop--;
+  }
+
+  // The function and its arguments are replaced by the results, all nil
+  @Override
+  public void call(int argCount, int returnCount)
+  {
+    fTop -= argCount + 1;
+    fTop += Math.max(returnCount, 0);
+    calls++;
+  }
+
+  private void pushed()
+  {
+    fTop++;
+    pushes++;
+  }
+}
@@ -0,0 +1,364 @@
+//
+//  PluginHarness.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.inMobi;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.SystemClock;
+
+import com.ansca.corona.CoronaActivity;
+import com.ansca.corona.CoronaEnvironment;
+import com.ansca.corona.CoronaRuntime;
+import com.naef.jnlua.JavaFunction;
+import com.naef.jnlua.LuaState;
+
+/**
+ * Runs the plugin on the fake runtime, calling it from Java as a Corona app would from Lua.
+ * <p>
+ * The calling thread plays both the Lua thread and the UI thread: calls run on the Lua side, and
+ * {@link #settle()} then runs the UI work they posted and delivers the events it raised, until
+ * neither side has anything left to do. Time stands still unless {@link #advance(long)} moves it.
+ * Only one harness may be open at a time, the plugin's registries are static.
+ */
+public final class PluginHarness implements AutoCloseable
+{
+  // The Corona build system.getInfo("build") reports
+  public static final String kCoronaBuild = "2024.3703";
+
+  public final LuaState L;
+  public final CoronaRuntime runtime;
+  public final CoronaActivity activity;
+  public final LuaLoader loader;
+  // The events delivered to the init() listener, oldest first
+  public final List<Map<Object, Object>> events = new ArrayList<>();
+
+  private final MessageQueue fMainQueue = Looper.getMainLooper().getQueue();
+  private final File fFilesDir;
+  // Whether the files directory goes with the harness
+  private final boolean fOwnsFilesDir;
+  // The plugin.inMobi library table
+  private final int fLibRef;
+
+  private final JavaFunction fListener = new JavaFunction() {
+    @Override
+    public int invoke(LuaState L) {
+      events.add(asMap(L.toJavaObject(1, Object.class)));
+      return 0;
+    }
+  };
+
+  public PluginHarness()
+  {
+    this(null);
+  }
+
+  // A harness whose app keeps its files in the given directory, as a restarted app would, null for a fresh one
+  public PluginHarness(File filesDir)
+  {
+    fMainQueue.clear();
+    SystemClock.setUptimeMillis(1000000);
+
+    fOwnsFilesDir = filesDir == null;
+    try
+    {
+      fFilesDir = fOwnsFilesDir ? Files.createTempDirectory("inMobi").toFile() : filesDir;
+    }
+    catch (IOException e)
+    {
+      throw new IllegalStateException(e);
+    }
+    activity = new CoronaActivity(fFilesDir, 2);
+    CoronaEnvironment.setCoronaActivity(activity);
+
+    L = new LuaState();
+    L.newTable();
+    L.pushJavaFunction(new JavaFunction() {
+      @Override
+      public int invoke(LuaState L) {
+        L.pushString("build".equals(L.toString(1)) ? kCoronaBuild : null);
+        return 1;
+      }
+    });
+    L.setField(-2, "getInfo");
+    L.setGlobal("system");
+
+    runtime = new CoronaRuntime(L);
+
+    // require("plugin.inMobi")
+    loader = new LuaLoader();
+    L.pushJavaFunction(loader);
+    L.pushString("plugin.inMobi");
+    L.call(1, 1);
+    fLibRef = L.ref(LuaState.REGISTRYINDEX);
+
+    loader.onLoaded(runtime);
+    loader.onStarted(runtime);
+  }
+
+  // The plugin function of the given name
+  public JavaFunction function(String name)
+  {
+    L.rawGet(LuaState.REGISTRYINDEX, fLibRef);
+    L.getField(-1, name);
+    final JavaFunction function = (JavaFunction)L.toJavaObject(-1, Object.class);
+    L.pop(2);
+    return function;
+  }
+
+  // Call a plugin function with Java arguments (see push()), returns its results
+  public Object[] call(String name, Object... args)
+  {
+    final int top = L.getTop();
+    L.rawGet(LuaState.REGISTRYINDEX, fLibRef);
+    L.getField(-1, name);
+    L.remove(-2);
+    for (Object arg : args)
+    {
+      push(arg);
+    }
+    L.call(args.length, LuaState.MULTRET);
+
+    final Object[] results = new Object[L.getTop() - top];
+    for (int i = 0; i < results.length; i++)
+    {
+      results[i] = L.toJavaObject(top + i + 1, Object.class);
+    }
+    L.setTop(top);
+    return results;
+  }
+
+  // Call a plugin function then let the UI thread catch up
+  public Object[] callAndSettle(String name, Object... args)
+  {
+    final Object[] results = call(name, args);
+    settle();
+    return results;
+  }
+
+  // inMobi.init(listener, options), settled once the last run's stored state has been read back
+  public void init(Map<String, Object> options)
+  {
+    callInit(options);
+    settleFiles();
+  }
+
+  // inMobi.init(listener, options), leaving the UI thread and the file thread to catch up
+  public void callInit(Map<String, Object> options)
+  {
+    call("init", fListener, options);
+  }
+
+  // Wait for the plugin's file reads and writes, then settle the work they hand back
+  public void settleFiles()
+  {
+    settle();
+    waitForBackground();
+    settle();
+  }
+
+  // Push a Java value: null, booleans, numbers, strings, functions, and maps and lists of them as tables
+  public void push(Object value)
+  {
+    push(L, value);
+  }
+
+  // Push a Java value onto the given state
+  public static void push(LuaState L, Object value)
+  {
+    if (value == null)
+    {
+      L.pushNil();
+    }
+    else if (value instanceof Boolean)
+    {
+      L.pushBoolean((Boolean)value);
+    }
+    else if (value instanceof Number)
+    {
+      L.pushNumber(((Number)value).doubleValue());
+    }
+    else if (value instanceof String)
+    {
+      L.pushString((String)value);
+    }
+    else if (value instanceof JavaFunction)
+    {
+      L.pushJavaFunction((JavaFunction)value);
+    }
+    else if (value instanceof Map)
+    {
+      L.newTable();
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>)value).entrySet())
+      {
+        push(L, entry.getKey());
+        push(L, entry.getValue());
+        L.rawSet(-3);
+      }
+    }
+    else if (value instanceof List)
+    {
+      final List<?> list = (List<?>)value;
+      L.newTable();
+      for (int i = 0; i < list.size(); i++)
+      {
+        push(L, list.get(i));
+        L.rawSet(-2, i + 1);
+      }
+    }
+    else
+    {
+      L.pushJavaObject(value);
+    }
+  }
+
+  // Run the UI work and Lua tasks that are due until there are none left, returns how many ran
+  public int settle()
+  {
+    int total = 0;
+    int ran;
+    do
+    {
+      ran = fMainQueue.runUntilIdle();
+      ran += runtime.runTasks();
+      total += ran;
+    }
+    while (ran > 0);
+    return total;
+  }
+
+  // Move the clock forward, settling as work falls due
+  public int advance(long millis)
+  {
+    final long until = SystemClock.uptimeMillis() + millis;
+    int total = settle();
+    while (fMainQueue.nextWhen() <= until)
+    {
+      fMainQueue.advanceBy(Math.max(0, fMainQueue.nextWhen() - SystemClock.uptimeMillis()));
+      total += settle();
+    }
+    SystemClock.setUptimeMillis(until);
+    return total + settle();
+  }
+
+  // The names of the events delivered so far, as "phase type placementId"
+  public List<String> eventNames()
+  {
+    final List<String> names = new ArrayList<>();
+    for (Map<Object, Object> event : events)
+    {
+      final StringBuilder name = new StringBuilder(String.valueOf(event.get("phase")));
+      if (event.get("type") != null)
+      {
+        name.append(' ').append(event.get("type"));
+      }
+      if (event.get("placementId") != null)
+      {
+        name.append(' ').append(event.get("placementId"));
+      }
+      names.add(name.toString());
+    }
+    return names;
+  }
+
+  // The last event delivered, null if there is none
+  public Map<Object, Object> lastEvent()
+  {
+    return events.isEmpty() ? null : events.get(events.size() - 1);
+  }
+
+  // Exit the runtime, as Corona does when the app closes
+  @Override
+  public void close()
+  {
+    loader.onExiting(runtime);
+    settle();
+    runtime.stop();
+    CoronaEnvironment.removeRuntimeListener(loader);
+    CoronaEnvironment.setCoronaActivity(null);
+    fMainQueue.clear();
+
+    // Wait for background writes before the files go
+    waitForBackground();
+    if (fOwnsFilesDir)
+    {
+      delete(fFilesDir);
+    }
+  }
+
+  // Wait until the plugin's file thread has run everything queued so far
+  private static void waitForBackground()
+  {
+    final Object done = new Object();
+    synchronized (done)
+    {
+      AtomicFile.background(new Runnable() {
+        @Override
+        public void run() {
+          synchronized (done) {
+            done.notifyAll();
+          }
+        }
+      });
+      try
+      {
+        done.wait(5000);
+      }
+      catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private static void delete(File file)
+  {
+    final File[] children = file.listFiles();
+    if (children != null)
+    {
+      for (File child : children)
+      {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+  // A map of alternating keys and values, for options tables
+  public static Map<String, Object> table(Object... keysAndValues)
+  {
+    final Map<String, Object> table = new LinkedHashMap<>();
+    for (int i = 0; i < keysAndValues.length; i += 2)
+    {
+      table.put((String)keysAndValues[i], keysAndValues[i + 1]);
+    }
+    return table;
+  }
+
+  // A list of values, for sequence tables
+  public static List<Object> list(Object... values)
+  {
+    return Arrays.asList(values);
+  }
+
+  @SuppressWarnings("unchecked")
+  static Map<Object, Object> asMap(Object value)
+  {
+    return value instanceof Map ? (Map<Object, Object>)value : new LinkedHashMap<Object, Object>();
+  }
+}
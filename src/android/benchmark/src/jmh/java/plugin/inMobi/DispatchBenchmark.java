@@ -0,0 +1,113 @@
+//
+//  DispatchBenchmark.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.inMobi;
+
+import static plugin.inMobi.PluginHarness.table;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.inmobi.ads.InMobiAdRequestStatus.StatusCode;
+
+/**
+ * Raising an event and delivering it on the Lua thread, with and without init's eventBatching.
+ * <p>
+ * Events are written to a {@link DiscardingLuaState}, so the time and allocations measured are the
+ * plugin's: pooling the event, queueing it for the Lua thread and writing its fields.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark
+{
+  private static final int kBurst = 8;
+
+  @Param({"false", "true"})
+  public boolean eventBatching;
+
+  private PluginHarness fHarness;
+  private DiscardingLuaState fLua;
+  private String fResponse;
+  private AdBackend.AdMeta fMeta;
+
+  @Setup(Level.Trial)
+  public void setUp()
+  {
+    fHarness = new PluginHarness();
+    fHarness.init(table("accountId", "benchmark", "eventBatching", eventBatching, "fakeBackend", table()));
+    fLua = new DiscardingLuaState();
+    fHarness.runtime.setLuaState(fLua);
+    fResponse = AdEvent.describe(StatusCode.NO_FILL, "no fill");
+    fMeta = new AdBackend.AdMeta(0.25, "creative");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown()
+  {
+    fHarness.runtime.setLuaState(fHarness.L);
+    fHarness.close();
+  }
+
+  // One event, delivered before the next is raised
+  @Benchmark
+  public long dispatch()
+  {
+    fHarness.loader.dispatchLuaEvent("displayed", "banner", "1001");
+    fHarness.runtime.runTasks();
+    return fLua.calls;
+  }
+
+  // A loaded event, with the bid and creative id as its data table
+  @Benchmark
+  public long dispatchLoaded()
+  {
+    fHarness.loader.dispatchLoadedEvent("banner", "1001", fMeta);
+    fHarness.runtime.runTasks();
+    return fLua.calls;
+  }
+
+  @Benchmark
+  public long dispatchError()
+  {
+    fHarness.loader.dispatchLuaErrorEvent("failed", "interstitial", "1002", fResponse);
+    fHarness.runtime.runTasks();
+    return fLua.calls;
+  }
+
+  // Several events raised in one UI pass, as a loadMany() or a memory trim does, delivered together
+  @Benchmark
+  @OperationsPerInvocation(kBurst)
+  public long dispatchBurst()
+  {
+    for (int i = 0; i < kBurst; i++)
+    {
+      fHarness.loader.dispatchLuaEvent("loaded", "banner", "1001");
+    }
+    fHarness.runtime.runTasks();
+    return fLua.calls;
+  }
+}
@@ -0,0 +1,87 @@
+//
+//  HideShowBenchmark.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.inMobi;
+
+import static plugin.inMobi.PluginHarness.table;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Hiding a banner and showing it again, with and without init's bannerPoolSize.
+ * <p>
+ * Without the pool, hide() destroys the banner, so it has to be loaded again before it can be
+ * shown. With it, the hidden banner is parked and show() takes it straight back. The fake backend
+ * fills at once, so the figures are the plugin's own work on both threads, not network latency:
+ * on a device the reload also waits for a round trip to InMobi.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HideShowBenchmark
+{
+  private static final String kPlacementId = "1001";
+
+  @Param({"0", "4"})
+  public int bannerPoolSize;
+
+  private PluginHarness fHarness;
+
+  @Setup(Level.Trial)
+  public void setUp()
+  {
+    fHarness = new PluginHarness();
+    fHarness.init(table("accountId", "benchmark", "bannerPoolSize", bannerPoolSize, "fakeBackend", table("latency", table("median", 0, "max", 0))));
+    fHarness.callAndSettle("load", "banner", kPlacementId);
+    fHarness.callAndSettle("show", kPlacementId);
+
+    hideThenShow();
+    if (!"showing".equals(fHarness.call("getState", kPlacementId)[0]))
+    {
+      throw new IllegalStateException("the banner isn't shown again");
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown()
+  {
+    fHarness.close();
+  }
+
+  // Returns the events raised, the loaded and displayed events of a reload
+  @Benchmark
+  public int hideThenShow()
+  {
+    fHarness.events.clear();
+    fHarness.callAndSettle("hide", kPlacementId);
+    if (bannerPoolSize == 0)
+    {
+      fHarness.callAndSettle("load", "banner", kPlacementId);
+    }
+    fHarness.callAndSettle("show", kPlacementId);
+    return fHarness.events.size();
+  }
+}
@@ -0,0 +1,110 @@
+//
+//  LoadBenchmark.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.inMobi;
+
+import static plugin.inMobi.PluginHarness.table;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.naef.jnlua.JavaFunction;
+import com.naef.jnlua.LuaState;
+
+/**
+ * inMobi.load() on a placement that is already loaded, the call a game makes at every level start.
+ * <p>
+ * {@link #load()} is the plugin as it is. {@link #loadWithPerCallLookups()} adds back the work each
+ * call used to do before the attribution extras and placement ids were cached: a system.getInfo("build")
+ * call into Lua, a new extras map and two Long.parseLong() calls. Both include the UI thread's
+ * part, which only finds the interstitial still loaded.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoadBenchmark
+{
+  private static final String kPlacementId = "1002";
+
+  private PluginHarness fHarness;
+  private LuaState L;
+  private JavaFunction fLoad;
+
+  @Setup(Level.Trial)
+  public void setUp()
+  {
+    fHarness = new PluginHarness();
+    fHarness.init(table("accountId", "benchmark", "fakeBackend", table("latency", table("median", 0, "max", 0))));
+    fHarness.callAndSettle("load", "interstitial", kPlacementId);
+    if (!"ready".equals(fHarness.call("getState", kPlacementId)[0]))
+    {
+      throw new IllegalStateException("the interstitial isn't loaded");
+    }
+
+    L = fHarness.L;
+    fLoad = fHarness.function("load");
+    L.setTop(0);
+    L.pushString("interstitial");
+    L.pushString(kPlacementId);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown()
+  {
+    L.setTop(0);
+    fHarness.close();
+  }
+
+  @Benchmark
+  public int load()
+  {
+    fLoad.invoke(L);
+    return fHarness.settle();
+  }
+
+  @Benchmark
+  public int loadWithPerCallLookups()
+  {
+    // The Corona version, read with a call into Lua
+    L.getGlobal("system");
+    L.getField(-1, "getInfo");
+    L.pushString("build");
+    L.call(1, 1);
+    final String build = L.toString(-1);
+    L.pop(2);
+
+    // The extras handed to the ad
+    final Map<String, String> extras = new HashMap<String, String>();
+    extras.put("tp", "p_corona");
+    extras.put("tp-ver", build);
+
+    // The placement id parsed on the Lua thread, then again on the UI thread
+    final long placementId = Long.parseLong(kPlacementId) + Long.parseLong(kPlacementId);
+
+    fLoad.invoke(L);
+    return fHarness.settle() + extras.size() + (int)placementId;
+  }
+}
@@ -0,0 +1,99 @@
+//
+//  LookupBenchmark.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.inMobi;
+
+import static plugin.inMobi.PluginHarness.table;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.naef.jnlua.JavaFunction;
+import com.naef.jnlua.LuaState;
+
+/**
+ * inMobi.isLoaded() and inMobi.getState(), as called every frame by a game polling for an ad.
+ * <p>
+ * The functions are invoked straight on the Lua stack holding the placement id, so the measurement
+ * is the lookup itself: a loaded banner, a loaded interstitial, a placement never loaded and a group.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LookupBenchmark
+{
+  @Param({"1001", "1002", "9999", "group"})
+  public String placementId;
+
+  private PluginHarness fHarness;
+  private LuaState L;
+  private JavaFunction fIsLoaded;
+  private JavaFunction fGetState;
+
+  @Setup(Level.Trial)
+  public void setUp()
+  {
+    fHarness = new PluginHarness();
+    fHarness.init(table("accountId", "benchmark", "fakeBackend", table("latency", table("median", 0, "max", 0))));
+    fHarness.callAndSettle("load", "banner", "1001");
+    fHarness.callAndSettle("load", "interstitial", "1002");
+    fHarness.callAndSettle("loadGroup", "group", PluginHarness.list("1003", "1002"));
+    if (fHarness.call("isLoaded", placementId)[0] != Boolean.valueOf(!placementId.equals("9999")))
+    {
+      throw new IllegalStateException("placement " + placementId + " isn't set up");
+    }
+
+    L = fHarness.L;
+    fIsLoaded = fHarness.function("isLoaded");
+    fGetState = fHarness.function("getState");
+    L.setTop(0);
+    L.pushString(placementId);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown()
+  {
+    L.setTop(0);
+    fHarness.close();
+  }
+
+  @Benchmark
+  public boolean isLoaded()
+  {
+    fIsLoaded.invoke(L);
+    final boolean loaded = L.toBoolean(-1);
+    L.setTop(1);
+    return loaded;
+  }
+
+  @Benchmark
+  public String getState()
+  {
+    fGetState.invoke(L);
+    final String state = L.toString(-2);
+    L.setTop(1);
+    return state;
+  }
+}
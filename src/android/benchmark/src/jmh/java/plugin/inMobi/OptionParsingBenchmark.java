@@ -0,0 +1,92 @@
+//
+//  OptionParsingBenchmark.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.inMobi;
+
+import static plugin.inMobi.PluginHarness.list;
+import static plugin.inMobi.PluginHarness.table;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.naef.jnlua.LuaState;
+
+/**
+ * Reading load() and setUserDetails() options tables on the Lua thread.
+ * <p>
+ * The tables live on a fake Lua stack, so numbers read from them are already boxed and lookups are
+ * hash map reads: the figures compare the plugin's parsing work, not JNLua's.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OptionParsingBenchmark
+{
+  private static final int kLoadOptions = 1;
+  private static final int kEmptyOptions = 2;
+  private static final int kUserDetails = 3;
+
+  private final LuaState L = new LuaState();
+  private final UserDetails fDetails = new UserDetails();
+
+  @Setup(Level.Trial)
+  public void setUp()
+  {
+    PluginHarness.push(L, table(
+      "width", 320, "height", 50, "autoRefresh", true, "refreshInterval", 45, "preloadDepth", 2, "priority", 3,
+      "retry", table("maxAttempts", 4, "baseDelay", 2, "maxDelay", 60, "jitter", 0.2, "retryOn", list("NO_FILL", "NETWORK_UNREACHABLE"))));
+    PluginHarness.push(L, table());
+    PluginHarness.push(L, table(
+      "gender", "female", "postCode", "24533", "phoneAreaCode", "353", "language", "eng", "birthYear", 1990, "age", 34,
+      "ageGroup", "25to29", "education", "collegeOrGraduate", "userInterests", list("Sports", "Tech")));
+  }
+
+  @Benchmark
+  public LoadRequest loadRequest()
+  {
+    final LoadRequest request = new LoadRequest("banner", "1001", 1001L);
+    request.readOptions(L, kLoadOptions, "inMobi.load()");
+    return request;
+  }
+
+  @Benchmark
+  public LoadRequest loadRequestEmpty()
+  {
+    final LoadRequest request = new LoadRequest("banner", "1001", 1001L);
+    request.readOptions(L, kEmptyOptions, "inMobi.load()");
+    return request;
+  }
+
+  @Benchmark
+  public UserDetails userDetails()
+  {
+    return fDetails.merge(L, kUserDetails);
+  }
+
+  // The calls the SDK needs after merging, nothing changed
+  @Benchmark
+  public int userDetailsUnchanged()
+  {
+    return fDetails.merge(L, kUserDetails).applyChanges(fDetails.merge(L, kUserDetails));
+  }
+}
@@ -0,0 +1,112 @@
+//
+//  DispatchAllocationTest.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.inMobi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static plugin.inMobi.PluginHarness.table;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.inmobi.ads.InMobiAdRequestStatus.StatusCode;
+
+// Raising and delivering events allocates nothing once the event pool has warmed up
+public class DispatchAllocationTest
+{
+  private static final int kWarmup = 20000;
+  private static final int kDispatches = 100000;
+  // Slack for the allocation counter itself, far below one byte per dispatch
+  private static final long kMaxBytes = 4096;
+
+  private static final com.sun.management.ThreadMXBean sThreads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+  private PluginHarness fHarness;
+  private DiscardingLuaState fLua;
+
+  private void start(boolean eventBatching)
+  {
+    fHarness = new PluginHarness();
+    fHarness.init(table("accountId", "test", "eventBatching", eventBatching, "fakeBackend", table()));
+    fLua = new DiscardingLuaState();
+    fHarness.runtime.setLuaState(fLua);
+  }
+
+  @After
+  public void tearDown()
+  {
+    fHarness.runtime.setLuaState(fHarness.L);
+    fHarness.close();
+  }
+
+  // Every kind of event the ad listeners raise for each ad, delivered one pass at a time
+  private void dispatch(int count, AdBackend.AdMeta meta, String response)
+  {
+    for (int i = 0; i < count; i++)
+    {
+      fHarness.loader.dispatchLoadedEvent("banner", "1001", meta);
+      fHarness.loader.dispatchLuaEvent("displayed", "interstitial", "1002");
+      fHarness.loader.dispatchLuaErrorEvent("failed", "interstitial", "1002", response);
+      fHarness.runtime.runTasks();
+    }
+  }
+
+  private long allocatedBytes(AdBackend.AdMeta meta, String response)
+  {
+    final long threadId = Thread.currentThread().getId();
+    dispatch(kWarmup, meta, response);
+
+    final long before = sThreads.getThreadAllocatedBytes(threadId);
+    dispatch(kDispatches, meta, response);
+    return sThreads.getThreadAllocatedBytes(threadId) - before;
+  }
+
+  private void assertAllocationFree(boolean eventBatching)
+  {
+    start(eventBatching);
+    assertTrue(sThreads.isThreadAllocatedMemorySupported());
+    sThreads.setThreadAllocatedMemoryEnabled(true);
+
+    final long bytes = allocatedBytes(new AdBackend.AdMeta(0.25, "creative"), AdEvent.describe(StatusCode.NO_FILL, "no fill"));
+
+    assertEquals(3L * (kWarmup + kDispatches), fLua.calls);
+    assertTrue(bytes + " bytes allocated by " + 3 * kDispatches + " events", bytes <= kMaxBytes);
+  }
+
+  @Test
+  public void directDispatchDoesNotAllocate()
+  {
+    assertAllocationFree(false);
+  }
+
+  @Test
+  public void batchedDispatchDoesNotAllocate()
+  {
+    assertAllocationFree(true);
+  }
+
+  // The metadata is written without a map, and still reaches Lua as the data table
+  @Test
+  public void loadedEventCarriesMetadata()
+  {
+    start(false);
+    fHarness.runtime.setLuaState(fHarness.L);
+
+    fHarness.loader.dispatchLoadedEvent("banner", "1001", new AdBackend.AdMeta(0.25, "creative"));
+    fHarness.settle();
+
+    final Map<Object, Object> data = PluginHarness.asMap(fHarness.lastEvent().get("data"));
+    assertEquals(0.25, data.get("bid"));
+    assertEquals("creative", data.get("creativeId"));
+  }
+}
@@ -0,0 +1,210 @@
+//
+//  FakeBackendTest.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.inMobi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static plugin.inMobi.PluginHarness.table;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.inmobi.ads.InMobiAdRequestStatus.StatusCode;
+
+// The fake backend serves ads on a plain JVM, on its own and behind the plugin
+public class FakeBackendTest
+{
+  // Runs tasks when the test moves time past them, in the order they fall due
+  private static final class ManualScheduler implements FakeBackend.Scheduler
+  {
+    private static final class Task
+    {
+      final long due;
+      final Runnable runnable;
+
+      Task(long due, Runnable runnable)
+      {
+        this.due = due;
+        this.runnable = runnable;
+      }
+    }
+
+    private final List<Task> fTasks = new ArrayList<>();
+    private long fNow;
+
+    @Override
+    public void schedule(Runnable task, long delayMs)
+    {
+      int i = 0;
+      while (i < fTasks.size() && fTasks.get(i).due <= fNow + delayMs)
+      {
+        i++;
+      }
+      fTasks.add(i, new Task(fNow + delayMs, task));
+    }
+
+    void advance(long millis)
+    {
+      final long until = fNow + millis;
+      while (!fTasks.isEmpty() && fTasks.get(0).due <= until)
+      {
+        final Task task = fTasks.remove(0);
+        fNow = task.due;
+        task.runnable.run();
+      }
+      fNow = until;
+    }
+  }
+
+  // Records what the backend reports, as the plugin's event names
+  private static final class RecordingListener implements AdBackend.Listener
+  {
+    final List<String> events = new ArrayList<>();
+    AdBackend.AdMeta meta;
+    StatusCode code;
+
+    @Override
+    public void onLoadSucceeded(AdBackend.Ad ad, AdBackend.AdMeta meta)
+    {
+      this.meta = meta;
+      events.add("loaded");
+    }
+
+    @Override
+    public void onLoadFailed(AdBackend.Ad ad, StatusCode code, String message)
+    {
+      this.code = code;
+      events.add("failed");
+    }
+
+    @Override
+    public void onWillDisplay(AdBackend.Ad ad)
+    {
+      events.add("displayed");
+    }
+
+    @Override
+    public void onDismissed(AdBackend.Ad ad)
+    {
+      events.add("closed");
+    }
+
+    @Override
+    public void onUserLeftApplication(AdBackend.Ad ad)
+    {
+      events.add("clicked");
+    }
+
+    @Override
+    public void onRewardsUnlocked(AdBackend.Ad ad, Map<Object, Object> rewards)
+    {
+      events.add("reward");
+    }
+  }
+
+  private final ManualScheduler fScheduler = new ManualScheduler();
+  private final RecordingListener fListener = new RecordingListener();
+
+  // Loads take 200ms, interstitials stay up for 5s
+  private FakeBackend backend(double fillRate)
+  {
+    return new FakeBackend(fScheduler, fillRate, 200, 0, 200, new StatusCode[] {StatusCode.NO_FILL}, 1, 5000, 1, new HashMap<Long, Double>());
+  }
+
+  @Test
+  public void interstitialLoadsShowsAndCloses()
+  {
+    final AdBackend.Interstitial interstitial = backend(1).createInterstitial(1002, fListener);
+
+    interstitial.load();
+    fScheduler.advance(199);
+    assertFalse(interstitial.isReady());
+    fScheduler.advance(1);
+    assertTrue(interstitial.isReady());
+    assertTrue(fListener.meta.bid >= 0 && fListener.meta.bid <= 1);
+
+    interstitial.show();
+    assertFalse(interstitial.isReady());
+    fScheduler.advance(5000);
+
+    assertEquals(Arrays.asList("loaded", "displayed", "closed"), fListener.events);
+  }
+
+  @Test
+  public void unfilledLoadFails()
+  {
+    final AdBackend.Interstitial interstitial = backend(0).createInterstitial(1002, fListener);
+
+    interstitial.load();
+    fScheduler.advance(200);
+    interstitial.show();
+
+    assertEquals(Arrays.asList("failed"), fListener.events);
+    assertEquals(StatusCode.NO_FILL, fListener.code);
+  }
+
+  @Test
+  public void destroyedBannerNeverLoads()
+  {
+    final AdBackend.Banner banner = backend(1).createBanner(1001, fListener);
+
+    banner.load();
+    banner.destroy();
+    fScheduler.advance(200);
+
+    assertTrue(fListener.events.isEmpty());
+  }
+
+  @Test
+  public void bannerRecordsItsPlacement()
+  {
+    final FakeBackend.FakeBanner banner = (FakeBackend.FakeBanner)backend(1).createBanner(1001, fListener);
+
+    banner.attach(320, 50);
+    assertEquals(FakeBackend.Placement.HIDDEN, banner.placement);
+    banner.resize(640, 100);
+    banner.show(81);
+    assertEquals(FakeBackend.Placement.SHOWN, banner.placement);
+    assertEquals(640, banner.width);
+    assertEquals(81, banner.gravity);
+    banner.hide();
+    assertEquals(FakeBackend.Placement.HIDDEN, banner.placement);
+    banner.detach();
+    assertEquals(FakeBackend.Placement.DETACHED, banner.placement);
+  }
+
+  // The plugin schedules the fake on its UI thread, the harness moves that thread's clock
+  @Test
+  public void pluginLoadsShowsAndClosesInterstitial()
+  {
+    try (PluginHarness harness = new PluginHarness())
+    {
+      harness.init(table("accountId", "test", "fakeBackend", table("latency", table("median", 0.2, "sigma", 0, "max", 0.2), "displayTime", 5)));
+
+      harness.callAndSettle("load", "interstitial", "1002");
+      assertEquals("loading", harness.call("getState", "1002")[0]);
+      harness.advance(200);
+      assertEquals("loaded interstitial 1002", harness.eventNames().get(harness.events.size() - 1));
+
+      harness.callAndSettle("show", "1002");
+      assertEquals("displayed interstitial 1002", harness.eventNames().get(harness.events.size() - 1));
+      harness.advance(5000);
+
+      assertEquals("closed interstitial 1002", harness.eventNames().get(harness.events.size() - 1));
+      assertEquals("idle", harness.call("getState", "1002")[0]);
+    }
+  }
+}
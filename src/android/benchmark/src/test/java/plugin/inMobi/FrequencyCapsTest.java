@@ -0,0 +1,94 @@
+//
+//  FrequencyCapsTest.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.inMobi;
+
+import static org.junit.Assert.assertEquals;
+import static plugin.inMobi.PluginHarness.table;
+
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+// Caps hold however show() calls are timed
+public class FrequencyCapsTest
+{
+  private PluginHarness fHarness;
+  // Placement stats outlive the harness, impressions are counted from here
+  private double fImpressions1001;
+  private double fImpressions1003;
+
+  @Before
+  public void setUp()
+  {
+    fHarness = new PluginHarness();
+    fHarness.init(table(
+      "accountId", "test",
+      "fakeBackend", table("latency", table("median", 0, "max", 0)),
+      "frequencyCaps", table("banner", table("maxImpressions", 1, "period", 3600))
+    ));
+    fHarness.callAndSettle("load", "banner", "1001");
+    fHarness.callAndSettle("load", "banner", "1003");
+    fHarness.events.clear();
+    fImpressions1001 = impressions("1001");
+    fImpressions1003 = impressions("1003");
+  }
+
+  @After
+  public void tearDown()
+  {
+    fHarness.close();
+  }
+
+  private double impressions(String placementId)
+  {
+    return (Double)PluginHarness.asMap(fHarness.call("getStats", placementId)[0]).get("impressions");
+  }
+
+  // Both shows pass the check on the Lua thread, only the first may reach the screen
+  @Test
+  public void showsInOneFrameShareTheCap()
+  {
+    fHarness.call("show", "1001");
+    fHarness.call("show", "1003");
+    fHarness.settle();
+
+    assertEquals(Arrays.asList("displayed banner 1001", "capped banner 1003"), fHarness.eventNames());
+    assertEquals(fImpressions1001 + 1, impressions("1001"), 0);
+    assertEquals(fImpressions1003, impressions("1003"), 0);
+    assertEquals("showing", fHarness.call("getState", "1001")[0]);
+    assertEquals("capped", fHarness.call("getState", "1003")[0]);
+  }
+
+  // Once the cap is used up, show() refuses without a trip to the UI thread
+  @Test
+  public void laterShowsAreCapped()
+  {
+    fHarness.callAndSettle("show", "1001");
+    fHarness.events.clear();
+
+    fHarness.callAndSettle("show", "1003");
+
+    assertEquals(Arrays.asList("capped banner 1003"), fHarness.eventNames());
+    assertEquals(fImpressions1003, impressions("1003"), 0);
+  }
+
+  // Showing a banner already on screen again, eg. to align it, isn't capped
+  @Test
+  public void reshowingIsNotCapped()
+  {
+    fHarness.callAndSettle("show", "1001");
+    fHarness.callAndSettle("show", "1001", table("yAlign", "bottom"));
+
+    assertEquals(Arrays.asList("displayed banner 1001", "displayed banner 1001"), fHarness.eventNames());
+    assertEquals(fImpressions1001 + 1, impressions("1001"), 0);
+  }
+}
@@ -0,0 +1,98 @@
+//
+//  GetStateTest.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.inMobi;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static plugin.inMobi.PluginHarness.list;
+import static plugin.inMobi.PluginHarness.table;
+
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.inmobi.ads.InMobiAdRequestStatus.StatusCode;
+
+// getState() reports failed loads and capped ads, with the time spent in each state
+public class GetStateTest
+{
+  private PluginHarness fHarness;
+
+  private void start(Map<String, Object> fakeBackend, Map<String, Object> frequencyCaps)
+  {
+    fHarness = new PluginHarness();
+    fHarness.init(table("accountId", "test", "fakeBackend", fakeBackend, "frequencyCaps", frequencyCaps));
+  }
+
+  @After
+  public void tearDown()
+  {
+    fHarness.close();
+  }
+
+  @Test
+  public void failedLoadStaysFailedWithItsCode()
+  {
+    start(table("fillRate", 0, "errorCodes", list("NETWORK_UNREACHABLE"), "latency", table("median", 0.1, "sigma", 0, "max", 0.1)), null);
+
+    fHarness.callAndSettle("load", "interstitial", "1002");
+    fHarness.advance(100);
+
+    final Map<Object, Object> failed = fHarness.lastEvent();
+    assertEquals("failed interstitial 1002", fHarness.eventNames().get(fHarness.events.size() - 1));
+    assertEquals(true, failed.get("isError"));
+    assertEquals(AdEvent.describe(StatusCode.NETWORK_UNREACHABLE, "fake network_unreachable"), failed.get("response"));
+    assertArrayEquals(new Object[] {"failed", 0.0}, fHarness.call("getState", "1002"));
+
+    fHarness.advance(2500);
+    assertArrayEquals(new Object[] {"failed", 2.5}, fHarness.call("getState", "1002"));
+    assertArrayEquals(new Object[] {false}, fHarness.call("isLoaded", "1002"));
+
+    // Loading again leaves the failure behind
+    fHarness.callAndSettle("load", "interstitial", "1002");
+    assertEquals("loading", fHarness.call("getState", "1002")[0]);
+  }
+
+  // Retries keep the placement loading, it only fails once they run out
+  @Test
+  public void failsOnlyAfterRetries()
+  {
+    start(table("fillRate", 0, "latency", table("median", 0, "max", 0)), null);
+
+    fHarness.callAndSettle("load", "interstitial", "1002", table("retry", table("maxAttempts", 2, "baseDelay", 1, "jitter", 0)));
+    assertEquals("loading", fHarness.call("getState", "1002")[0]);
+
+    fHarness.advance(1000);
+    assertEquals("failed", fHarness.call("getState", "1002")[0]);
+  }
+
+  @Test
+  public void cappedAdIsCappedUntilTheIntervalPasses()
+  {
+    start(table("latency", table("median", 0, "max", 0)), table("1001", table("minInterval", 3600)));
+
+    fHarness.callAndSettle("load", "banner", "1001");
+    fHarness.callAndSettle("show", "1001");
+    fHarness.callAndSettle("hide", "1001");
+    fHarness.callAndSettle("load", "banner", "1001");
+    assertEquals("loaded banner 1001", fHarness.eventNames().get(fHarness.events.size() - 1));
+
+    final Object[] state = fHarness.call("getState", "1001");
+    assertEquals("capped", state[0]);
+    assertTrue((Double)state[1] >= 0);
+    assertArrayEquals(new Object[] {true}, fHarness.call("isLoaded", "1001"));
+
+    fHarness.callAndSettle("show", "1001");
+    assertEquals("capped banner 1001", fHarness.eventNames().get(fHarness.events.size() - 1));
+    assertEquals("capped", fHarness.call("getState", "1001")[0]);
+  }
+}
@@ -0,0 +1,167 @@
+//
+//  LoadGroupTest.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.inMobi;
+
+import static org.junit.Assert.assertEquals;
+import static plugin.inMobi.PluginHarness.list;
+import static plugin.inMobi.PluginHarness.table;
+
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Test;
+
+// Each strategy requests the group's placements when it should, and a cancelled group requests nothing more
+public class LoadGroupTest
+{
+  private PluginHarness fHarness;
+
+  // Every load takes the given time, placements fill unless listed as never filling
+  private void start(long latencyMs, String... unfilledPlacementIds)
+  {
+    final Object[] fillRates = new Object[unfilledPlacementIds.length * 2];
+    for (int i = 0; i < unfilledPlacementIds.length; i++)
+    {
+      fillRates[i * 2] = unfilledPlacementIds[i];
+      fillRates[i * 2 + 1] = 0;
+    }
+    final double latency = latencyMs / 1000.0;
+
+    fHarness = new PluginHarness();
+    fHarness.init(table("accountId", "test", "fakeBackend", table("fillRates", table(fillRates), "latency", table("median", latency, "sigma", 0, "max", latency))));
+  }
+
+  @After
+  public void tearDown()
+  {
+    fHarness.close();
+  }
+
+  private String state(String placementId)
+  {
+    return (String)fHarness.call("getState", placementId)[0];
+  }
+
+  private int count(String eventName)
+  {
+    int count = 0;
+    for (String name : fHarness.eventNames())
+    {
+      if (name.equals(eventName))
+      {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  // The placement that won the group, from the group's own loaded event
+  private Object winner(String groupName)
+  {
+    for (int i = fHarness.events.size() - 1; i >= 0; i--)
+    {
+      final Map<Object, Object> event = fHarness.events.get(i);
+      if (groupName.equals(event.get("placementId")) && "loaded".equals(event.get("phase")))
+      {
+        return PluginHarness.asMap(event.get("data")).get("placementId");
+      }
+    }
+    return null;
+  }
+
+  @Test
+  public void waterfallMovesOnAfterNoFill()
+  {
+    start(100, "2001");
+
+    fHarness.callAndSettle("loadGroup", "waterfall", list("2001", "2002", "2003"), table("strategy", "waterfall"));
+    assertEquals("loading", state("2001"));
+    assertEquals("idle", state("2002"));
+
+    fHarness.advance(100);
+    assertEquals("failed", state("2001"));
+    assertEquals("loading", state("2002"));
+    assertEquals("idle", state("2003"));
+
+    fHarness.advance(100);
+    assertEquals("2002", winner("waterfall"));
+    assertEquals("idle", state("2003"));
+  }
+
+  @Test
+  public void waterfallFailsOnceEveryPlacementHasFailed()
+  {
+    start(100, "2011", "2012");
+
+    fHarness.callAndSettle("loadGroup", "exhausted", list("2011", "2012"), table("strategy", "waterfall"));
+    fHarness.advance(100);
+    assertEquals(0, count("failed interstitial exhausted"));
+
+    fHarness.advance(100);
+    assertEquals(1, count("failed interstitial exhausted"));
+  }
+
+  // The second request goes out once the first has had hedgeDelay to fill, the third never does
+  @Test
+  public void hedgedIssuesTheNextRequestAfterTheDelay()
+  {
+    start(1000);
+
+    fHarness.callAndSettle("loadGroup", "hedged", list("2101", "2102", "2103"), table("strategy", "hedged", "hedgeDelay", 0.6));
+    assertEquals("loading", state("2101"));
+
+    fHarness.advance(599);
+    assertEquals("idle", state("2102"));
+    fHarness.advance(1);
+    assertEquals("loading", state("2102"));
+
+    fHarness.advance(400);
+    assertEquals("2101", winner("hedged"));
+
+    // The hedge that lost keeps loading into its own placement
+    fHarness.advance(1000);
+    assertEquals("ready", state("2102"));
+    assertEquals("idle", state("2103"));
+  }
+
+  @Test
+  public void parallelRequestsEveryPlacementAtOnce()
+  {
+    start(100, "2201");
+
+    fHarness.callAndSettle("loadGroup", "parallel", list("2201", "2202", "2203"), table("strategy", "parallel"));
+    assertEquals("loading", state("2201"));
+    assertEquals("loading", state("2202"));
+    assertEquals("loading", state("2203"));
+
+    fHarness.advance(100);
+    assertEquals("2202", winner("parallel"));
+    assertEquals("ready", state("2203"));
+  }
+
+  // Loading a group again cancels it, its pending hedge never goes out and it never reports
+  @Test
+  public void cancelledGroupStopsRequesting()
+  {
+    start(1000);
+
+    fHarness.callAndSettle("loadGroup", "cancelled", list("2301", "2302"), table("strategy", "hedged", "hedgeDelay", 0.5));
+    fHarness.callAndSettle("loadGroup", "cancelled", list("2303"));
+
+    fHarness.advance(1000);
+    assertEquals("idle", state("2302"));
+    assertEquals("ready", state("2301"));
+    assertEquals("2303", winner("cancelled"));
+
+    fHarness.advance(1000);
+    assertEquals(1, count("loaded interstitial cancelled"));
+    assertEquals("idle", state("2302"));
+  }
+}
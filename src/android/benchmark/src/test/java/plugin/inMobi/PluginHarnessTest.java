@@ -0,0 +1,79 @@
+//
+//  PluginHarnessTest.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.inMobi;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static plugin.inMobi.PluginHarness.table;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ansca.corona.CoronaBeacon;
+
+// The harness drives the plugin far enough for the benchmarks to measure what they claim to
+public class PluginHarnessTest
+{
+  private PluginHarness fHarness;
+
+  @Before
+  public void setUp()
+  {
+    fHarness = new PluginHarness();
+    fHarness.init(table("accountId", "test", "fakeBackend", table("latency", table("median", 0, "max", 0))));
+  }
+
+  @After
+  public void tearDown()
+  {
+    fHarness.close();
+  }
+
+  @Test
+  public void initDispatchesInit()
+  {
+    assertEquals("init", fHarness.eventNames().get(0));
+    assertEquals("inMobi", fHarness.events.get(0).get("provider"));
+    assertEquals("adsRequest", fHarness.events.get(0).get("name"));
+  }
+
+  @Test
+  public void loadedBannerIsReady()
+  {
+    fHarness.callAndSettle("load", "banner", "1001");
+
+    assertEquals("loaded banner 1001", fHarness.eventNames().get(fHarness.events.size() - 1));
+    assertArrayEquals(new Object[] {true}, fHarness.call("isLoaded", "1001"));
+    assertEquals("ready", fHarness.call("getState", "1001")[0]);
+
+    fHarness.callAndSettle("show", "1001");
+    assertEquals("showing", fHarness.call("getState", "1001")[0]);
+  }
+
+  // One request beacon per load() and one impression beacon per show(), sent straight away
+  @Test
+  public void loadAndShowSendOneBeaconEach()
+  {
+    final int sent = CoronaBeacon.sentCount();
+
+    fHarness.callAndSettle("load", "banner", "1001");
+    assertEquals(sent + 1, CoronaBeacon.sentCount());
+    fHarness.callAndSettle("show", "1001");
+    assertEquals(sent + 2, CoronaBeacon.sentCount());
+  }
+
+  @Test
+  public void unknownPlacementIsIdle()
+  {
+    assertArrayEquals(new Object[] {false}, fHarness.call("isLoaded", "1002"));
+    assertArrayEquals(new Object[] {"idle", 0.0}, fHarness.call("getState", "1002"));
+  }
+}
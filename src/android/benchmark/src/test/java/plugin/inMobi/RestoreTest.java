@@ -0,0 +1,150 @@
+//
+//  RestoreTest.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.inMobi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static plugin.inMobi.PluginHarness.table;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.inmobi.sdk.InMobiSdk;
+import com.inmobi.sdk.InMobiSdk.Gender;
+
+// What one run stores is read back off the Lua thread and applied before the next run's SDK init
+public class RestoreTest
+{
+  @Rule
+  public final TemporaryFolder fFolder = new TemporaryFolder();
+
+  private static Map<String, Object> persistingInit(Object... options)
+  {
+    final Map<String, Object> init = table(options);
+    init.put("accountId", "test");
+    init.put("persistUserDetails", true);
+    return init;
+  }
+
+  // Holds the file thread until released, so a test can act while a restore is still being read
+  private static CountDownLatch holdFileThread()
+  {
+    final CountDownLatch release = new CountDownLatch(1);
+    AtomicFile.background(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          release.await();
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    });
+    return release;
+  }
+
+  @Test
+  public void userDetailsAndConsentComeBack()
+  {
+    final File files = fFolder.getRoot();
+    try (PluginHarness first = new PluginHarness(files))
+    {
+      first.init(persistingInit("hasUserConsent", true));
+      first.call("setUserDetails", table("gender", "male", "postCode", "12345"));
+    }
+
+    try (PluginHarness second = new PluginHarness(files))
+    {
+      final int userDetailCalls = InMobiSdk.getUserDetailCalls();
+      second.init(persistingInit());
+
+      assertEquals("init", second.eventNames().get(0));
+      assertEquals(true, PluginHarness.asMap(second.events.get(0).get("data")).get("restored"));
+      assertEquals(true, InMobiSdk.getConsent().opt(InMobiSdk.IM_GDPR_CONSENT_AVAILABLE));
+      assertEquals(userDetailCalls + 2, InMobiSdk.getUserDetailCalls());
+    }
+  }
+
+  // An impression counted by the last run still caps the next one
+  @Test
+  public void impressionsComeBack()
+  {
+    final File files = fFolder.getRoot();
+    final Map<String, Object> init = table(
+      "accountId", "test",
+      "fakeBackend", table("latency", table("median", 0, "max", 0)),
+      "frequencyCaps", table("banner", table("maxImpressions", 1, "period", 3600))
+    );
+    try (PluginHarness first = new PluginHarness(files))
+    {
+      first.init(init);
+      first.callAndSettle("load", "banner", "1001");
+      first.callAndSettle("show", "1001");
+      assertEquals("displayed banner 1001", first.eventNames().get(first.events.size() - 1));
+    }
+
+    try (PluginHarness second = new PluginHarness(files))
+    {
+      second.init(init);
+      second.callAndSettle("load", "banner", "1001");
+      assertEquals("capped", second.call("getState", "1001")[0]);
+
+      second.callAndSettle("show", "1001");
+      assertEquals("capped banner 1001", second.eventNames().get(second.events.size() - 1));
+    }
+  }
+
+  @Test
+  public void sdkInitWaitsForTheRestore()
+  {
+    try (PluginHarness harness = new PluginHarness(fFolder.getRoot()))
+    {
+      final CountDownLatch release = holdFileThread();
+      harness.callInit(persistingInit());
+      harness.settle();
+      assertTrue(harness.events.isEmpty());
+
+      release.countDown();
+      harness.settleFiles();
+      assertEquals("init", harness.eventNames().get(0));
+    }
+  }
+
+  // Details given while the stored ones are still being read win, the rest of the stored ones are kept
+  @Test
+  public void detailsSetDuringTheRestoreWin()
+  {
+    final File files = fFolder.getRoot();
+    try (PluginHarness first = new PluginHarness(files))
+    {
+      first.init(persistingInit());
+      first.call("setUserDetails", table("gender", "male", "postCode", "12345"));
+    }
+
+    try (PluginHarness second = new PluginHarness(files))
+    {
+      final CountDownLatch release = holdFileThread();
+      second.callInit(persistingInit());
+      second.call("setUserDetails", table("gender", "female"));
+      release.countDown();
+      second.settleFiles();
+    }
+
+    final TargetingStore.Snapshot stored = new TargetingStore(files).read();
+    assertEquals(Gender.FEMALE, stored.details.gender);
+    assertEquals("12345", stored.details.postCode);
+  }
+}
@@ -0,0 +1,119 @@
+//
+//  RetryPolicyTest.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.inMobi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static plugin.inMobi.PluginHarness.list;
+import static plugin.inMobi.PluginHarness.table;
+
+import java.util.EnumSet;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.inmobi.ads.InMobiAdRequestStatus.StatusCode;
+import com.naef.jnlua.LuaState;
+
+// Backoff, jitter and attempt counting, with the randomness pinned
+public class RetryPolicyTest
+{
+  // A random source whose nextDouble() is always the same
+  private static final class FixedRandom extends Random
+  {
+    private final double fValue;
+
+    FixedRandom(double value)
+    {
+      fValue = value;
+    }
+
+    @Override
+    public double nextDouble()
+    {
+      return fValue;
+    }
+  }
+
+  private static RetryPolicy policy(int maxAttempts, double jitter)
+  {
+    return new RetryPolicy(maxAttempts, 1000, 5000, jitter, RetryPolicy.defaultRetryOn());
+  }
+
+  @Test
+  public void delayDoublesUpToTheCap()
+  {
+    final RetryPolicy policy = policy(10, 0);
+    final Random random = new FixedRandom(0.9);
+
+    assertEquals(1000, policy.delayMs(1, random));
+    assertEquals(2000, policy.delayMs(2, random));
+    assertEquals(4000, policy.delayMs(3, random));
+    assertEquals(5000, policy.delayMs(4, random));
+    assertEquals(5000, policy.delayMs(100, random));
+  }
+
+  @Test
+  public void jitterTakesOffAFractionOfTheDelay()
+  {
+    final RetryPolicy policy = policy(10, 0.5);
+
+    assertEquals(2000, policy.delayMs(2, new FixedRandom(0)));
+    assertEquals(1500, policy.delayMs(2, new FixedRandom(0.5)));
+    assertEquals(1000, policy.delayMs(2, new FixedRandom(1)));
+  }
+
+  @Test
+  public void maxAttemptsCountsTheFirstLoad()
+  {
+    final RetryPolicy policy = policy(3, 0);
+
+    assertTrue(policy.shouldRetry(StatusCode.NO_FILL, 1));
+    assertTrue(policy.shouldRetry(StatusCode.NO_FILL, 2));
+    assertFalse(policy.shouldRetry(StatusCode.NO_FILL, 3));
+    assertFalse(policy(1, 0).shouldRetry(StatusCode.NO_FILL, 1));
+  }
+
+  @Test
+  public void onlyListedCodesAreRetried()
+  {
+    final RetryPolicy policy = new RetryPolicy(3, 1000, 5000, 0, EnumSet.of(StatusCode.NETWORK_UNREACHABLE));
+
+    assertTrue(policy.shouldRetry(StatusCode.NETWORK_UNREACHABLE, 1));
+    assertFalse(policy.shouldRetry(StatusCode.NO_FILL, 1));
+    assertFalse(policy.shouldRetry(null, 1));
+  }
+
+  @Test
+  public void fromLuaReadsSecondsAndCodeNames()
+  {
+    final LuaState L = new LuaState();
+    PluginHarness.push(L, table("maxAttempts", 5, "baseDelay", 0.5, "maxDelay", 8, "jitter", 0, "retryOn", list("no_fill", "unknown")));
+
+    final RetryPolicy policy = RetryPolicy.fromLua(L, -1, "inMobi.loadMany()");
+
+    assertEquals(5, policy.maxAttempts);
+    assertEquals(500, policy.baseDelayMs);
+    assertEquals(8000, policy.maxDelayMs);
+    assertEquals(EnumSet.of(StatusCode.NO_FILL), policy.retryOn);
+    assertEquals(1, L.getTop());
+  }
+
+  @Test
+  public void fromLuaRejectsNegativeDelays()
+  {
+    final LuaState L = new LuaState();
+    PluginHarness.push(L, table("baseDelay", -1));
+
+    assertNull(RetryPolicy.fromLua(L, -1, "inMobi.loadGroup()"));
+  }
+}
@@ -0,0 +1,179 @@
+//
+//  TimerWheelTest.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.inMobi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.SystemClock;
+
+// Timeouts fire on their tick, in order, once, and not at all once cancelled
+public class TimerWheelTest
+{
+  private static final long kStart = 1000000;
+  private static final long kTickMs = 100;
+
+  private final MessageQueue fQueue = Looper.getMainLooper().getQueue();
+  private final List<String> fFired = new ArrayList<>();
+  private TimerWheel fWheel;
+
+  // Records when it fires
+  private final class Recording extends TimerWheel.Timeout
+  {
+    final String name;
+
+    Recording(String name)
+    {
+      this.name = name;
+    }
+
+    @Override
+    void expire()
+    {
+      fFired.add(name + "@" + (SystemClock.uptimeMillis() - kStart));
+    }
+  }
+
+  @Before
+  public void setUp()
+  {
+    fQueue.clear();
+    SystemClock.setUptimeMillis(kStart);
+    fWheel = new TimerWheel(new Handler(Looper.getMainLooper()), kTickMs);
+  }
+
+  @After
+  public void tearDown()
+  {
+    fWheel.clear();
+    fQueue.clear();
+  }
+
+  @Test
+  public void firesOnTheTickContainingTheDeadline()
+  {
+    final Recording timeout = new Recording("a");
+    fWheel.schedule(timeout, kStart + 250);
+    assertTrue(timeout.isScheduled());
+
+    fQueue.advanceBy(199);
+    assertTrue(fFired.isEmpty());
+    fQueue.advanceBy(1);
+
+    assertEquals(Arrays.asList("a@200"), fFired);
+    assertFalse(timeout.isScheduled());
+  }
+
+  @Test
+  public void timeoutsInOneTickShareOneMessage()
+  {
+    for (int i = 0; i < 10; i++)
+    {
+      fWheel.schedule(new Recording("t" + i), kStart + 500 + i);
+    }
+    assertEquals(1, fQueue.size());
+
+    fQueue.advanceBy(500);
+    assertEquals(10, fFired.size());
+    assertEquals(0, fQueue.size());
+  }
+
+  @Test
+  public void firesInDeadlineOrderAcrossTicks()
+  {
+    fWheel.schedule(new Recording("late"), kStart + 900);
+    fWheel.schedule(new Recording("early"), kStart + 300);
+    fWheel.schedule(new Recording("middle"), kStart + 600);
+
+    fQueue.advanceBy(1000);
+
+    assertEquals(Arrays.asList("early@300", "middle@600", "late@900"), fFired);
+  }
+
+  @Test
+  public void cancelledTimeoutNeverFires()
+  {
+    final Recording cancelled = new Recording("cancelled");
+    fWheel.schedule(cancelled, kStart + 300);
+    fWheel.schedule(new Recording("kept"), kStart + 300);
+    fWheel.cancel(cancelled);
+    assertFalse(cancelled.isScheduled());
+
+    fQueue.advanceBy(1000);
+
+    assertEquals(Arrays.asList("kept@300"), fFired);
+  }
+
+  @Test
+  public void rescheduleMovesTheDeadline()
+  {
+    final Recording timeout = new Recording("a");
+    fWheel.schedule(timeout, kStart + 300);
+    fWheel.schedule(timeout, kStart + 700);
+
+    fQueue.advanceBy(1000);
+
+    assertEquals(Arrays.asList("a@700"), fFired);
+  }
+
+  // A deadline more than one turn of the wheel away waits for its own turn
+  @Test
+  public void laterTurnsWaitTheirTurn()
+  {
+    final long deadline = 64 * kTickMs * 2 + 50;
+    fWheel.schedule(new Recording("a"), kStart + deadline);
+
+    fQueue.advanceBy(deadline - 51);
+    assertTrue(fFired.isEmpty());
+    fQueue.advanceBy(1);
+
+    assertEquals(Arrays.asList("a@" + (deadline - 50)), fFired);
+  }
+
+  @Test
+  public void expireCanReschedule()
+  {
+    final TimerWheel.Timeout periodic = new TimerWheel.Timeout() {
+      @Override
+      void expire() {
+        fFired.add("tick@" + (SystemClock.uptimeMillis() - kStart));
+        fWheel.schedule(this, SystemClock.uptimeMillis() + 1000);
+      }
+    };
+    fWheel.schedule(periodic, kStart + 1000);
+
+    fQueue.advanceBy(3000);
+
+    assertEquals(Arrays.asList("tick@1000", "tick@2000", "tick@3000"), fFired);
+  }
+
+  @Test
+  public void clearStopsTicking()
+  {
+    fWheel.schedule(new Recording("a"), kStart + 300);
+    fWheel.clear();
+
+    assertEquals(0, fQueue.size());
+    fQueue.advanceBy(1000);
+    assertTrue(fFired.isEmpty());
+  }
+}
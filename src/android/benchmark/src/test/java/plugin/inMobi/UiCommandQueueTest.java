@@ -0,0 +1,211 @@
+//
+//  UiCommandQueueTest.java
+//  inMobi Plugin benchmarks
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.inMobi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+
+// Calls in a burst run in one drain, with the banner calls that cancel out merged away
+public class UiCommandQueueTest
+{
+  private final MessageQueue fQueue = Looper.getMainLooper().getQueue();
+  // What ran, as "kind placementId"
+  private final List<String> fRan = new ArrayList<>();
+  private UiCommandQueue fCommands;
+
+  @Before
+  public void setUp()
+  {
+    fQueue.clear();
+    // Placements starting with "b" hold banners
+    fCommands = new UiCommandQueue(new Handler(Looper.getMainLooper()), new UiCommandQueue.BannerLookup() {
+      @Override
+      public boolean isBanner(String placementId) {
+        return placementId.startsWith("b");
+      }
+    });
+  }
+
+  @After
+  public void tearDown()
+  {
+    fQueue.clear();
+  }
+
+  private void enqueue(final UiCommandQueue.Kind kind, final String placementId)
+  {
+    fCommands.enqueue(kind, placementId, new Runnable() {
+      @Override
+      public void run() {
+        fRan.add(kind.name().toLowerCase() + " " + placementId);
+      }
+    });
+  }
+
+  private List<String> drain()
+  {
+    fQueue.runUntilIdle();
+    return fRan;
+  }
+
+  @Test
+  public void burstRunsInOneDrainInCallOrder()
+  {
+    enqueue(UiCommandQueue.Kind.LOAD, "b1");
+    enqueue(UiCommandQueue.Kind.LOAD, "i1");
+    enqueue(UiCommandQueue.Kind.SHOW, "i1");
+    assertEquals(1, fQueue.size());
+
+    assertEquals(Arrays.asList("load b1", "load i1", "show i1"), drain());
+    assertEquals(1, fCommands.drainCount());
+    assertEquals(3, fCommands.queuedCount());
+    assertEquals(0, fCommands.mergedCount());
+  }
+
+  @Test
+  public void showThenHideOnlyHides()
+  {
+    enqueue(UiCommandQueue.Kind.SHOW, "b1");
+    enqueue(UiCommandQueue.Kind.HIDE, "b1");
+
+    assertEquals(Arrays.asList("hide b1"), drain());
+    assertEquals(1, fCommands.mergedCount());
+  }
+
+  @Test
+  public void repeatedShowsKeepTheLast()
+  {
+    fCommands.enqueue(UiCommandQueue.Kind.SHOW, "b1", new Runnable() {
+      @Override
+      public void run() {
+        fRan.add("show b1 top");
+      }
+    });
+    fCommands.enqueue(UiCommandQueue.Kind.SHOW, "b1", new Runnable() {
+      @Override
+      public void run() {
+        fRan.add("show b1 bottom");
+      }
+    });
+
+    assertEquals(Arrays.asList("show b1 bottom"), drain());
+  }
+
+  @Test
+  public void repeatedHidesKeepTheFirst()
+  {
+    enqueue(UiCommandQueue.Kind.HIDE, "b1");
+    enqueue(UiCommandQueue.Kind.SHOW, "b1");
+    enqueue(UiCommandQueue.Kind.HIDE, "b1");
+
+    assertEquals(Arrays.asList("hide b1"), drain());
+    assertEquals(2, fCommands.mergedCount());
+  }
+
+  @Test
+  public void loadsAreBarriers()
+  {
+    enqueue(UiCommandQueue.Kind.SHOW, "b1");
+    enqueue(UiCommandQueue.Kind.LOAD, "b1");
+    enqueue(UiCommandQueue.Kind.HIDE, "b1");
+    enqueue(UiCommandQueue.Kind.SHOW, "b2");
+    enqueue(UiCommandQueue.Kind.LOAD, null);
+    enqueue(UiCommandQueue.Kind.HIDE, "b2");
+
+    assertEquals(Arrays.asList("show b1", "load b1", "hide b1", "show b2", "load null", "hide b2"), drain());
+  }
+
+  @Test
+  public void interstitialsAreNeverMerged()
+  {
+    enqueue(UiCommandQueue.Kind.SHOW, "i1");
+    enqueue(UiCommandQueue.Kind.SHOW, "i1");
+    enqueue(UiCommandQueue.Kind.HIDE, "i1");
+
+    assertEquals(Arrays.asList("show i1", "show i1", "hide i1"), drain());
+  }
+
+  @Test
+  public void placementsMergeSeparately()
+  {
+    enqueue(UiCommandQueue.Kind.SHOW, "b1");
+    enqueue(UiCommandQueue.Kind.SHOW, "b2");
+    enqueue(UiCommandQueue.Kind.HIDE, "b1");
+
+    assertEquals(Arrays.asList("show b2", "hide b1"), drain());
+  }
+
+  @Test
+  public void callsQueuedWhileDrainingGetTheirOwnDrain()
+  {
+    fCommands.enqueue(UiCommandQueue.Kind.SHOW, "b1", new Runnable() {
+      @Override
+      public void run() {
+        fRan.add("show b1");
+        enqueue(UiCommandQueue.Kind.HIDE, "b1");
+      }
+    });
+
+    assertEquals(Arrays.asList("show b1", "hide b1"), drain());
+    assertEquals(2, fCommands.drainCount());
+  }
+
+  @Test
+  public void clearDropsQueuedCalls()
+  {
+    enqueue(UiCommandQueue.Kind.SHOW, "b1");
+    fCommands.clear();
+
+    assertTrue(drain().isEmpty());
+  }
+
+  // Commands are recycled, queueing and draining allocate nothing once warmed up
+  @Test
+  public void queueingDoesNotAllocate()
+  {
+    final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+    assertTrue(threads.isThreadAllocatedMemorySupported());
+    threads.setThreadAllocatedMemoryEnabled(true);
+    final long threadId = Thread.currentThread().getId();
+    final Runnable action = new Runnable() {
+      @Override
+      public void run() {
+      }
+    };
+
+    long before = 0;
+    for (int round = 0; round < 120000; round++)
+    {
+      if (round == 20000)
+      {
+        before = threads.getThreadAllocatedBytes(threadId);
+      }
+      fCommands.enqueue(UiCommandQueue.Kind.LOAD, "i1", action);
+      fCommands.enqueue(UiCommandQueue.Kind.SHOW, "i1", action);
+      fQueue.runNext();
+    }
+    final long bytes = threads.getThreadAllocatedBytes(threadId) - before;
+
+    assertTrue(bytes + " bytes allocated by 200000 calls", bytes <= 4096);
+  }
+}
@@ -0,0 +1,93 @@
+//
+//  AdBackend.java
+//  inMobi Plugin
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.inMobi;
+
+import java.util.Map;
+
+import com.inmobi.ads.InMobiAdRequestStatus.StatusCode;
+
+import org.json.JSONObject;
+
+/**
+ * The ad network the plugin talks to.
+ * <p>
+ * {@link InMobiBackend} is the default. {@link FakeBackend} serves ads in process, so load and
+ * show cycles can be driven without a device or a network. The interface holds no Android types,
+ * so a backend can run on a plain JVM. All methods are called on the UI thread, and listeners must be
+ * called back on the UI thread.
+ */
+interface AdBackend
+{
+  // Metadata about a loaded ad
+  final class AdMeta
+  {
+    // The winning bid, 0 if unknown
+    final double bid;
+    // The creative id, null if unknown
+    final String creativeId;
+
+    AdMeta(final double bid, final String creativeId)
+    {
+      this.bid = bid;
+      this.creativeId = creativeId;
+    }
+  }
+
+  // Events for a single ad
+  interface Listener
+  {
+    void onLoadSucceeded(Ad ad, AdMeta meta);
+    void onLoadFailed(Ad ad, StatusCode code, String message);
+    // The ad is about to be shown (interstitials only)
+    void onWillDisplay(Ad ad);
+    // The ad was closed (interstitials only)
+    void onDismissed(Ad ad);
+    void onUserLeftApplication(Ad ad);
+    void onRewardsUnlocked(Ad ad, Map<Object, Object> rewards);
+  }
+
+  interface Ad
+  {
+    void setExtras(Map<String, String> extras);
+    void load();
+  }
+
+  // Banners place themselves in the app's overlay, sizes are in pixels
+  interface Banner extends Ad
+  {
+    // Add the banner to the overlay, off screen and invisible
+    void attach(int width, int height);
+    void resize(int width, int height);
+    // Put the banner on screen, gravity is a combination of android.view.Gravity flags
+    void show(int gravity);
+    // Take the banner out of layout, it stays attached
+    void hide();
+    // Hide the banner and remove it from the overlay
+    void detach();
+    void setAutoRefresh(boolean enabled, int intervalSeconds);
+    void destroy();
+  }
+
+  interface Interstitial extends Ad
+  {
+    boolean isReady();
+    void show();
+  }
+
+  // The backend version, for the log
+  String getVersion();
+
+  // Start the backend, logLevel may be null
+  void init(String accountId, JSONObject consent, String logLevel);
+
+  Banner createBanner(long placementId, Listener listener);
+
+  Interstitial createInterstitial(long placementId, Listener listener);
+}
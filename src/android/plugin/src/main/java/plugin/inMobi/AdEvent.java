@@ -0,0 +1,154 @@
+//
+//  AdEvent.java
+//  inMobi Plugin
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.inMobi;
+
+import com.ansca.corona.CoronaLua;
+import com.ansca.corona.CoronaLuaEvent;
+import com.ansca.corona.CoronaRuntime;
+import com.ansca.corona.CoronaRuntimeTask;
+import com.inmobi.ads.InMobiAdRequestStatus;
+import com.naef.jnlua.LuaState;
+
+/**
+ * A fixed-field adsRequest event.
+ * <p>
+ * Instances are recycled through an {@link AdEventPool} and written straight onto the Lua stack,
+ * so dispatching an event in steady state, a loaded ad's metadata included, does not allocate. Only
+ * the rare events that carry a {@code data} map (rewards, refresh reports, init, resume and memory
+ * trim counts) allocate that map. An event is also its own runtime task and its own queue link, so
+ * neither sending nor batching it needs a wrapper object.
+ */
+final class AdEvent implements CoronaRuntimeTask
+{
+  // Lua event keys
+  private static final String PHASE_KEY = "phase";
+  private static final String TYPE_KEY = "type";
+  private static final String PLACEMENT_ID_KEY = "placementId";
+  private static final String DATA_KEY = "data";
+  private static final String BID_KEY = "bid";
+  private static final String CREATIVE_ID_KEY = "creativeId";
+
+  // Event fields (null fields are left out of the Lua table)
+  String phase;
+  String type;
+  String placementId;
+  boolean isError;
+  String response;
+  Object data;
+  // A loaded ad's metadata, written as the data table when there is no data
+  AdBackend.AdMeta meta;
+
+  // Link used by the pool and the pending event queue
+  AdEvent next;
+
+  // The pool this event is returned to after delivery
+  private final AdEventPool fPool;
+
+  // Cached "code - message" strings, indexed by status code ordinal
+  private static final InMobiAdRequestStatus.StatusCode[] kStatusCodes = InMobiAdRequestStatus.StatusCode.values();
+  private static final StatusText[] sStatusTexts = new StatusText[kStatusCodes.length];
+
+  AdEvent(final AdEventPool pool)
+  {
+    fPool = pool;
+  }
+
+  // Runs on the Lua thread when the event is sent on its own
+  @Override
+  public void executeUsing(CoronaRuntime runtime)
+  {
+    fPool.deliver(runtime.getLuaState(), this);
+  }
+
+  // Push the event fields into the table at the top of the stack
+  void pushFields(LuaState L)
+  {
+    if (phase != null) {
+      L.pushString(phase);
+      L.setField(-2, PHASE_KEY);
+    }
+    if (type != null) {
+      L.pushString(type);
+      L.setField(-2, TYPE_KEY);
+    }
+    if (placementId != null) {
+      L.pushString(placementId);
+      L.setField(-2, PLACEMENT_ID_KEY);
+    }
+    L.pushBoolean(isError);
+    L.setField(-2, CoronaLuaEvent.ISERROR_KEY);
+    if (response != null) {
+      L.pushString(response);
+      L.setField(-2, CoronaLuaEvent.RESPONSE_KEY);
+    }
+    if (data != null) {
+      CoronaLua.pushValue(L, data);
+      L.setField(-2, DATA_KEY);
+    }
+    else if (meta != null) {
+      L.newTable();
+      L.pushNumber(meta.bid);
+      L.setField(-2, BID_KEY);
+      if (meta.creativeId != null) {
+        L.pushString(meta.creativeId);
+        L.setField(-2, CREATIVE_ID_KEY);
+      }
+      L.setField(-2, DATA_KEY);
+    }
+  }
+
+  // Clear all fields before the event goes back to the pool
+  void reset()
+  {
+    phase = null;
+    type = null;
+    placementId = null;
+    isError = false;
+    response = null;
+    data = null;
+    meta = null;
+    next = null;
+  }
+
+  // Get the "code - message" response for a failed request, reusing the string when the message repeats
+  static String describe(final InMobiAdRequestStatus.StatusCode code, final String message)
+  {
+    if (code == null) {
+      return "null - " + message;
+    }
+
+    final int index = code.ordinal();
+    StatusText text = sStatusTexts[index];
+    if (text == null || !text.matches(message)) {
+      text = new StatusText(message, code + " - " + message);
+      sStatusTexts[index] = text;
+    }
+
+    return text.text;
+  }
+
+  // An immutable status message and its formatted response
+  private static final class StatusText
+  {
+    final String message;
+    final String text;
+
+    StatusText(final String message, final String text)
+    {
+      this.message = message;
+      this.text = text;
+    }
+
+    boolean matches(final String other)
+    {
+      return message == null ? other == null : message.equals(other);
+    }
+  }
+}
@@ -0,0 +1,81 @@
+//
+//  AdEventPool.java
+//  inMobi Plugin
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.inMobi;
+
+import com.naef.jnlua.LuaState;
+
+/**
+ * A small free list of {@link AdEvent} records.
+ * <p>
+ * Events are acquired on the thread raising them (usually the UI thread) and released on the
+ * Lua thread once delivered. The free list is intrusive, so acquiring and releasing never allocate
+ * once the pool has warmed up.
+ */
+final class AdEventPool
+{
+  // Called on the Lua thread to write and dispatch an event
+  interface Delivery
+  {
+    void deliver(LuaState L, AdEvent event);
+  }
+
+  // The maximum number of idle events kept around
+  private static final int kMaxIdle = 32;
+
+  private final Delivery fDelivery;
+  private AdEvent fFree;
+  private int fFreeCount;
+
+  AdEventPool(final Delivery delivery)
+  {
+    fDelivery = delivery;
+  }
+
+  // Get a cleared event, allocating only when the pool is empty
+  AdEvent acquire()
+  {
+    synchronized (this) {
+      final AdEvent event = fFree;
+      if (event != null) {
+        fFree = event.next;
+        event.next = null;
+        fFreeCount--;
+        return event;
+      }
+    }
+
+    return new AdEvent(this);
+  }
+
+  // Return an event to the pool
+  void release(final AdEvent event)
+  {
+    event.reset();
+
+    synchronized (this) {
+      if (fFreeCount < kMaxIdle) {
+        event.next = fFree;
+        fFree = event;
+        fFreeCount++;
+      }
+    }
+  }
+
+  // Deliver an event and recycle it
+  void deliver(final LuaState L, final AdEvent event)
+  {
+    try {
+      fDelivery.deliver(L, event);
+    }
+    finally {
+      release(event);
+    }
+  }
+}
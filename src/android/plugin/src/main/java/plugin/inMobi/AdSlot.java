@@ -0,0 +1,184 @@
+//
+//  AdSlot.java
+//  inMobi Plugin
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.inMobi;
+
+import android.os.SystemClock;
+
+/**
+ * Holds the state of a single placement.
+ * <p>
+ * Slots are created and mutated on the UI thread. The state and when it was entered are published
+ * together through a volatile field so that the Lua thread can read them (eg. from inMobi.isLoaded()
+ * or inMobi.getState()) without taking a lock or seeing one without the other.
+ */
+final class AdSlot
+{
+  // The lifecycle of a placement
+  enum State
+  {
+    IDLE,
+    LOADING,
+    READY,
+    SHOWING,
+    CONSUMED,
+    FAILED
+  }
+
+  // A state and when it was entered, in SystemClock.uptimeMillis() time
+  static final class StateChange
+  {
+    final State state;
+    final long at;
+
+    StateChange(final State state, final long at)
+    {
+      this.state = state;
+      this.at = at;
+    }
+  }
+
+  // The placement id as passed from Lua
+  final String placementId;
+  // The placement id as required by the InMobi SDK
+  final long placementIdValue;
+  // The ad type name (banner or interstitial)
+  final String adType;
+  // Whether this slot holds a banner
+  final boolean isBanner;
+
+  // The banner view (banners only)
+  AdBackend.Banner bannerAd;
+  // The banner size in dp (banners only)
+  int bannerWidth;
+  int bannerHeight;
+  // When the banner was parked in the banner pool, 0 if it isn't pooled (banners only)
+  long hiddenAt;
+  // The pending idle eviction of a pooled banner (banners only)
+  Runnable evictTask;
+  // The preloaded interstitials (interstitials only)
+  InterstitialPool interstitials;
+
+  // How failed loads are retried, null to fail straight away
+  RetryPolicy retryPolicy;
+  // The loadMany() batch waiting for this slot to settle, null if none
+  LoadBatch loadBatch;
+  // The loadGroup() group waiting for this slot to settle, null if none
+  LoadGroup loadGroup;
+  // The number of consecutive failed load attempts
+  int failedAttempts;
+  // The pending retry, if any
+  Runnable retryTask;
+  // The expiry / proactive reload timer
+  TimerWheel.Timeout ttlTimeout;
+  // How often the plugin refreshes the banner while it is on screen, 0 if it doesn't (banners only)
+  long refreshIntervalMs;
+  // The next refresh (banners only)
+  TimerWheel.Timeout refreshTimeout;
+  // Refreshes not reported yet and the last one's bid and creative, for the throttled "refreshed" event (banners only)
+  int unreportedRefreshes;
+  AdBackend.AdMeta lastRefreshMeta;
+  // When the last "refreshed" event was sent, and the pending one for refreshes since (banners only)
+  long refreshReportedAt;
+  TimerWheel.Timeout refreshReportTimeout;
+  // When the banner last loaded, in SystemClock.uptimeMillis() time (banners only)
+  long loadedAt;
+  // When the pending banner load was requested, 0 if the SDK is refreshing on its own (banners only)
+  long loadRequestedAt;
+  // When show() was called from Lua and when the ad was displayed
+  long showRequestedAt;
+  long displayedAt;
+  // The placement's stats
+  AdStats stats;
+
+  // The current state and when it was entered, published to the Lua thread
+  private volatile StateChange fState = new StateChange(State.IDLE, SystemClock.uptimeMillis());
+  // When the loaded banner stops being showable (banners only), published to the Lua thread
+  private volatile long fReadyUntil = Long.MAX_VALUE;
+  // The bid and creative of the loaded banner (banners only), published to the Lua thread
+  private volatile AdBackend.AdMeta fBannerMeta;
+
+  AdSlot(final String placementId, final long placementIdValue, final String adType, final boolean isBanner)
+  {
+    this.placementId = placementId;
+    this.placementIdValue = placementIdValue;
+    this.adType = adType;
+    this.isBanner = isBanner;
+  }
+
+  State getState()
+  {
+    return fState.state;
+  }
+
+  // The current state together with when it was entered
+  StateChange getStateChange()
+  {
+    return fState;
+  }
+
+  // Setting the current state again keeps the time it was entered
+  void setState(final State state)
+  {
+    if (fState.state != state) {
+      fState = new StateChange(state, SystemClock.uptimeMillis());
+    }
+  }
+
+  // Set when a loaded banner stops being showable
+  void setReadyUntil(final long readyUntil)
+  {
+    fReadyUntil = readyUntil;
+  }
+
+  // Set the bid and creative of the loaded banner
+  void setBannerMeta(final AdBackend.AdMeta meta)
+  {
+    fBannerMeta = meta;
+  }
+
+  // The highest bid of the ads waiting to be shown, 0 if unknown
+  double readyBid()
+  {
+    if (interstitials != null) {
+      return interstitials.bestBid();
+    }
+    final AdBackend.AdMeta meta = fBannerMeta;
+    return meta != null ? meta.bid : 0;
+  }
+
+  // When the loaded ad stops being showable, Long.MAX_VALUE if it doesn't expire
+  long readyUntil()
+  {
+    return interstitials != null ? interstitials.readyUntil() : fReadyUntil;
+  }
+
+  // Whether a loaded, unexpired ad is waiting to be shown
+  boolean isReady()
+  {
+    if (fState.state != State.READY) {
+      return false;
+    }
+    final long readyUntil = readyUntil();
+    return readyUntil == Long.MAX_VALUE || readyUntil > SystemClock.uptimeMillis();
+  }
+
+  // Whether the ad has loaded and can be shown (or is already on screen)
+  boolean hasLoaded()
+  {
+    return fState.state == State.SHOWING || isReady();
+  }
+
+  // Whether a new load() may replace this slot
+  boolean isReusable()
+  {
+    final State state = fState.state;
+    return state == State.IDLE || state == State.CONSUMED || state == State.FAILED;
+  }
+}
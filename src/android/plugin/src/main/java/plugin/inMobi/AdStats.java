@@ -0,0 +1,129 @@
+//
+//  AdStats.java
+//  inMobi Plugin
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.inMobi;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.inmobi.ads.InMobiAdRequestStatus;
+import com.naef.jnlua.LuaState;
+
+/**
+ * Counters and latency histograms for a single placement.
+ * <p>
+ * Stats outlive the placement's AdSlot, so they cover every load of the placement during the
+ * process. They are recorded on the UI thread and read by inMobi.getStats() on the Lua thread.
+ */
+final class AdStats
+{
+  private static final InMobiAdRequestStatus.StatusCode[] kStatusCodes = InMobiAdRequestStatus.StatusCode.values();
+
+  // load() request to onAdLoadSucceeded
+  final LatencyHistogram loadLatency = new LatencyHistogram();
+  // Lua call to the start of its work on the UI thread
+  final LatencyHistogram uiHopLatency = new LatencyHistogram();
+  // show() call to the ad being displayed
+  final LatencyHistogram showLatency = new LatencyHistogram();
+  // Interstitial displayed to dismissed
+  final LatencyHistogram timeToDismiss = new LatencyHistogram();
+
+  private volatile long fRequests;
+  private volatile long fFills;
+  private volatile long fFailures;
+  private volatile long fImpressions;
+  private final AtomicLongArray fFailuresByCode = new AtomicLongArray(kStatusCodes.length);
+  // Rolling average of the winning bids, weighted towards the most recent loads
+  private volatile double fAverageBid;
+  private volatile long fBids;
+
+  // How much a new bid moves the rolling average (roughly the last 10 loads count)
+  private static final double kBidWeight = 0.2;
+
+  void recordRequest()
+  {
+    fRequests++;
+  }
+
+  // Record a fill, with a negative latency when the load wasn't requested by the plugin (eg. a banner auto refresh)
+  void recordFill(final long latencyMs)
+  {
+    fFills++;
+    if (latencyMs >= 0) {
+      loadLatency.record(latencyMs);
+    }
+  }
+
+  void recordFailure(final InMobiAdRequestStatus.StatusCode code)
+  {
+    fFailures++;
+    if (code != null) {
+      final int index = code.ordinal();
+      fFailuresByCode.lazySet(index, fFailuresByCode.get(index) + 1);
+    }
+  }
+
+  void recordImpression()
+  {
+    fImpressions++;
+  }
+
+  // Record the winning bid of a loaded ad, unknown bids (0) are left out
+  void recordBid(final double bid)
+  {
+    if (bid <= 0) {
+      return;
+    }
+    final double average = fAverageBid;
+    fAverageBid = fBids == 0 ? bid : average + kBidWeight * (bid - average);
+    fBids++;
+  }
+
+  // The rolling average bid, 0 if no bid is known yet (any thread)
+  double averageBid()
+  {
+    return fAverageBid;
+  }
+
+  // Push the stats table onto the Lua stack
+  void push(LuaState L)
+  {
+    L.newTable(0, 11);
+    L.pushNumber(fRequests);
+    L.setField(-2, "requests");
+    L.pushNumber(fFills);
+    L.setField(-2, "fills");
+    L.pushNumber(fFailures);
+    L.setField(-2, "failures");
+    L.pushNumber(fImpressions);
+    L.setField(-2, "impressions");
+    L.pushNumber(fBids);
+    L.setField(-2, "bids");
+    L.pushNumber(fAverageBid);
+    L.setField(-2, "averageBid");
+
+    L.newTable();
+    for (int i = 0; i < kStatusCodes.length; i++) {
+      final long count = fFailuresByCode.get(i);
+      if (count > 0) {
+        L.pushNumber(count);
+        L.setField(-2, kStatusCodes[i].name());
+      }
+    }
+    L.setField(-2, "failuresByCode");
+
+    loadLatency.push(L);
+    L.setField(-2, "loadLatency");
+    uiHopLatency.push(L);
+    L.setField(-2, "uiHopLatency");
+    showLatency.push(L);
+    L.setField(-2, "showLatency");
+    timeToDismiss.push(L);
+    L.setField(-2, "timeToDismiss");
+  }
+}
@@ -0,0 +1,196 @@
+//
+//  AtomicFile.java
+//  inMobi Plugin
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.inMobi;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import android.util.Log;
+
+/**
+ * A small versioned binary record in the app's files directory, replaced atomically.
+ * <p>
+ * Each record starts with a magic number and a format version; a record with any other header is
+ * ignored. Writes go to a temporary file that is synced and renamed over the old one, so a crash
+ * mid-write never leaves a torn record behind. Background work for every file runs in order on one
+ * shared thread, which stops when idle and is reused across inits.
+ */
+final class AtomicFile
+{
+  // Corona log tag name
+  private static final String CORONA_LOG_TAG = "Corona";
+
+  // How long the shared background thread is kept once idle
+  private static final long kIdleMs = 30000;
+
+  private static final ThreadPoolExecutor sBackground = newBackground();
+
+  // Reads a record's body (after the header)
+  interface Reader<T>
+  {
+    T read(DataInputStream in) throws IOException;
+  }
+
+  // Writes a record's body (after the header)
+  interface Writer
+  {
+    void write(DataOutputStream out) throws IOException;
+  }
+
+  private final File fFile;
+  private final File fTempFile;
+  private final int fMagic;
+  private final int fVersion;
+  // What the record holds, for log messages (eg. "user details")
+  private final String fDescription;
+
+  AtomicFile(final File directory, final String name, final int magic, final int version, final String description)
+  {
+    fFile = new File(directory, name);
+    fTempFile = new File(directory, name + ".tmp");
+    fMagic = magic;
+    fVersion = version;
+    fDescription = description;
+  }
+
+  private static ThreadPoolExecutor newBackground()
+  {
+    final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, kIdleMs, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable task) {
+        // Never keeps the process alive on its own
+        final Thread thread = new Thread(task, "inMobi files");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  // Run a task on the shared background thread, after every task queued before it
+  static void background(final Runnable task)
+  {
+    sBackground.execute(task);
+  }
+
+  // Read the record, null if there is none or it can't be read
+  <T> T read(final Reader<T> reader)
+  {
+    DataInputStream in = null;
+    try
+    {
+      in = new DataInputStream(new BufferedInputStream(new FileInputStream(fFile)));
+      if (in.readInt() != fMagic || in.readUnsignedByte() != fVersion)
+      {
+        Log.i(CORONA_LOG_TAG, "WARNING: inMobi ignored stored " + fDescription + " with an unknown format");
+        return null;
+      }
+      return reader.read(in);
+    }
+    catch (FileNotFoundException e)
+    {
+      // Nothing stored yet
+      return null;
+    }
+    catch (IOException e)
+    {
+      Log.i(CORONA_LOG_TAG, "WARNING: inMobi could not read stored " + fDescription + ": " + e.getMessage());
+      return null;
+    }
+    finally
+    {
+      close(in);
+    }
+  }
+
+  // Replace the record now, returns false if it couldn't be stored
+  boolean write(final Writer writer)
+  {
+    FileOutputStream stream = null;
+    try
+    {
+      stream = new FileOutputStream(fTempFile);
+      final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+      out.writeInt(fMagic);
+      out.writeByte(fVersion);
+      writer.write(out);
+      out.flush();
+      stream.getFD().sync();
+      out.close();
+      stream = null;
+
+      if (!fTempFile.renameTo(fFile))
+      {
+        Log.i(CORONA_LOG_TAG, "WARNING: inMobi could not replace stored " + fDescription);
+        return false;
+      }
+      return true;
+    }
+    catch (IOException e)
+    {
+      Log.i(CORONA_LOG_TAG, "WARNING: inMobi could not store " + fDescription + ": " + e.getMessage());
+      return false;
+    }
+    finally
+    {
+      close(stream);
+    }
+  }
+
+  // Replace the record on the shared background thread (the writer must only use state it owns)
+  void writeInBackground(final Writer writer)
+  {
+    background(new Runnable() {
+      @Override
+      public void run() {
+        write(writer);
+      }
+    });
+  }
+
+  // Remove the record, returns false if it couldn't be removed
+  boolean delete()
+  {
+    if (fFile.exists() && !fFile.delete())
+    {
+      Log.i(CORONA_LOG_TAG, "WARNING: inMobi could not remove stored " + fDescription);
+      return false;
+    }
+    return true;
+  }
+
+  private static void close(Closeable stream)
+  {
+    if (stream != null)
+    {
+      try
+      {
+        stream.close();
+      }
+      catch (IOException e)
+      {
+        // NOP
+      }
+    }
+  }
+}
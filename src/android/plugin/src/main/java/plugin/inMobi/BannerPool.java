@@ -0,0 +1,143 @@
+//
+//  BannerPool.java
+//  inMobi Plugin
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.inMobi;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+/**
+ * Keeps hidden banners attached (but gone from layout) so they can be shown again or reloaded
+ * in place instead of being rebuilt.
+ * <p>
+ * The pool holds at most {@code maxHidden} banners, least recently hidden first, and evicts a
+ * banner that stays hidden longer than the idle timeout. UI thread only.
+ */
+final class BannerPool
+{
+  // Releases a banner that has been evicted from the pool
+  interface Evictor
+  {
+    void evict(AdSlot slot);
+  }
+
+  private final Handler fHandler;
+  private final Evictor fEvictor;
+  private final ArrayDeque<AdSlot> fHidden = new ArrayDeque<>();
+  private int fMaxHidden = 0;
+  private long fIdleTimeoutMs = 60000;
+
+  BannerPool(final Handler handler, final Evictor evictor)
+  {
+    fHandler = handler;
+    fEvictor = evictor;
+  }
+
+  // Set the pool limits, a size of 0 disables pooling
+  void configure(final int maxHidden, final long idleTimeoutMs)
+  {
+    fMaxHidden = Math.max(0, maxHidden);
+    fIdleTimeoutMs = Math.max(0, idleTimeoutMs);
+    trim();
+  }
+
+  boolean isEnabled()
+  {
+    return fMaxHidden > 0;
+  }
+
+  boolean contains(final AdSlot slot)
+  {
+    return slot.hiddenAt != 0;
+  }
+
+  // Park a hidden banner, evicting the least recently hidden banners over the cap
+  void park(final AdSlot slot)
+  {
+    if (contains(slot)) {
+      fHidden.remove(slot);
+    }
+    slot.hiddenAt = SystemClock.uptimeMillis();
+    fHidden.addLast(slot);
+    scheduleEviction(slot);
+    trim();
+  }
+
+  // Take a banner out of the pool because it is being shown again, returns false if it wasn't pooled
+  boolean unpark(final AdSlot slot)
+  {
+    if (!contains(slot)) {
+      return false;
+    }
+    fHidden.remove(slot);
+    cancelEviction(slot);
+    slot.hiddenAt = 0;
+    return true;
+  }
+
+  // Restart the idle timeout of a pooled banner (eg. after reloading it in place)
+  void touch(final AdSlot slot)
+  {
+    if (contains(slot)) {
+      park(slot);
+    }
+  }
+
+  // Forget every pooled banner without releasing it (the activity is going away)
+  void clear()
+  {
+    for (Iterator<AdSlot> it = fHidden.iterator(); it.hasNext();) {
+      AdSlot slot = it.next();
+      cancelEviction(slot);
+      slot.hiddenAt = 0;
+    }
+    fHidden.clear();
+  }
+
+  private void trim()
+  {
+    while (fHidden.size() > fMaxHidden) {
+      evict(fHidden.peekFirst());
+    }
+  }
+
+  private void evict(final AdSlot slot)
+  {
+    unpark(slot);
+    fEvictor.evict(slot);
+  }
+
+  private void scheduleEviction(final AdSlot slot)
+  {
+    cancelEviction(slot);
+    if (fIdleTimeoutMs > 0) {
+      slot.evictTask = new Runnable() {
+        @Override
+        public void run() {
+          slot.evictTask = null;
+          if (contains(slot)) {
+            evict(slot);
+          }
+        }
+      };
+      fHandler.postAtTime(slot.evictTask, slot.hiddenAt + fIdleTimeoutMs);
+    }
+  }
+
+  private void cancelEviction(final AdSlot slot)
+  {
+    if (slot.evictTask != null) {
+      fHandler.removeCallbacks(slot.evictTask);
+      slot.evictTask = null;
+    }
+  }
+}
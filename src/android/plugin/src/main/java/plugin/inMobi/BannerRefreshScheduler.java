@@ -0,0 +1,117 @@
+//
+//  BannerRefreshScheduler.java
+//  inMobi Plugin
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.inMobi;
+
+import java.util.HashSet;
+
+import android.os.SystemClock;
+
+/**
+ * Refreshes auto refreshing banners while they are on screen.
+ * <p>
+ * The SDK's own auto refresh keeps going while a banner is loaded off screen or hidden, so the
+ * plugin turns it off and refreshes banners itself: each visible banner is reloaded once per its
+ * refresh interval (never more often than the floor), and nothing is refreshed while the runtime
+ * is suspended. A banner's countdown starts over when it is shown again or the app resumes.
+ * UI thread only.
+ */
+final class BannerRefreshScheduler
+{
+  // Reloads a banner in place
+  interface Refresher
+  {
+    void refresh(AdSlot slot);
+  }
+
+  // The shortest refresh interval allowed unless init sets another one
+  static final long kDefaultMinIntervalMs = 20000;
+
+  private final TimerWheel fWheel;
+  private final Refresher fRefresher;
+  // The banners on screen
+  private final HashSet<AdSlot> fVisible = new HashSet<>();
+  private long fMinIntervalMs = kDefaultMinIntervalMs;
+  private boolean fPaused = false;
+
+  BannerRefreshScheduler(final TimerWheel wheel, final Refresher refresher)
+  {
+    fWheel = wheel;
+    fRefresher = refresher;
+  }
+
+  void setMinIntervalMs(final long minIntervalMs)
+  {
+    fMinIntervalMs = Math.max(0, minIntervalMs);
+  }
+
+  // A banner is now on screen (showing it again keeps its countdown)
+  void shown(final AdSlot slot)
+  {
+    fVisible.add(slot);
+    schedule(slot);
+  }
+
+  // A banner has left the screen
+  void hidden(final AdSlot slot)
+  {
+    fVisible.remove(slot);
+    if (slot.refreshTimeout != null) {
+      fWheel.cancel(slot.refreshTimeout);
+    }
+  }
+
+  // Stop refreshing while the runtime is suspended
+  void pause()
+  {
+    fPaused = true;
+    for (AdSlot slot : fVisible) {
+      if (slot.refreshTimeout != null) {
+        fWheel.cancel(slot.refreshTimeout);
+      }
+    }
+  }
+
+  void resume()
+  {
+    fPaused = false;
+    for (AdSlot slot : fVisible) {
+      schedule(slot);
+    }
+  }
+
+  // Forget every banner (their timeouts are dropped with the wheel)
+  void clear()
+  {
+    fVisible.clear();
+    fPaused = false;
+  }
+
+  private void schedule(final AdSlot slot)
+  {
+    if (fPaused || slot.refreshIntervalMs <= 0) {
+      return;
+    }
+
+    if (slot.refreshTimeout == null) {
+      slot.refreshTimeout = new TimerWheel.Timeout() {
+        @Override
+        void expire() {
+          if (!fPaused && fVisible.contains(slot)) {
+            fRefresher.refresh(slot);
+            schedule(slot);
+          }
+        }
+      };
+    }
+    if (!slot.refreshTimeout.isScheduled()) {
+      fWheel.schedule(slot.refreshTimeout, SystemClock.uptimeMillis() + Math.max(slot.refreshIntervalMs, fMinIntervalMs));
+    }
+  }
+}
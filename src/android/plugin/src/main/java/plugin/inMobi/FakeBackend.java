@@ -0,0 +1,421 @@
+//
+//  FakeBackend.java
+//  inMobi Plugin
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.inMobi;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import android.util.Log;
+
+import com.inmobi.ads.InMobiAdRequestStatus.StatusCode;
+import com.naef.jnlua.LuaState;
+import com.naef.jnlua.LuaType;
+
+import org.json.JSONObject;
+
+/**
+ * An in-process backend that serves fake ads without touching the network.
+ * <p>
+ * Each load fills with probability {@code fillRate}, or the placement's own rate, after a log-normally distributed latency,
+ * or fails with one of {@code errorCodes}. All randomness comes from one seeded generator, so
+ * the same sequence of calls with the same seed always gets the same results.
+ * <p>
+ * The delays run on the given {@link Scheduler} and banners only record where they would be, so
+ * the backend needs no Android views or looper and can be driven from a plain JVM test.
+ */
+final class FakeBackend implements AdBackend
+{
+  // Corona log tag name
+  private static final String CORONA_LOG_TAG = "Corona";
+
+  // Runs the fake SDK's callbacks after a delay, on the UI thread
+  interface Scheduler
+  {
+    void schedule(Runnable task, long delayMs);
+  }
+
+  // The fraction of loads that fill (0 - 1), and the placements that fill at their own rate
+  final double fillRate;
+  final Map<Long, Double> placementFillRates;
+  // The median load latency and its spread (the standard deviation of its log), in milliseconds
+  final long latencyMedianMs;
+  final double latencySigma;
+  // The longest load latency, in milliseconds
+  final long latencyMaxMs;
+  // The codes failed loads report, picked at random
+  final StatusCode[] errorCodes;
+  // Bids are drawn uniformly from 0 to maxBid
+  final double maxBid;
+  // How long a fake interstitial stays on screen before it is dismissed, in milliseconds
+  final long displayTimeMs;
+
+  private final Scheduler fScheduler;
+  private final Random fRandom;
+
+  FakeBackend(final Scheduler scheduler, final double fillRate, final long latencyMedianMs, final double latencySigma, final long latencyMaxMs, final StatusCode[] errorCodes, final double maxBid, final long displayTimeMs, final long seed, final Map<Long, Double> placementFillRates)
+  {
+    fScheduler = scheduler;
+    this.fillRate = Math.max(0, Math.min(fillRate, 1));
+    this.placementFillRates = placementFillRates;
+    this.latencyMedianMs = Math.max(0, latencyMedianMs);
+    this.latencySigma = Math.max(0, latencySigma);
+    this.latencyMaxMs = Math.max(this.latencyMedianMs, latencyMaxMs);
+    this.errorCodes = errorCodes;
+    this.maxBid = Math.max(0, maxBid);
+    this.displayTimeMs = Math.max(0, displayTimeMs);
+    fRandom = new Random(seed);
+  }
+
+  @Override
+  public String getVersion()
+  {
+    return "fake";
+  }
+
+  @Override
+  public void init(final String accountId, final JSONObject consent, final String logLevel)
+  {
+    Log.i(CORONA_LOG_TAG, "WARNING: inMobi is using the fake backend, no real ads will be served");
+  }
+
+  @Override
+  public Banner createBanner(final long placementId, final Listener listener)
+  {
+    return new FakeBanner(placementId, listener);
+  }
+
+  @Override
+  public Interstitial createInterstitial(final long placementId, final Listener listener)
+  {
+    return new FakeInterstitial(placementId, listener);
+  }
+
+  // The latency of the next load
+  private long nextLatencyMs()
+  {
+    final double latency = latencyMedianMs * Math.exp(latencySigma * fRandom.nextGaussian());
+    return Math.min((long)latency, latencyMaxMs);
+  }
+
+  // The fraction of the placement's loads that fill
+  private double fillRateOf(final long placementId)
+  {
+    final Double rate = placementFillRates.get(placementId);
+    return rate != null ? rate : fillRate;
+  }
+
+  // Load an ad: decide its outcome now, deliver it after the latency
+  private void load(final FakeAd ad)
+  {
+    final long latencyMs = nextLatencyMs();
+    final boolean fills = fRandom.nextDouble() < fillRateOf(ad.fPlacementId);
+    final StatusCode code = fills ? null : errorCodes[fRandom.nextInt(errorCodes.length)];
+    final AdMeta meta = fills ? new AdMeta(fRandom.nextDouble() * maxBid, "fake-" + fRandom.nextInt(1000)) : null;
+    final int generation = ++ad.fGeneration;
+
+    ad.fReady = false;
+    fScheduler.schedule(new Runnable() {
+      @Override
+      public void run() {
+        // A later load or destroy supersedes this one
+        if (ad.fGeneration != generation) {
+          return;
+        }
+        if (fills) {
+          ad.fReady = true;
+          ad.fListener.onLoadSucceeded(ad, meta);
+        }
+        else {
+          ad.fListener.onLoadFailed(ad, code, "fake " + code.name().toLowerCase());
+        }
+      }
+    }, latencyMs);
+  }
+
+  private abstract static class FakeAd implements Ad
+  {
+    final long fPlacementId;
+    final Listener fListener;
+    int fGeneration;
+    boolean fReady;
+
+    FakeAd(final long placementId, final Listener listener)
+    {
+      fPlacementId = placementId;
+      fListener = listener;
+    }
+
+    @Override
+    public void setExtras(final Map<String, String> extras)
+    {
+      // NOP
+    }
+  }
+
+  // Where a fake banner would be on screen
+  enum Placement
+  {
+    // Not in the overlay
+    DETACHED,
+    // In the overlay, off screen or out of layout
+    HIDDEN,
+    // On screen
+    SHOWN
+  }
+
+  final class FakeBanner extends FakeAd implements Banner
+  {
+    Placement placement = Placement.DETACHED;
+    // The size in pixels and the android.view.Gravity flags it was last shown with
+    int width;
+    int height;
+    int gravity;
+
+    FakeBanner(final long placementId, final Listener listener)
+    {
+      super(placementId, listener);
+    }
+
+    @Override
+    public void attach(final int width, final int height)
+    {
+      resize(width, height);
+      placement = Placement.HIDDEN;
+    }
+
+    @Override
+    public void resize(final int width, final int height)
+    {
+      this.width = width;
+      this.height = height;
+    }
+
+    @Override
+    public void show(final int gravity)
+    {
+      this.gravity = gravity;
+      placement = Placement.SHOWN;
+    }
+
+    @Override
+    public void hide()
+    {
+      placement = Placement.HIDDEN;
+    }
+
+    @Override
+    public void detach()
+    {
+      placement = Placement.DETACHED;
+    }
+
+    @Override
+    public void setAutoRefresh(final boolean enabled, final int intervalSeconds)
+    {
+      // NOP, the fake banner only loads when asked to
+    }
+
+    @Override
+    public void load()
+    {
+      FakeBackend.this.load(this);
+    }
+
+    @Override
+    public void destroy()
+    {
+      fGeneration++;
+      fReady = false;
+    }
+  }
+
+  private final class FakeInterstitial extends FakeAd implements Interstitial
+  {
+    FakeInterstitial(final long placementId, final Listener listener)
+    {
+      super(placementId, listener);
+    }
+
+    @Override
+    public void load()
+    {
+      FakeBackend.this.load(this);
+    }
+
+    @Override
+    public boolean isReady()
+    {
+      return fReady;
+    }
+
+    @Override
+    public void show()
+    {
+      if (!fReady) {
+        return;
+      }
+      fReady = false;
+      fListener.onWillDisplay(this);
+
+      final int generation = fGeneration;
+      fScheduler.schedule(new Runnable() {
+        @Override
+        public void run() {
+          if (fGeneration == generation) {
+            fListener.onDismissed(FakeInterstitial.this);
+          }
+        }
+      }, displayTimeMs);
+    }
+  }
+
+  // The placement id as a number, null if it isn't one
+  private static Long placementIdFrom(String placementId)
+  {
+    try
+    {
+      return Long.valueOf(placementId);
+    }
+    catch (NumberFormatException e)
+    {
+      return null;
+    }
+  }
+
+  // Read a fake backend from the options table at the given stack index, null if the table is invalid
+  static FakeBackend fromLua(LuaState L, int index, Scheduler scheduler)
+  {
+    double fillRate = 1;
+    double latencyMedian = 0.2;
+    double latencySigma = 0.5;
+    double latencyMax = 10;
+    double maxBid = 1;
+    double displayTime = 0;
+    long seed = 0;
+    final ArrayList<StatusCode> errorCodes = new ArrayList<>();
+    final HashMap<Long, Double> placementFillRates = new HashMap<>();
+
+    // Keep addressing the table correctly while values are pushed above it
+    index = L.absIndex(index);
+
+    L.getField(index, "fillRate");
+    if (L.type(-1) == LuaType.NUMBER)
+    {
+      fillRate = L.toNumber(-1);
+    }
+    L.pop(1);
+
+    L.getField(index, "fillRates");
+    if (L.type(-1) == LuaType.TABLE)
+    {
+      L.pushNil();
+      while (L.next(-2))
+      {
+        final Long placementId = L.type(-2) == LuaType.STRING ? placementIdFrom(L.toString(-2)) : null;
+        if (placementId != null && L.type(-1) == LuaType.NUMBER && L.toNumber(-1) >= 0 && L.toNumber(-1) <= 1)
+        {
+          placementFillRates.put(placementId, L.toNumber(-1));
+        }
+        else
+        {
+          Log.i(CORONA_LOG_TAG, "WARNING: inMobi.init() options.fakeBackend.fillRates expects rates between 0 and 1 keyed by placement id");
+        }
+        L.pop(1);
+      }
+    }
+    L.pop(1);
+
+    L.getField(index, "latency");
+    if (L.type(-1) == LuaType.TABLE)
+    {
+      L.getField(-1, "median");
+      if (L.type(-1) == LuaType.NUMBER)
+      {
+        latencyMedian = L.toNumber(-1);
+      }
+      L.pop(1);
+
+      L.getField(-1, "sigma");
+      if (L.type(-1) == LuaType.NUMBER)
+      {
+        latencySigma = L.toNumber(-1);
+      }
+      L.pop(1);
+
+      L.getField(-1, "max");
+      if (L.type(-1) == LuaType.NUMBER)
+      {
+        latencyMax = L.toNumber(-1);
+      }
+      L.pop(1);
+    }
+    L.pop(1);
+
+    L.getField(index, "errorCodes");
+    if (L.type(-1) == LuaType.TABLE)
+    {
+      for (int i = 1; i <= L.length(-1); i++)
+      {
+        L.rawGet(-1, i);
+        if (L.type(-1) == LuaType.STRING)
+        {
+          final String name = L.toString(-1);
+          final StatusCode code = RetryPolicy.statusCodeNamed(name);
+          if (code != null)
+          {
+            errorCodes.add(code);
+          }
+          else
+          {
+            Log.i(CORONA_LOG_TAG, "WARNING: inMobi.init() options.fakeBackend.errorCodes - unknown status code '" + name + "'");
+          }
+        }
+        L.pop(1);
+      }
+    }
+    L.pop(1);
+
+    L.getField(index, "maxBid");
+    if (L.type(-1) == LuaType.NUMBER)
+    {
+      maxBid = L.toNumber(-1);
+    }
+    L.pop(1);
+
+    L.getField(index, "displayTime");
+    if (L.type(-1) == LuaType.NUMBER)
+    {
+      displayTime = L.toNumber(-1);
+    }
+    L.pop(1);
+
+    L.getField(index, "seed");
+    if (L.type(-1) == LuaType.NUMBER)
+    {
+      seed = (long)L.toNumber(-1);
+    }
+    L.pop(1);
+
+    if (fillRate < 0 || fillRate > 1 || latencyMedian < 0 || latencyMax < 0)
+    {
+      Log.i(CORONA_LOG_TAG, "ERROR: inMobi.init() options.fakeBackend - fillRate must be between 0 and 1 and latencies must not be negative");
+      return null;
+    }
+
+    if (errorCodes.isEmpty())
+    {
+      errorCodes.add(StatusCode.NO_FILL);
+    }
+
+    return new FakeBackend(scheduler, fillRate, (long)(latencyMedian * 1000), latencySigma, (long)(latencyMax * 1000), errorCodes.toArray(new StatusCode[0]), maxBid, (long)(displayTime * 1000), seed, placementFillRates);
+  }
+}
@@ -0,0 +1,104 @@
+//
+//  FrequencyCap.java
+//  inMobi Plugin
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.inMobi;
+
+/**
+ * How often a placement or an ad type may be shown: at most {@code maxImpressions} per
+ * {@code periodMs}, and at least {@code minIntervalMs} between two impressions.
+ * <p>
+ * The last impression times are kept in a ring buffer the size of the limit. Each impression works
+ * out when the next one is allowed, so checking the cap from any thread is a single volatile read.
+ * Times are wall clock milliseconds, so they still mean something after a restart.
+ */
+final class FrequencyCap
+{
+  // 0 for no impression limit
+  final int maxImpressions;
+  final long periodMs;
+  // 0 for no gap between impressions
+  final long minIntervalMs;
+
+  // The last impression times, fTimes[fNext] is the oldest once the buffer is full
+  private final long[] fTimes;
+  private int fNext = 0;
+  private int fCount = 0;
+  // When the next impression is allowed
+  private volatile long fNextAllowedAt = 0;
+
+  FrequencyCap(final int maxImpressions, final long periodMs, final long minIntervalMs)
+  {
+    this.maxImpressions = Math.max(0, maxImpressions);
+    this.periodMs = Math.max(0, periodMs);
+    this.minIntervalMs = Math.max(0, minIntervalMs);
+    fTimes = new long[Math.max(1, this.maxImpressions)];
+  }
+
+  // Whether an impression is allowed at the given time (any thread)
+  boolean allows(final long now)
+  {
+    return now >= fNextAllowedAt;
+  }
+
+  // When the next impression is allowed (any thread)
+  long nextAllowedAt()
+  {
+    return fNextAllowedAt;
+  }
+
+  synchronized void record(final long time)
+  {
+    fTimes[fNext] = time;
+    fNext = (fNext + 1) % fTimes.length;
+    if (fCount < fTimes.length) {
+      fCount++;
+    }
+    update();
+  }
+
+  // The impression times, oldest first
+  synchronized long[] times()
+  {
+    final long[] times = new long[fCount];
+    final int first = fCount < fTimes.length ? 0 : fNext;
+    for (int i = 0; i < fCount; i++) {
+      times[i] = fTimes[(first + i) % fTimes.length];
+    }
+    return times;
+  }
+
+  // Put back impression times read by times(), oldest first
+  synchronized void restore(final long[] times)
+  {
+    for (long time : times) {
+      fTimes[fNext] = time;
+      fNext = (fNext + 1) % fTimes.length;
+      if (fCount < fTimes.length) {
+        fCount++;
+      }
+    }
+    update();
+  }
+
+  private void update()
+  {
+    if (fCount == 0) {
+      fNextAllowedAt = 0;
+      return;
+    }
+
+    final long newest = fTimes[(fNext + fTimes.length - 1) % fTimes.length];
+    long nextAllowedAt = newest + minIntervalMs;
+    if (maxImpressions > 0 && fCount == maxImpressions) {
+      // The oldest impression has to leave the period first
+      nextAllowedAt = Math.max(nextAllowedAt, fTimes[fNext] + periodMs);
+    }
+    fNextAllowedAt = nextAllowedAt;
+  }
+}
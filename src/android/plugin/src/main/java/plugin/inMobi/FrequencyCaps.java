@@ -0,0 +1,298 @@
+//
+//  FrequencyCaps.java
+//  inMobi Plugin
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.inMobi;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import android.os.Handler;
+import android.util.Log;
+
+import com.naef.jnlua.LuaState;
+import com.naef.jnlua.LuaType;
+
+/**
+ * The frequency caps set by init's frequencyCaps option, per ad type and per placement.
+ * <p>
+ * An ad type cap counts the impressions of every placement of that type, a placement cap only its
+ * own. An impression has to be allowed by both. The caps are fixed once init has read them, so they
+ * can be checked from any thread. Impression times are stored in the app's files directory shortly
+ * after an impression, once for a burst of them, and read back in the background by the next init
+ * before it initializes the SDK.
+ */
+final class FrequencyCaps
+{
+  // Corona log tag name
+  private static final String CORONA_LOG_TAG = "Corona";
+
+  private static final String kFileName = "plugin.inMobi.caps";
+  // "IMFC"
+  private static final int kMagic = 0x494d4643;
+  private static final int kVersion = 1;
+  // Keys in the stored file
+  private static final String kTypePrefix = "t:";
+  private static final String kPlacementPrefix = "p:";
+  // How long the stored times lag behind the impressions, so bursts are written once
+  private static final long kWriteDelayMs = 5000;
+
+  private final HashMap<String, FrequencyCap> fTypeCaps;
+  private final HashMap<String, FrequencyCap> fPlacementCaps;
+  // null unless the times are persisted
+  private AtomicFile fFile = null;
+  private Handler fHandler = null;
+  // Whether impressions are waiting to be written (UI thread only)
+  private boolean fDirty = false;
+
+  private final Runnable fWriteTask = new Runnable() {
+    @Override
+    public void run() {
+      flush();
+    }
+  };
+
+  private FrequencyCaps(final HashMap<String, FrequencyCap> typeCaps, final HashMap<String, FrequencyCap> placementCaps)
+  {
+    fTypeCaps = typeCaps;
+    fPlacementCaps = placementCaps;
+  }
+
+  // Read the caps table at the given stack index, keyed by ad type ("banner", "interstitial") or placement id
+  static FrequencyCaps fromLua(LuaState L, int index, final String[] adTypes)
+  {
+    final HashMap<String, FrequencyCap> typeCaps = new HashMap<>();
+    final HashMap<String, FrequencyCap> placementCaps = new HashMap<>();
+
+    // Keep addressing the table correctly while values are pushed above it
+    index = L.absIndex(index);
+
+    L.pushNil();
+    while (L.next(index))
+    {
+      if (L.type(-2) == LuaType.STRING && L.type(-1) == LuaType.TABLE)
+      {
+        final String key = L.toString(-2);
+        final FrequencyCap cap = capFromLua(L, -1);
+        if (isAdType(key, adTypes))
+        {
+          typeCaps.put(key, cap);
+        }
+        else
+        {
+          placementCaps.put(key, cap);
+        }
+      }
+      else
+      {
+        Log.i(CORONA_LOG_TAG, "WARNING: inMobi.init() options.frequencyCaps expects tables keyed by ad type or placement id");
+      }
+      L.pop(1);
+    }
+
+    return new FrequencyCaps(typeCaps, placementCaps);
+  }
+
+  private static FrequencyCap capFromLua(LuaState L, int index)
+  {
+    int maxImpressions = 0;
+    double period = 0;
+    double minInterval = 0;
+
+    // Keep addressing the table correctly while values are pushed above it
+    index = L.absIndex(index);
+
+    L.getField(index, "maxImpressions");
+    if (L.type(-1) == LuaType.NUMBER)
+    {
+      maxImpressions = (int)L.toNumber(-1);
+    }
+    L.pop(1);
+
+    L.getField(index, "period");
+    if (L.type(-1) == LuaType.NUMBER)
+    {
+      period = L.toNumber(-1);
+    }
+    L.pop(1);
+
+    L.getField(index, "minInterval");
+    if (L.type(-1) == LuaType.NUMBER)
+    {
+      minInterval = L.toNumber(-1);
+    }
+    L.pop(1);
+
+    if (maxImpressions > 0 && period <= 0)
+    {
+      Log.i(CORONA_LOG_TAG, "WARNING: inMobi.init() options.frequencyCaps maxImpressions needs a period (seconds), the limit is ignored");
+      maxImpressions = 0;
+    }
+
+    return new FrequencyCap(maxImpressions, (long)(period * 1000), (long)(minInterval * 1000));
+  }
+
+  private static boolean isAdType(final String key, final String[] adTypes)
+  {
+    for (String adType : adTypes)
+    {
+      if (adType.equals(key))
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // Whether a placement of the given type (null if unknown) may be shown now (any thread)
+  boolean allows(final String adType, final String placementId, final long now)
+  {
+    return now >= nextAllowedAt(adType, placementId);
+  }
+
+  // When a placement of the given type (null if unknown) may be shown next (any thread)
+  long nextAllowedAt(final String adType, final String placementId)
+  {
+    long nextAllowedAt = 0;
+
+    final FrequencyCap placementCap = fPlacementCaps.get(placementId);
+    if (placementCap != null)
+    {
+      nextAllowedAt = placementCap.nextAllowedAt();
+    }
+    final FrequencyCap typeCap = adType != null ? fTypeCaps.get(adType) : null;
+    if (typeCap != null)
+    {
+      nextAllowedAt = Math.max(nextAllowedAt, typeCap.nextAllowedAt());
+    }
+
+    return nextAllowedAt;
+  }
+
+  // Count an impression, and store the new times shortly if they are persisted (UI thread only)
+  void recordImpression(final String adType, final String placementId, final long now)
+  {
+    final FrequencyCap placementCap = fPlacementCaps.get(placementId);
+    final FrequencyCap typeCap = fTypeCaps.get(adType);
+    if (placementCap == null && typeCap == null)
+    {
+      return;
+    }
+
+    if (placementCap != null)
+    {
+      placementCap.record(now);
+    }
+    if (typeCap != null)
+    {
+      typeCap.record(now);
+    }
+
+    if (fFile != null && !fDirty)
+    {
+      fDirty = true;
+      fHandler.postDelayed(fWriteTask, kWriteDelayMs);
+    }
+  }
+
+  // Store the impression times now if any are waiting, eg. before the app is suspended (UI thread only)
+  void flush()
+  {
+    if (!fDirty)
+    {
+      return;
+    }
+    fDirty = false;
+    fHandler.removeCallbacks(fWriteTask);
+
+    final HashMap<String, long[]> times = snapshot();
+    fFile.writeInBackground(new AtomicFile.Writer() {
+      @Override
+      public void write(DataOutputStream out) throws IOException {
+        out.writeInt(times.size());
+        for (Map.Entry<String, long[]> entry : times.entrySet()) {
+          final long[] values = entry.getValue();
+          out.writeUTF(entry.getKey());
+          out.writeShort(values.length);
+          for (long value : values) {
+            out.writeLong(value);
+          }
+        }
+      }
+    });
+  }
+
+  // Keep storing the impression times in the given directory, writing from the handler's thread
+  void persistIn(final File directory, final Handler handler)
+  {
+    fFile = new AtomicFile(directory, kFileName, kMagic, kVersion, "frequency caps");
+    fHandler = handler;
+  }
+
+  // Read the impression times left by the last run, null if there are none (any thread, persisted caps only)
+  HashMap<String, long[]> readStored()
+  {
+    return fFile.read(new AtomicFile.Reader<HashMap<String, long[]>>() {
+      @Override
+      public HashMap<String, long[]> read(DataInputStream in) throws IOException {
+        final HashMap<String, long[]> times = new HashMap<>();
+        final int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+          final String key = in.readUTF();
+          final long[] values = new long[in.readUnsignedShort()];
+          for (int j = 0; j < values.length; j++) {
+            values[j] = in.readLong();
+          }
+          times.put(key, values);
+        }
+        return times;
+      }
+    });
+  }
+
+  // Put back the impression times read by readStored(), before any impression of this run (UI thread only)
+  void restore(final HashMap<String, long[]> stored)
+  {
+    for (Map.Entry<String, long[]> entry : stored.entrySet())
+    {
+      final String key = entry.getKey();
+      FrequencyCap cap = null;
+      if (key.startsWith(kTypePrefix))
+      {
+        cap = fTypeCaps.get(key.substring(kTypePrefix.length()));
+      }
+      else if (key.startsWith(kPlacementPrefix))
+      {
+        cap = fPlacementCaps.get(key.substring(kPlacementPrefix.length()));
+      }
+      // Caps that are no longer set are dropped
+      if (cap != null)
+      {
+        cap.restore(entry.getValue());
+      }
+    }
+  }
+
+  private HashMap<String, long[]> snapshot()
+  {
+    final HashMap<String, long[]> times = new HashMap<>();
+    for (Map.Entry<String, FrequencyCap> entry : fTypeCaps.entrySet())
+    {
+      times.put(kTypePrefix + entry.getKey(), entry.getValue().times());
+    }
+    for (Map.Entry<String, FrequencyCap> entry : fPlacementCaps.entrySet())
+    {
+      times.put(kPlacementPrefix + entry.getKey(), entry.getValue().times());
+    }
+    return times;
+  }
+}
@@ -0,0 +1,254 @@
+//
+//  InMobiBackend.java
+//  inMobi Plugin
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.inMobi;
+
+import java.util.Map;
+
+import android.view.View;
+import android.widget.FrameLayout;
+import android.widget.FrameLayout.LayoutParams;
+
+import androidx.annotation.NonNull;
+
+import com.ansca.corona.CoronaActivity;
+import com.ansca.corona.CoronaEnvironment;
+import com.inmobi.ads.AdMetaInfo;
+import com.inmobi.ads.InMobiAdRequestStatus;
+import com.inmobi.ads.InMobiBanner;
+import com.inmobi.ads.InMobiInterstitial;
+import com.inmobi.ads.listeners.BannerAdEventListener;
+import com.inmobi.ads.listeners.InterstitialAdEventListener;
+import com.inmobi.sdk.InMobiSdk;
+import com.inmobi.sdk.InMobiSdk.LogLevel;
+
+import org.json.JSONObject;
+
+/**
+ * The InMobi SDK backend, on the current Corona activity.
+ */
+final class InMobiBackend implements AdBackend
+{
+  @Override
+  public String getVersion()
+  {
+    return InMobiSdk.getVersion();
+  }
+
+  @Override
+  public void init(final String accountId, final JSONObject consent, final String logLevel)
+  {
+    InMobiSdk.init(CoronaEnvironment.getCoronaActivity(), accountId, consent);
+
+    if (logLevel != null) {
+      if (logLevel.equalsIgnoreCase("debug")) {
+        InMobiSdk.setLogLevel(LogLevel.DEBUG);
+      }
+      else if (logLevel.equalsIgnoreCase("error")) {
+        InMobiSdk.setLogLevel(LogLevel.ERROR);
+      }
+    }
+  }
+
+  @Override
+  public Banner createBanner(final long placementId, final Listener listener)
+  {
+    return new BannerAd(CoronaEnvironment.getCoronaActivity(), placementId, listener);
+  }
+
+  @Override
+  public Interstitial createInterstitial(final long placementId, final Listener listener)
+  {
+    return new InterstitialAd(CoronaEnvironment.getCoronaActivity(), placementId, listener);
+  }
+
+  private static AdMeta meta(final AdMetaInfo info)
+  {
+    return info != null ? new AdMeta(info.getBid(), info.getCreativeID()) : new AdMeta(0, null);
+  }
+
+  // An InMobiBanner, its place in the activity's overlay and its listener
+  private static final class BannerAd extends BannerAdEventListener implements Banner
+  {
+    private final InMobiBanner fBanner;
+    private final FrameLayout fOverlay;
+    private final Listener fListener;
+    private LayoutParams fLayout;
+
+    BannerAd(final CoronaActivity activity, final long placementId, final Listener listener)
+    {
+      fBanner = new InMobiBanner(activity, placementId);
+      fOverlay = activity.getOverlayView();
+      fListener = listener;
+      fBanner.setListener(this);
+    }
+
+    @Override
+    public void attach(final int width, final int height)
+    {
+      fLayout = new LayoutParams(width, height);
+      // put it off screen
+      fLayout.topMargin = 10000;
+      fBanner.setLayoutParams(fLayout);
+      fOverlay.addView(fBanner);
+      fBanner.setVisibility(View.INVISIBLE);
+    }
+
+    @Override
+    public void resize(final int width, final int height)
+    {
+      fLayout.width = width;
+      fLayout.height = height;
+      fBanner.setLayoutParams(fLayout);
+    }
+
+    @Override
+    public void show(final int gravity)
+    {
+      fLayout.topMargin = 0;
+      fLayout.gravity = gravity;
+      fBanner.setVisibility(View.VISIBLE);
+    }
+
+    @Override
+    public void hide()
+    {
+      fBanner.setVisibility(View.GONE);
+    }
+
+    @Override
+    public void detach()
+    {
+      fBanner.setVisibility(View.GONE);
+      fOverlay.removeView(fBanner);
+    }
+
+    @Override
+    public void setAutoRefresh(final boolean enabled, final int intervalSeconds)
+    {
+      fBanner.setEnableAutoRefresh(enabled);
+      fBanner.setRefreshInterval(intervalSeconds);
+    }
+
+    @Override
+    public void setExtras(final Map<String, String> extras)
+    {
+      fBanner.setExtras(extras);
+    }
+
+    @Override
+    public void load()
+    {
+      fBanner.load();
+    }
+
+    @Override
+    public void destroy()
+    {
+      fBanner.destroy();
+    }
+
+    @Override
+    public void onAdLoadSucceeded(@NonNull InMobiBanner ad, @NonNull AdMetaInfo info)
+    {
+      fListener.onLoadSucceeded(this, meta(info));
+    }
+
+    @Override
+    public void onAdLoadFailed(InMobiBanner ad, InMobiAdRequestStatus status)
+    {
+      fListener.onLoadFailed(this, status.getStatusCode(), status.getMessage());
+    }
+
+    @Override
+    public void onUserLeftApplication(InMobiBanner ad)
+    {
+      fListener.onUserLeftApplication(this);
+    }
+
+    @Override
+    public void onRewardsUnlocked(InMobiBanner ad, Map<Object, Object> rewards)
+    {
+      fListener.onRewardsUnlocked(this, rewards);
+    }
+  }
+
+  // An InMobiInterstitial and its listener
+  private static final class InterstitialAd extends InterstitialAdEventListener implements Interstitial
+  {
+    private final InMobiInterstitial fInterstitial;
+    private final Listener fListener;
+
+    InterstitialAd(final CoronaActivity activity, final long placementId, final Listener listener)
+    {
+      fListener = listener;
+      fInterstitial = new InMobiInterstitial(activity, placementId, this);
+    }
+
+    @Override
+    public void setExtras(final Map<String, String> extras)
+    {
+      fInterstitial.setExtras(extras);
+    }
+
+    @Override
+    public void load()
+    {
+      fInterstitial.load();
+    }
+
+    @Override
+    public boolean isReady()
+    {
+      return fInterstitial.isReady();
+    }
+
+    @Override
+    public void show()
+    {
+      fInterstitial.show();
+    }
+
+    @Override
+    public void onAdLoadSucceeded(@NonNull InMobiInterstitial ad, @NonNull AdMetaInfo info)
+    {
+      fListener.onLoadSucceeded(this, meta(info));
+    }
+
+    @Override
+    public void onAdLoadFailed(InMobiInterstitial ad, InMobiAdRequestStatus status)
+    {
+      fListener.onLoadFailed(this, status.getStatusCode(), status.getMessage());
+    }
+
+    @Override
+    public void onAdWillDisplay(InMobiInterstitial ad)
+    {
+      fListener.onWillDisplay(this);
+    }
+
+    @Override
+    public void onAdDismissed(InMobiInterstitial ad)
+    {
+      fListener.onDismissed(this);
+    }
+
+    @Override
+    public void onUserLeftApplication(InMobiInterstitial ad)
+    {
+      fListener.onUserLeftApplication(this);
+    }
+
+    @Override
+    public void onRewardsUnlocked(InMobiInterstitial ad, Map<Object, Object> rewards)
+    {
+      fListener.onRewardsUnlocked(this, rewards);
+    }
+  }
+}
@@ -0,0 +1,291 @@
+//
+//  InterstitialPool.java
+//  inMobi Plugin
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.inMobi;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * The interstitials held by a single placement.
+ * <p>
+ * Keeps up to {@code depth} interstitials loading or ready, hands out one ready interstitial per
+ * show, and tells the owner how many it needs to top itself up again. Ready interstitials that are
+ * close to expiring are marked as being replaced, and are dropped once their replacement loads.
+ * All methods except {@link #readyCount()}, {@link #readyUntil()} and {@link #bestBid()} must be called
+ * on the UI thread.
+ */
+final class InterstitialPool
+{
+  // A loading or loaded interstitial
+  static final class Entry
+  {
+    final AdBackend.Interstitial ad;
+    // The bid and creative, once loaded
+    AdBackend.AdMeta meta;
+    // When it was requested, loaded and stops being showable, in SystemClock.uptimeMillis() time
+    final long requestedAt;
+    long loadedAt;
+    long expiresAt;
+    // Whether a replacement has been requested because it is about to expire
+    boolean replacing;
+
+    Entry(final AdBackend.Interstitial ad, final long requestedAt)
+    {
+      this.ad = ad;
+      this.requestedAt = requestedAt;
+    }
+  }
+
+  // The largest pool depth we accept
+  static final int kMaxDepth = 5;
+
+  // The number of interstitials to keep loading or ready (1 - kMaxDepth, LoadRequest checks it)
+  final int depth;
+  // Whether the pool should be topped up after an interstitial is dismissed
+  final boolean autoRefill;
+  // The attribution extras to set on every interstitial created for this pool
+  final Map<String, String> extras;
+
+  private final ArrayList<Entry> fLoading = new ArrayList<>();
+  private final ArrayList<Entry> fReady = new ArrayList<>();
+  private AdBackend.Interstitial fShowing;
+  // Published to the Lua thread
+  private volatile int fReadyCount;
+  private volatile long fReadyUntil;
+  private volatile double fBestBid;
+
+  InterstitialPool(final int depth, final boolean autoRefill, final Map<String, String> extras)
+  {
+    this.depth = depth;
+    this.autoRefill = autoRefill;
+    this.extras = extras;
+  }
+
+  // A new interstitial has been created and is loading
+  void addLoading(final AdBackend.Interstitial ad, final long now)
+  {
+    fLoading.add(new Entry(ad, now));
+  }
+
+  // An interstitial finished loading, returns its entry or null if it doesn't belong to this pool
+  Entry markReady(final AdBackend.Interstitial ad, final AdBackend.AdMeta meta, final long now, final long ttlMs)
+  {
+    final Entry loaded = removeLoading(ad);
+    if (loaded == null) {
+      return null;
+    }
+
+    // A fresh interstitial replaces the oldest one that is about to expire
+    for (int i = 0; i < fReady.size(); i++) {
+      if (fReady.get(i).replacing) {
+        fReady.remove(i);
+        break;
+      }
+    }
+
+    loaded.meta = meta;
+    loaded.loadedAt = now;
+    loaded.expiresAt = ttlMs > 0 ? now + ttlMs : Long.MAX_VALUE;
+    fReady.add(loaded);
+    publish();
+    return loaded;
+  }
+
+  // An interstitial failed to load, returns false if it doesn't belong to this pool
+  boolean markFailed(final AdBackend.Interstitial ad)
+  {
+    return removeLoading(ad) != null;
+  }
+
+  private Entry removeLoading(final AdBackend.Interstitial ad)
+  {
+    for (int i = 0; i < fLoading.size(); i++) {
+      if (fLoading.get(i).ad == ad) {
+        return fLoading.remove(i);
+      }
+    }
+    return null;
+  }
+
+  // Take the oldest (or highest bid) unexpired interstitial to show it, or null if none is ready
+  AdBackend.Interstitial takeReady(final long now, final boolean highestBid)
+  {
+    dropExpired(now);
+    if (fReady.isEmpty()) {
+      return null;
+    }
+
+    int taken = 0;
+    if (highestBid) {
+      for (int i = 1; i < fReady.size(); i++) {
+        if (bidOf(fReady.get(i)) > bidOf(fReady.get(taken))) {
+          taken = i;
+        }
+      }
+    }
+    fShowing = fReady.remove(taken).ad;
+    publish();
+    return fShowing;
+  }
+
+  private static double bidOf(final Entry entry)
+  {
+    return entry.meta != null ? entry.meta.bid : 0;
+  }
+
+  // Drop the interstitials that have expired, returns how many were dropped
+  int dropExpired(final long now)
+  {
+    int dropped = 0;
+    for (int i = fReady.size() - 1; i >= 0; i--) {
+      if (fReady.get(i).expiresAt <= now) {
+        fReady.remove(i);
+        dropped++;
+      }
+    }
+    if (dropped > 0) {
+      publish();
+    }
+    return dropped;
+  }
+
+  // Drop the ready interstitials that have expired or that the SDK no longer considers showable, returns how many were dropped
+  int dropInvalid(final long now)
+  {
+    int dropped = 0;
+    for (int i = fReady.size() - 1; i >= 0; i--) {
+      final Entry entry = fReady.get(i);
+      if (entry.expiresAt <= now || !entry.ad.isReady()) {
+        fReady.remove(i);
+        dropped++;
+      }
+    }
+    if (dropped > 0) {
+      publish();
+    }
+    return dropped;
+  }
+
+  // Drop the ready interstitials beyond the first keep ones to free memory, returns how many were dropped
+  int trimReady(final int keep)
+  {
+    int dropped = 0;
+    while (fReady.size() > Math.max(0, keep)) {
+      fReady.remove(fReady.size() - 1);
+      dropped++;
+    }
+    if (dropped > 0) {
+      publish();
+    }
+    return dropped;
+  }
+
+  // Mark the interstitials expiring within leadMs as being replaced, returns how many were marked
+  int markReplacing(final long now, final long leadMs)
+  {
+    int marked = 0;
+    for (Entry entry : fReady) {
+      if (!entry.replacing && entry.expiresAt != Long.MAX_VALUE && entry.expiresAt - leadMs <= now) {
+        entry.replacing = true;
+        marked++;
+      }
+    }
+    return marked;
+  }
+
+  // When the pool next needs attention: the earliest replacement time or hard expiry, Long.MAX_VALUE if never
+  long nextDeadline(final long leadMs)
+  {
+    long deadline = Long.MAX_VALUE;
+    for (Entry entry : fReady) {
+      if (entry.expiresAt == Long.MAX_VALUE) {
+        continue;
+      }
+      deadline = Math.min(deadline, entry.replacing ? entry.expiresAt : entry.expiresAt - leadMs);
+    }
+    return deadline;
+  }
+
+  // The interstitial on screen was dismissed
+  void markDismissed(final AdBackend.Interstitial ad)
+  {
+    if (fShowing == ad) {
+      fShowing = null;
+    }
+  }
+
+  // The number of interstitials needed to get back to depth (interstitials being replaced don't count)
+  int missing()
+  {
+    int held = fLoading.size() + (fShowing != null ? 1 : 0);
+    for (Entry entry : fReady) {
+      if (!entry.replacing) {
+        held++;
+      }
+    }
+    return Math.max(0, depth - held);
+  }
+
+  int readyCount()
+  {
+    return fReadyCount;
+  }
+
+  // The highest bid among the ready interstitials, 0 if none are ready or their bids are unknown
+  double bestBid()
+  {
+    return fBestBid;
+  }
+
+  // The latest expiry of the ready interstitials (0 if none are ready, Long.MAX_VALUE if they don't expire)
+  long readyUntil()
+  {
+    return fReadyUntil;
+  }
+
+  int loadingCount()
+  {
+    return fLoading.size();
+  }
+
+  boolean isShowing()
+  {
+    return fShowing != null;
+  }
+
+  // The slot state implied by the pool contents
+  AdSlot.State impliedState()
+  {
+    if (!fReady.isEmpty()) {
+      return AdSlot.State.READY;
+    }
+    if (fShowing != null) {
+      return AdSlot.State.SHOWING;
+    }
+    if (!fLoading.isEmpty()) {
+      return AdSlot.State.LOADING;
+    }
+    return AdSlot.State.CONSUMED;
+  }
+
+  // Publish the ready count and expiry to the Lua thread
+  private void publish()
+  {
+    long readyUntil = 0;
+    double bestBid = 0;
+    for (Entry entry : fReady) {
+      readyUntil = Math.max(readyUntil, entry.expiresAt);
+      bestBid = Math.max(bestBid, bidOf(entry));
+    }
+    fReadyUntil = readyUntil;
+    fBestBid = bestBid;
+    fReadyCount = fReady.size();
+  }
+}
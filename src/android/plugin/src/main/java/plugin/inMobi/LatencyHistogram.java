@@ -0,0 +1,108 @@
+//
+//  LatencyHistogram.java
+//  inMobi Plugin
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.inMobi;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.naef.jnlua.LuaState;
+
+/**
+ * A fixed-bucket latency histogram in milliseconds.
+ * <p>
+ * Bucket 0 counts samples under 1ms and bucket {@code i} counts samples in {@code [2^(i-1), 2^i)};
+ * the last bucket also takes everything above it. Samples are recorded by a single thread (the UI
+ * thread) and may be read from any thread.
+ */
+final class LatencyHistogram
+{
+  // 0ms up to ~65s, plus the overflow bucket
+  static final int kBucketCount = 18;
+
+  private final AtomicLongArray fBuckets = new AtomicLongArray(kBucketCount);
+  private volatile long fCount;
+  private volatile long fSumMs;
+  private volatile long fMaxMs;
+
+  // Record one sample (single writer)
+  void record(long ms)
+  {
+    if (ms < 0) {
+      ms = 0;
+    }
+
+    final int bucket = Math.min(64 - Long.numberOfLeadingZeros(ms), kBucketCount - 1);
+    fBuckets.lazySet(bucket, fBuckets.get(bucket) + 1);
+    fSumMs += ms;
+    if (ms > fMaxMs) {
+      fMaxMs = ms;
+    }
+    fCount++;
+  }
+
+  long count()
+  {
+    return fCount;
+  }
+
+  // The upper bound of the bucket holding the given quantile, 0 if there are no samples
+  long quantileMs(final double quantile)
+  {
+    long total = 0;
+    for (int i = 0; i < kBucketCount; i++) {
+      total += fBuckets.get(i);
+    }
+    if (total == 0) {
+      return 0;
+    }
+
+    final long rank = (long)Math.ceil(total * quantile);
+    long seen = 0;
+    for (int i = 0; i < kBucketCount; i++) {
+      seen += fBuckets.get(i);
+      if (seen >= rank) {
+        return Math.min(upperBoundMs(i), fMaxMs);
+      }
+    }
+    return fMaxMs;
+  }
+
+  // Push a summary table onto the Lua stack
+  void push(LuaState L)
+  {
+    final long count = fCount;
+
+    L.newTable(0, 7);
+    L.pushNumber(count);
+    L.setField(-2, "count");
+    L.pushNumber(count > 0 ? (double)fSumMs / count : 0);
+    L.setField(-2, "mean");
+    L.pushNumber(fMaxMs);
+    L.setField(-2, "max");
+    L.pushNumber(quantileMs(0.5));
+    L.setField(-2, "p50");
+    L.pushNumber(quantileMs(0.9));
+    L.setField(-2, "p90");
+    L.pushNumber(quantileMs(0.99));
+    L.setField(-2, "p99");
+
+    // Bucket counts, indexed from 1, bucket i covers up to 2^(i-1)ms
+    L.newTable(kBucketCount, 0);
+    for (int i = 0; i < kBucketCount; i++) {
+      L.pushNumber(fBuckets.get(i));
+      L.rawSet(-2, i + 1);
+    }
+    L.setField(-2, "buckets");
+  }
+
+  private static long upperBoundMs(final int bucket)
+  {
+    return bucket == 0 ? 1 : 1L << bucket;
+  }
+}
@@ -0,0 +1,65 @@
+//
+//  LoadBatch.java
+//  inMobi Plugin
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.inMobi;
+
+import java.util.ArrayDeque;
+import java.util.List;
+
+/**
+ * The loads issued by one inMobi.loadMany() call.
+ * <p>
+ * Loads are issued in order, with at most {@code maxConcurrent} of them waiting on the network at
+ * once. A load stops counting once its slot settles (it loads, fails for good or is released).
+ * UI thread only.
+ */
+final class LoadBatch
+{
+  // Carries out a load
+  interface Loader
+  {
+    // Returns the slot now loading, or null if nothing needed loading
+    AdSlot load(LoadRequest request);
+  }
+
+  private final ArrayDeque<LoadRequest> fQueue;
+  private final int fMaxConcurrent;
+  private final Loader fLoader;
+  private int fInFlight = 0;
+
+  // Requests must already be in the order they are to be issued, maxConcurrent 0 means no limit
+  LoadBatch(final List<LoadRequest> requests, final int maxConcurrent, final Loader loader)
+  {
+    fQueue = new ArrayDeque<>(requests);
+    fMaxConcurrent = maxConcurrent > 0 ? maxConcurrent : Integer.MAX_VALUE;
+    fLoader = loader;
+  }
+
+  // Issue as many loads as the limit allows
+  void issue()
+  {
+    while (fInFlight < fMaxConcurrent && !fQueue.isEmpty()) {
+      final AdSlot slot = fLoader.load(fQueue.poll());
+      if (slot != null && slot.loadBatch == null && slot.getState() == AdSlot.State.LOADING) {
+        slot.loadBatch = this;
+        fInFlight++;
+      }
+    }
+  }
+
+  // A slot issued by this batch has settled, issue the next load
+  void settled(final AdSlot slot)
+  {
+    if (slot.loadBatch == this) {
+      slot.loadBatch = null;
+      fInFlight--;
+      issue();
+    }
+  }
+}
@@ -0,0 +1,173 @@
+//
+//  LoadGroup.java
+//  inMobi Plugin
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.inMobi;
+
+import java.util.List;
+
+import android.os.Handler;
+
+/**
+ * Several placements loaded for one slot by inMobi.loadGroup(), the first one to fill wins.
+ * <p>
+ * The parallel strategy requests every placement at once. The waterfall strategy requests them one
+ * after the other, moving on when one fails. The hedged strategy works like the waterfall, but also
+ * moves on when the current request hasn't filled within the hedge delay. Requests still in flight
+ * when the group is won keep loading, and their ads stay ready in their own placements.
+ * The name and placement ids can be read from any thread, and cancel() called from any thread;
+ * everything else is UI thread only.
+ */
+final class LoadGroup
+{
+  enum Strategy
+  {
+    PARALLEL,
+    WATERFALL,
+    HEDGED
+  }
+
+  // Told how the group ended
+  interface Listener
+  {
+    void filled(LoadGroup group, AdSlot slot);
+    void failed(LoadGroup group);
+  }
+
+  final String name;
+  final String adType;
+  // The placements in the order they are requested
+  final String[] placementIds;
+  final Strategy strategy;
+  final long hedgeDelayMs;
+
+  private final List<LoadRequest> fRequests;
+  private volatile Handler fHandler;
+  private LoadBatch.Loader fLoader;
+  private Listener fListener;
+  // The next request to issue, and how many issued requests haven't settled
+  private int fNext = 0;
+  private int fInFlight = 0;
+  // Set by cancel() from any thread
+  private volatile boolean fDone = false;
+
+  private final Runnable fHedgeTask = new Runnable() {
+    @Override
+    public void run() {
+      issueNext();
+      checkExhausted();
+    }
+  };
+
+  // Requests must be in the order the placements are to be tried
+  LoadGroup(final String name, final String adType, final List<LoadRequest> requests, final Strategy strategy, final long hedgeDelayMs)
+  {
+    this.name = name;
+    this.adType = adType;
+    this.strategy = strategy;
+    this.hedgeDelayMs = Math.max(0, hedgeDelayMs);
+    fRequests = requests;
+
+    placementIds = new String[requests.size()];
+    for (int i = 0; i < placementIds.length; i++) {
+      placementIds[i] = requests.get(i).placementId;
+    }
+  }
+
+  void start(final Handler handler, final LoadBatch.Loader loader, final Listener listener)
+  {
+    fHandler = handler;
+    fLoader = loader;
+    fListener = listener;
+
+    if (strategy == Strategy.PARALLEL) {
+      while (!fDone && fNext < fRequests.size()) {
+        issueNext();
+      }
+    }
+    else {
+      issueNext();
+    }
+    checkExhausted();
+  }
+
+  // A slot issued by this group has loaded or failed for good
+  void settled(final AdSlot slot)
+  {
+    if (slot.loadGroup != this) {
+      return;
+    }
+    slot.loadGroup = null;
+    fInFlight--;
+    if (fDone) {
+      return;
+    }
+
+    if (slot.isReady()) {
+      finish(slot);
+      return;
+    }
+
+    // The current request failed, don't wait for the hedge delay to try the next one
+    if (strategy != Strategy.PARALLEL) {
+      fHandler.removeCallbacks(fHedgeTask);
+      issueNext();
+    }
+    checkExhausted();
+  }
+
+  // Stop issuing requests, eg. because the group was loaded again or the runtime is exiting (any thread)
+  void cancel()
+  {
+    fDone = true;
+    final Handler handler = fHandler;
+    if (handler != null) {
+      handler.removeCallbacks(fHedgeTask);
+    }
+  }
+
+  // Issue requests until one is in flight or has already filled
+  private void issueNext()
+  {
+    while (!fDone && fNext < fRequests.size()) {
+      final AdSlot slot = fLoader.load(fRequests.get(fNext++));
+      if (slot == null) {
+        continue;
+      }
+      // The placement was already loaded
+      if (slot.isReady()) {
+        finish(slot);
+        return;
+      }
+      if (slot.getState() == AdSlot.State.LOADING && slot.loadGroup == null) {
+        slot.loadGroup = this;
+        fInFlight++;
+        if (strategy == Strategy.HEDGED && fNext < fRequests.size()) {
+          fHandler.postDelayed(fHedgeTask, hedgeDelayMs);
+        }
+        return;
+      }
+    }
+  }
+
+  // Fail the group once every request has been issued and none is left in flight
+  private void checkExhausted()
+  {
+    if (!fDone && fInFlight == 0 && fNext >= fRequests.size()) {
+      fDone = true;
+      fListener.failed(this);
+    }
+  }
+
+  private void finish(final AdSlot slot)
+  {
+    fDone = true;
+    fHandler.removeCallbacks(fHedgeTask);
+    fListener.filled(this, slot);
+  }
+}
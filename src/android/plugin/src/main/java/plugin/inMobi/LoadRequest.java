@@ -0,0 +1,121 @@
+//
+//  LoadRequest.java
+//  inMobi Plugin
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.inMobi;
+
+import java.util.Map;
+
+import android.util.Log;
+
+import com.naef.jnlua.LuaState;
+import com.naef.jnlua.LuaType;
+
+/**
+ * A validated load of one placement, read from Lua on the Lua thread and carried out on the UI thread.
+ */
+final class LoadRequest
+{
+  // Corona log tag name
+  private static final String CORONA_LOG_TAG = "Corona";
+
+  final String adUnitType;
+  final String placementId;
+  final long placementIdValue;
+
+  // The banner size in dp
+  int bannerWidth = 320;
+  int bannerHeight = 50;
+  // Whether the SDK refreshes the banner, and how often in seconds
+  boolean autoRefresh = false;
+  int refreshInterval = 60;
+  // The interstitial preload depth, 0 for a single interstitial that isn't refilled
+  int preloadDepth = 0;
+  // How failed loads are retried, null to fail straight away
+  RetryPolicy retryPolicy = null;
+  // Higher priorities are loaded first by inMobi.loadMany()
+  int priority = 0;
+  // The placement's rolling average bid when the load was called, orders equal priorities in inMobi.loadMany()
+  double averageBid = 0;
+
+  // The placement's stats, the attribution extras and when the load was called from Lua
+  AdStats stats;
+  Map<String, String> extras;
+  long calledAt;
+
+  LoadRequest(final String adUnitType, final String placementId, final long placementIdValue)
+  {
+    this.adUnitType = adUnitType;
+    this.placementId = placementId;
+    this.placementIdValue = placementIdValue;
+  }
+
+  // Read the options table at the given stack index, api names the Lua function for warnings
+  void readOptions(LuaState L, int index, final String api)
+  {
+    // Keep addressing the table correctly while values are pushed above it
+    index = L.absIndex(index);
+
+    L.getField(index, "width");
+    if (L.type(-1) == LuaType.NUMBER)
+    {
+      bannerWidth = (int)L.toNumber(-1);
+    }
+    L.pop(1);
+
+    L.getField(index, "height");
+    if (L.type(-1) == LuaType.NUMBER)
+    {
+      bannerHeight = (int)L.toNumber(-1);
+    }
+    L.pop(1);
+
+    L.getField(index, "autoRefresh");
+    if (L.type(-1) == LuaType.BOOLEAN)
+    {
+      autoRefresh = L.toBoolean(-1);
+    }
+    L.pop(1);
+
+    L.getField(index, "refreshInterval");
+    if (L.type(-1) == LuaType.NUMBER)
+    {
+      refreshInterval = (int)L.toNumber(-1);
+    }
+    L.pop(1);
+
+    L.getField(index, "preloadDepth");
+    if (L.type(-1) == LuaType.NUMBER)
+    {
+      final int depth = (int)L.toNumber(-1);
+      if (depth >= 1 && depth <= InterstitialPool.kMaxDepth)
+      {
+        preloadDepth = depth;
+      }
+      else
+      {
+        Log.i(CORONA_LOG_TAG, "WARNING: " + api + " options.preloadDepth must be between 1 and " + InterstitialPool.kMaxDepth + ", got " + depth + ". Loading a single interstitial instead");
+      }
+    }
+    L.pop(1);
+
+    L.getField(index, "retry");
+    if (L.type(-1) == LuaType.TABLE)
+    {
+      retryPolicy = RetryPolicy.fromLua(L, -1, api);
+    }
+    L.pop(1);
+
+    L.getField(index, "priority");
+    if (L.type(-1) == LuaType.NUMBER)
+    {
+      priority = (int)L.toNumber(-1);
+    }
+    L.pop(1);
+  }
+}
@@ -10,17 +10,17 @@
 package plugin.inMobi;
 
 import java.util.*;
-
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.SystemClock;
 import android.util.Log;
-import android.view.View;
-import android.widget.FrameLayout.LayoutParams;
 import android.view.Gravity;
 
-import androidx.annotation.NonNull;
-
-import com.inmobi.ads.AdMetaInfo;
-import com.inmobi.ads.listeners.BannerAdEventListener;
-import com.inmobi.ads.listeners.InterstitialAdEventListener;
 import com.naef.jnlua.LuaState;
 import com.naef.jnlua.LuaType;
 import com.naef.jnlua.JavaFunction;
@@ -38,13 +38,7 @@ import com.ansca.corona.CoronaBeacon;
 
 // SDK provider imports
 import com.inmobi.sdk.InMobiSdk;
-import com.inmobi.ads.InMobiAdRequestStatus;
-import com.inmobi.ads.InMobiBanner;
-import com.inmobi.ads.InMobiInterstitial;
-import com.inmobi.sdk.InMobiSdk.Gender;
-import com.inmobi.sdk.InMobiSdk.Education;
-import com.inmobi.sdk.InMobiSdk.AgeGroup;
-import com.inmobi.sdk.InMobiSdk.LogLevel;
+import com.inmobi.ads.InMobiAdRequestStatus.StatusCode;
 
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -71,317 +65,508 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener
   private final String BANNER_AD_NAME = "banner";
   private final String INTERSTITIAL_AD_NAME = "interstitial";
   private final String VIDEO_AD_NAME = "video";
-  // Dictionary keys
-  private final String HAS_LOADED_KEY = "hasLoaded";
-  private final String AD_VIEW_KEY = "adView";
-  private final String AD_UNIT_TYPE_KEY = "adType";
-  private final String BANNER_WIDTH_KEY = "bannerWidth";
-  private final String BANNER_HEIGHT_KEY = "bannerHeight";
-  private final String BANNER_LAYOUT = "layout";
   // Event names
-  private final String CORONA_PHASE_EVENT = "phase";
-  private final String CORONA_TYPE_EVENT = "type";
-  private final String CORONA_PLACEMENT_ID_EVENT = "placementId";
-  private final String CORONA_DATA_EVENT = "data";
   private final String LOADED_EVENT = "loaded";
   private final String FAILED_EVENT = "failed";
   private final String DISPLAYED_EVENT = "displayed";
   private final String CLICKED_EVENT = "clicked";
   private final String HIDDEN_EVENT = "closed";
   private final String REWARD_COMPLETED = "rewardComplete";
+  private final String CAPPED_EVENT = "capped";
+  private final String REFRESHED_EVENT = "refreshed";
+  private final String RESUMED_EVENT = "resumed";
+  private final String MEMORY_TRIM_EVENT = "memoryTrim";
   // Runtime task dispatcher pointer
   private CoronaRuntimeTaskDispatcher fRuntimeTaskDispatcher;
+  // The ad network (UI thread only, replaced by init's fakeBackend option)
+  private AdBackend fBackend = new InMobiBackend();
+  // The deferred SDK init, null once it has run (UI thread only, set by init's initMode option)
+  private Runnable fSdkInit = null;
+  // Whether the deferred SDK init waits for the first load() rather than an idle main looper
+  private boolean fSdkInitLazy = false;
+  // The idle handler that runs the deferred SDK init ("idle" mode only)
+  private MessageQueue.IdleHandler fSdkInitIdleHandler = null;
+  // Whether the deferred SDK init waits for the last run's stored state, and whether it was due meanwhile (UI thread only)
+  private boolean fRestoring = false;
+  private boolean fSdkInitDue = false;
+  // Calls made before the SDK was initialized, replayed in order once it is (UI thread only)
+  private final ArrayList<Runnable> fPendingCalls = new ArrayList<>();
+  // Handler used to schedule deferred work on the UI thread
+  private final Handler fMainHandler = new Handler(Looper.getMainLooper());
+  // Drives ad expiry and proactive reloads (UI thread only)
+  private final TimerWheel fTimerWheel = new TimerWheel(fMainHandler, 1000);
+  // Refreshes the banners on screen in place of the SDK's auto refresh (UI thread only)
+  private final BannerRefreshScheduler fBannerRefresh = new BannerRefreshScheduler(fTimerWheel, new BannerRefreshScheduler.Refresher() {
+    @Override
+    public void refresh(AdSlot slot) {
+      loadBanner(slot);
+    }
+  });
+  // How often banner refreshes are reported by a "refreshed" event, -1 to report each one as "loaded" (set by init's refreshEventInterval option)
+  private volatile long fRefreshEventIntervalMs = -1;
+  // How long loaded ads stay showable, 0 if they don't expire (set by init's adTtl option)
+  private volatile long fBannerTtlMs = 0;
+  private volatile long fInterstitialTtlMs = 0;
+  // Random source for retry jitter (UI thread only)
+  private final Random fRetryRandom = new Random();
+  // Hidden banners kept around to be shown again (UI thread only)
+  private final BannerPool fBannerPool = new BannerPool(fMainHandler, new BannerPool.Evictor() {
+    @Override
+    public void evict(AdSlot slot) {
+      destroyBanner(slot);
+    }
+  });
+  // Releases ads under memory pressure and refills them once it eases (UI thread only)
+  private final MemoryTrimmer fMemoryTrimmer = new MemoryTrimmer(fMainHandler, new MemoryTrimmer.Policy() {
+    @Override
+    public void release(MemoryTrimmer.Tier tier) {
+      releaseForMemory(tier);
+    }
+
+    @Override
+    public void refill() {
+      refillAfterMemoryTrim();
+    }
+  });
+  // The interstitial slots emptied by a memory trim, refilled once memory pressure eases (UI thread only)
+  private final ArrayList<AdSlot> fTrimmedSlots = new ArrayList<>();
+  // Whether the runtime is suspended (UI thread only)
+  private boolean fSuspended = false;
+  // Load, show and hide calls on their way to the UI thread
+  private final UiCommandQueue fCommandQueue = new UiCommandQueue(fMainHandler, new UiCommandQueue.BannerLookup() {
+    @Override
+    public boolean isBanner(String placementId) {
+      final AdSlot slot = inMobiAds.get(placementId);
+      return slot != null && slot.isBanner;
+    }
+  });
   // Lua registry ID to the Lua function to be called when the ad request finishes
   private int fListener = CoronaLua.REFNIL;
-  // InMobi ads dictionary
-  private static Map<String, Object> inMobiAds;
+  // The Corona attribution extras shared by every ad, read once by init (Lua thread only)
+  private Map<String, String> fAttributionExtras = null;
+  // Guards the user details and the stored consent, restored on the UI thread and set on the Lua thread
+  private final Object fTargetingLock = new Object();
+  // The user details last sent to the SDK (guarded by fTargetingLock)
+  private UserDetails fUserDetails = new UserDetails();
+  // Whether the highest bid wins when several ads are ready for a slot, rather than the first one (set by init's adSelection option)
+  private volatile boolean fSelectHighestBid = false;
+  // The frequency caps, null if init didn't set any (set once by init, read from any thread)
+  private volatile FrequencyCaps fFrequencyCaps = null;
+  // Where the user details and consent are kept between runs, null unless init asked for it (Lua thread only)
+  private TargetingStore fTargetingStore = null;
+  // The consent stored along with the user details (guarded by fTargetingLock)
+  private Boolean fStoredConsent = null;
+  // Numeric placement ids, keyed by the placement id passed from Lua (Lua thread only)
+  private final HashMap<String, Long> fPlacementIdValues = new HashMap<>();
+  // InMobi ad slots, keyed by placement id (written on the UI thread, read from any thread)
+  private static final ConcurrentHashMap<String, AdSlot> inMobiAds = new ConcurrentHashMap<>();
+  // When placements last failed to load for good, until they are loaded again (written on the UI thread, read from any thread)
+  private static final ConcurrentHashMap<String, AdSlot.StateChange> inMobiFailures = new ConcurrentHashMap<>();
+  // Per placement stats, kept for the life of the process
+  private static final ConcurrentHashMap<String, AdStats> inMobiStats = new ConcurrentHashMap<>();
+  // Placement groups loaded by inMobi.loadGroup(), keyed by group name (written on the Lua thread, read from any thread)
+  private static final ConcurrentHashMap<String, LoadGroup> inMobiGroups = new ConcurrentHashMap<>();
+  // Whether events are queued and delivered once per frame (set by init's eventBatching option)
+  private volatile boolean fEventBatching = false;
+  // Events waiting for the next drain, newest first (batching mode only)
+  private final AtomicReference<AdEvent> fPendingEvents = new AtomicReference<>();
+  // Whether a drain task has been sent to the runtime and not yet run
+  private final AtomicBoolean fDrainScheduled = new AtomicBoolean(false);
+  // Batching counters (only touched on the Lua thread)
+  private long fEventDrainCount = 0;
+  private long fEventDrainedTotal = 0;
+  private int fEventLastDrainSize = 0;
+  private int fEventMaxDrainSize = 0;
+
+  // Drains all queued events in a single runtime task
+  private final CoronaRuntimeTask fDrainEventsTask = new CoronaRuntimeTask() {
+    @Override
+    public void executeUsing(CoronaRuntime runtime) {
+      // Clear the flag first so that events queued while draining schedule another pass
+      fDrainScheduled.set(false);
+
+      // Take the whole pending stack and reverse it so events are delivered in order
+      AdEvent event = fPendingEvents.getAndSet(null);
+      AdEvent ordered = null;
+      while (event != null) {
+        AdEvent next = event.next;
+        event.next = ordered;
+        ordered = event;
+        event = next;
+      }
+
+      LuaState L = runtime.getLuaState();
+      int drained = 0;
+
+      while (ordered != null) {
+        AdEvent next = ordered.next;
+        ordered.next = null;
+        fEventPool.deliver(L, ordered);
+        ordered = next;
+        drained++;
+      }
+
+      if (drained > 0) {
+        fEventDrainCount++;
+        fEventDrainedTotal += drained;
+        fEventLastDrainSize = drained;
+        if (drained > fEventMaxDrainSize) {
+          fEventMaxDrainSize = drained;
+        }
+      }
+    }
+  };
+
+  // Pooled event records, written straight onto the Lua stack when delivered
+  private final AdEventPool fEventPool = new AdEventPool(new AdEventPool.Delivery() {
+    @Override
+    public void deliver(LuaState L, AdEvent event) {
+      try {
+        CoronaLua.newEvent(L, kEvent);
+
+        // add event fields
+        event.pushFields(L);
+
+        // add provider
+        L.pushString(kProviderName);
+        L.setField(-2, CoronaLuaEvent.PROVIDER_KEY);
+
+        CoronaLua.dispatchEvent(L, fListener, 0);
+      }
+      catch (Exception ex) {
+        ex.printStackTrace();
+      }
+    }
+  });
 
   // Dispatch a Lua event to our callback
-  public void dispatchLuaEvent(final Map<String, Object> event)
+  public void dispatchLuaEvent(final String phase, final String type, final String placementId)
   {
-    if (fRuntimeTaskDispatcher != null) {
-      fRuntimeTaskDispatcher.send(new CoronaRuntimeTask() {
-        @Override
-        public void executeUsing(CoronaRuntime runtime) {
-          try {
-            LuaState L = runtime.getLuaState();
-            CoronaLua.newEvent(L, kEvent);
-            boolean hasErrorKey = false;
-
-            // add event parameters from map
-            for (String key: event.keySet()) {
-              CoronaLua.pushValue(L, event.get(key));           // push value
-              L.setField(-2, key);                              // push key
-
-              if (! hasErrorKey) {
-                hasErrorKey = key.equals(CoronaLuaEvent.ISERROR_KEY);
-              }
-            }
+    AdEvent event = fEventPool.acquire();
+    event.phase = phase;
+    event.type = type;
+    event.placementId = placementId;
+    dispatchLuaEvent(event);
+  }
 
-            // add error key if not in map
-            if (! hasErrorKey) {
-              L.pushBoolean(false);
-              L.setField(-2, CoronaLuaEvent.ISERROR_KEY);
-            }
+  // Dispatch a Lua event carrying data to our callback
+  public void dispatchLuaEvent(final String phase, final String type, final String placementId, final Object data)
+  {
+    AdEvent event = fEventPool.acquire();
+    event.phase = phase;
+    event.type = type;
+    event.placementId = placementId;
+    event.data = data;
+    dispatchLuaEvent(event);
+  }
 
-            // add provider
-            L.pushString(kProviderName);
-            L.setField(-2, CoronaLuaEvent.PROVIDER_KEY);
+  // Dispatch a loaded event with the ad's metadata to our callback, without building a data map
+  void dispatchLoadedEvent(final String type, final String placementId, final AdBackend.AdMeta meta)
+  {
+    AdEvent event = fEventPool.acquire();
+    event.phase = LOADED_EVENT;
+    event.type = type;
+    event.placementId = placementId;
+    event.meta = meta;
+    dispatchLuaEvent(event);
+  }
 
-            CoronaLua.dispatchEvent(L, fListener, 0);
-          }
-          catch (Exception ex) {
-            ex.printStackTrace();
-          }
-        }
-      });
+  // Dispatch a Lua error event to our callback
+  public void dispatchLuaErrorEvent(final String phase, final String type, final String placementId, final String response)
+  {
+    AdEvent event = fEventPool.acquire();
+    event.phase = phase;
+    event.type = type;
+    event.placementId = placementId;
+    event.isError = true;
+    event.response = response;
+    dispatchLuaEvent(event);
+  }
+
+  // Send a filled-in event to the Lua thread
+  private void dispatchLuaEvent(final AdEvent event)
+  {
+    final CoronaRuntimeTaskDispatcher dispatcher = fRuntimeTaskDispatcher;
+    if (dispatcher == null) {
+      fEventPool.release(event);
+      return;
+    }
+
+    // Queue the event and make sure a single drain task is pending
+    if (fEventBatching) {
+      AdEvent head;
+      do {
+        head = fPendingEvents.get();
+        event.next = head;
+      } while (!fPendingEvents.compareAndSet(head, event));
+
+      if (fDrainScheduled.compareAndSet(false, true)) {
+        dispatcher.send(fDrainEventsTask);
+      }
+      return;
     }
+
+    // The event is its own runtime task
+    dispatcher.send(event);
   }
 
   // Banner listener class
-  private class InMobiBannerAdListenerClass extends BannerAdEventListener
+  private class InMobiBannerAdListenerClass implements AdBackend.Listener
   {
+    // The Ads slot
+    private final AdSlot fSlot;
     // The Ads placement id
     private final String kPlacementId;
     // The Ad type
     private final String kAdType;
 
     // Initializer
-    public InMobiBannerAdListenerClass(final String placementId, final String adType)
+    public InMobiBannerAdListenerClass(final AdSlot slot)
     {
-      // Set the placement id
-      if (placementId != null)
-      {
-        kPlacementId = placementId;
-      }
-      else
-      {
-        kPlacementId = null;
-      }
-
-      // Set the ad type
-      if (adType != null)
-      {
-        kAdType = adType;
-      }
-      else
-      {
-        kAdType = null;
-      }
+      fSlot = slot;
+      kPlacementId = slot.placementId;
+      kAdType = slot.adType;
     }
 
 
-    public void onAdLoadSucceeded(@NonNull InMobiBanner ad, @NonNull AdMetaInfo info)
+    @Override
+    public void onLoadSucceeded(AdBackend.Ad ad, AdBackend.AdMeta meta)
     {
-      // Ensure the Ad exists in the inMobi dict
-      if (inMobiAds.containsKey(kPlacementId))
+      // Ensure the Ad slot is still registered
+      if (inMobiAds.get(kPlacementId) == fSlot)
       {
-        // Get the ad dict
-        final Map<String, Object> adDict = (Map<String, Object>)inMobiAds.get(kPlacementId);
+        // A successful load ends any retry sequence
+        fSlot.failedAttempts = 0;
+        // Record the load time so the banner can be reloaded before it expires
+        fSlot.loadedAt = SystemClock.uptimeMillis();
+        fSlot.stats.recordFill(fSlot.loadRequestedAt != 0 ? fSlot.loadedAt - fSlot.loadRequestedAt : -1);
+        fSlot.loadRequestedAt = 0;
+        fSlot.setReadyUntil(fBannerTtlMs > 0 ? fSlot.loadedAt + fBannerTtlMs : Long.MAX_VALUE);
+        fSlot.setBannerMeta(meta);
+        if (meta != null)
+        {
+          fSlot.stats.recordBid(meta.bid);
+        }
+
         // If the ad has not already been loaded (for instance, if the ad has loaded once already and is just refreshing itself)
-        if (Boolean.FALSE.equals(adDict.get(HAS_LOADED_KEY)))
+        final boolean isRefresh = fSlot.getState() != AdSlot.State.LOADING;
+        if (!isRefresh)
         {
           // Make the Ad invisible
-          ad.setVisibility(View.GONE);
+          fSlot.bannerAd.hide();
+          // Set the Ad as loaded
+          fSlot.setState(AdSlot.State.READY);
+        }
+        scheduleExpiry(fSlot);
+        settleLoad(fSlot);
+        // Dispatch the event (refreshes may be reported in batches instead)
+        if (isRefresh && fRefreshEventIntervalMs >= 0)
+        {
+          reportRefresh(fSlot, meta);
+        }
+        else
+        {
+          dispatchLoadedEvent(kAdType, kPlacementId, meta);
         }
-        // Set the Ad as loaded
-        adDict.put(HAS_LOADED_KEY, true);
-        // Create the event
-        Map<String, Object> coronaEvent = new HashMap<>();
-        coronaEvent.put(CORONA_PHASE_EVENT, LOADED_EVENT);
-        coronaEvent.put(CORONA_TYPE_EVENT, kAdType);
-        coronaEvent.put(CORONA_PLACEMENT_ID_EVENT, kPlacementId);
-        // Dispatch the event
-        dispatchLuaEvent(coronaEvent);
       }
     }
 
 
-    public void onAdLoadFailed(InMobiBanner ad, InMobiAdRequestStatus statusCode)
+    @Override
+    public void onLoadFailed(AdBackend.Ad ad, StatusCode statusCode, String message)
     {
-      // Ensure the Ad exists in the inMobi dict
-      if (inMobiAds.containsKey(kPlacementId))
+      // Ensure the Ad slot is still registered
+      if (inMobiAds.get(kPlacementId) == fSlot)
       {
-        // Remove the ad from the dict
-        inMobiAds.remove(kPlacementId);
-        // Create the event
-        Map<String, Object> coronaEvent = new HashMap<>();
-        coronaEvent.put(CORONA_PHASE_EVENT, FAILED_EVENT);
-        coronaEvent.put(CORONA_TYPE_EVENT, kAdType);
-        coronaEvent.put(CORONA_PLACEMENT_ID_EVENT, kPlacementId);
-        coronaEvent.put(CoronaLuaEvent.ISERROR_KEY, true);
-        coronaEvent.put(CoronaLuaEvent.RESPONSE_KEY, statusCode.getStatusCode() + " - " + statusCode.getMessage());
+        fSlot.stats.recordFailure(statusCode);
+        fSlot.loadRequestedAt = 0;
+
+        // Try again later if the failure is retryable
+        if (fSlot.getState() == AdSlot.State.LOADING && scheduleRetry(fSlot, statusCode))
+        {
+          return;
+        }
+
+        // A banner on screen keeps its current ad until the next refresh
+        if (fSlot.getState() == AdSlot.State.SHOWING)
+        {
+          return;
+        }
+
+        // A banner that failed to reload in the hidden pool is released
+        if (fBannerPool.unpark(fSlot))
+        {
+          releaseBanner(fSlot);
+        }
+        // Mark the slot as failed and remove it, keeping the failure for getState()
+        fSlot.setState(AdSlot.State.FAILED);
+        inMobiFailures.put(kPlacementId, fSlot.getStateChange());
+        inMobiAds.remove(kPlacementId, fSlot);
+        settleLoad(fSlot);
         // Dispatch the event
-        dispatchLuaEvent(coronaEvent);
+        dispatchLuaErrorEvent(FAILED_EVENT, kAdType, kPlacementId, AdEvent.describe(statusCode, message));
       }
     }
 
 
-    public void onAdDisplayed(InMobiBanner ad)
+    @Override
+    public void onWillDisplay(AdBackend.Ad ad)
     {
       // We don't dispatch the event here, as it would fire on Ad load because
       // banner ads are immediately displayed, and we hide to to get consistent behavior
     }
 
 
-    public void onAdDismissed(InMobiBanner ad)
+    @Override
+    public void onDismissed(AdBackend.Ad ad)
     {
       // This event doesn't exist (a leftover), as Ads cannot be offically hidden in the inMobi SDK
     }
 
 
-    public void onAdInteraction(InMobiBanner ad, Map<Object, Object> params)
-    {
-      // NOP
-    }
-
-
-    public void onUserLeftApplication(InMobiBanner ad)
+    @Override
+    public void onUserLeftApplication(AdBackend.Ad ad)
     {
-      // Create the event
-      Map<String, Object> coronaEvent = new HashMap<>();
-      coronaEvent.put(CORONA_PHASE_EVENT, CLICKED_EVENT);
-      coronaEvent.put(CORONA_TYPE_EVENT, kAdType);
-      coronaEvent.put(CORONA_PLACEMENT_ID_EVENT, kPlacementId);
       // Dispatch the event
-      dispatchLuaEvent(coronaEvent);
+      dispatchLuaEvent(CLICKED_EVENT, kAdType, kPlacementId);
     }
 
 
-    public void onAdRewardActionCompleted(InMobiBanner ad, Map<Object, Object> rewards)
+    @Override
+    public void onRewardsUnlocked(AdBackend.Ad ad, Map<Object, Object> rewards)
     {
-      // Create the event
-      Map<String, Object> coronaEvent = new HashMap<>();
-      coronaEvent.put(CORONA_PHASE_EVENT, REWARD_COMPLETED);
-      coronaEvent.put(CORONA_TYPE_EVENT, kAdType);
-      coronaEvent.put(CORONA_PLACEMENT_ID_EVENT, kPlacementId);
-      coronaEvent.put(CORONA_DATA_EVENT, rewards);
       // Dispatch the event
-      dispatchLuaEvent(coronaEvent);
+      dispatchLuaEvent(REWARD_COMPLETED, kAdType, kPlacementId, rewards);
     }
   }
 
   // Interstitial listener class
-  private class InMobiInterstitialAdListenerClass extends InterstitialAdEventListener
+  private class InMobiInterstitialAdListenerClass implements AdBackend.Listener
   {
+    // The Ads slot
+    private final AdSlot fSlot;
     // The Ads placement id
     private final String kPlacementId;
     // The Ad type
     private final String kAdType;
 
     // Initializer
-    InMobiInterstitialAdListenerClass(final String placementId, final String adType)
+    InMobiInterstitialAdListenerClass(final AdSlot slot)
     {
-      // Set the placement id
-      if (placementId != null)
-      {
-        kPlacementId = placementId;
-      }
-      else
-      {
-        kPlacementId = null;
-      }
-
-      // Set the ad type
-      if (adType != null)
-      {
-        kAdType = adType;
-      }
-      else
-      {
-        kAdType = null;
-      }
-    }
-
-    @Override
-    public void onAdDisplayFailed(InMobiInterstitial inMobiInterstitial) {
-      // NOP
-    }
-
-    @Override
-    public void onAdReceived(InMobiInterstitial inMobiInterstitial) {
-      // NOP
+      fSlot = slot;
+      kPlacementId = slot.placementId;
+      kAdType = slot.adType;
     }
 
     @Override
-    public void onAdWillDisplay(InMobiInterstitial inMobiInterstitial) {
-      // NOP
+    public void onWillDisplay(AdBackend.Ad ad) {
+      // Record the show latency and the impression
+      fSlot.displayedAt = SystemClock.uptimeMillis();
+      fSlot.stats.showLatency.record(fSlot.displayedAt - fSlot.showRequestedAt);
+      fSlot.stats.recordImpression();
     }
 
     @Override
-    public void onAdLoadSucceeded(@NonNull InMobiInterstitial ad, @NonNull AdMetaInfo info)
+    public void onLoadSucceeded(AdBackend.Ad ad, AdBackend.AdMeta meta)
     {
-      // Ensure the Ad exists in the inMobi dict
-      if (inMobiAds.containsKey(kPlacementId))
+      // Ensure the Ad slot is still registered and still owns this interstitial
+      final InterstitialPool.Entry loaded = inMobiAds.get(kPlacementId) == fSlot ? fSlot.interstitials.markReady((AdBackend.Interstitial)ad, meta, SystemClock.uptimeMillis(), fInterstitialTtlMs) : null;
+      if (loaded != null)
       {
-        // Get the ad dict
-        final Map<String, Object> adDict = (Map<String, Object>)inMobiAds.get(kPlacementId);
+        fSlot.stats.recordFill(loaded.loadedAt - loaded.requestedAt);
+        if (meta != null)
+        {
+          fSlot.stats.recordBid(meta.bid);
+        }
+        // A successful load ends any retry sequence
+        fSlot.failedAttempts = 0;
+        // Reload it shortly before it expires
+        scheduleExpiry(fSlot);
+
         // Set the Ad as loaded
-        adDict.put(HAS_LOADED_KEY, true);
-        // Create the event
-        Map<String, Object> coronaEvent = new HashMap<>();
-        coronaEvent.put(CORONA_PHASE_EVENT, LOADED_EVENT);
-        coronaEvent.put(CORONA_TYPE_EVENT, kAdType);
-        coronaEvent.put(CORONA_PLACEMENT_ID_EVENT, kPlacementId);
+        fSlot.setState(AdSlot.State.READY);
+        settleLoad(fSlot);
         // Dispatch the event
-        dispatchLuaEvent(coronaEvent);
+        dispatchLoadedEvent(kAdType, kPlacementId, meta);
       }
     }
 
     @Override
-    public void onAdLoadFailed(InMobiInterstitial ad, InMobiAdRequestStatus statusCode)
-    {
-      // Ensure the Ad exists in the inMobi dict
-      if (inMobiAds.containsKey(kPlacementId))
-      {
-        // Remove the ad from the dict
-        inMobiAds.remove(kPlacementId);
-        // Create the event
-        Map<String, Object> coronaEvent = new HashMap<>();
-        coronaEvent.put(CORONA_PHASE_EVENT, FAILED_EVENT);
-        coronaEvent.put(CORONA_TYPE_EVENT, kAdType);
-        coronaEvent.put(CORONA_PLACEMENT_ID_EVENT, kPlacementId);
-        coronaEvent.put(CoronaLuaEvent.ISERROR_KEY, true);
-        coronaEvent.put(CoronaLuaEvent.RESPONSE_KEY, statusCode.getStatusCode() + " - " + statusCode.getMessage());
+    public void onLoadFailed(AdBackend.Ad ad, StatusCode statusCode, String message)
+    {
+      // Ensure the Ad slot is still registered and still owns this interstitial
+      if (inMobiAds.get(kPlacementId) == fSlot && fSlot.interstitials.markFailed((AdBackend.Interstitial)ad))
+      {
+        fSlot.stats.recordFailure(statusCode);
+
+        // Try again later if the failure is retryable
+        final AdSlot.State pooledState = fSlot.interstitials.impliedState();
+        if (scheduleRetry(fSlot, statusCode))
+        {
+          fSlot.setState(pooledState == AdSlot.State.CONSUMED ? AdSlot.State.LOADING : pooledState);
+          return;
+        }
+
+        // Other pooled interstitials are still ready or loading, the pool is topped up again on the next dismissal
+        if (pooledState != AdSlot.State.CONSUMED)
+        {
+          fSlot.setState(pooledState);
+          return;
+        }
+
+        // Mark the slot as failed and remove it, keeping the failure for getState()
+        fSlot.setState(AdSlot.State.FAILED);
+        inMobiFailures.put(kPlacementId, fSlot.getStateChange());
+        inMobiAds.remove(kPlacementId, fSlot);
+        settleLoad(fSlot);
         // Dispatch the event
-        dispatchLuaEvent(coronaEvent);
+        dispatchLuaErrorEvent(FAILED_EVENT, kAdType, kPlacementId, AdEvent.describe(statusCode, message));
       }
     }
 
     @Override
-    public void onAdDisplayed(InMobiInterstitial ad)
+    public void onDismissed(AdBackend.Ad ad)
     {
-      // Don't dispatch the event here, as it only fires *after* the ad has been
-      // dismissed, which isn't very helpful
-    }
+      // Record how long the interstitial was on screen
+      if (fSlot.displayedAt != 0)
+      {
+        fSlot.stats.timeToDismiss.record(SystemClock.uptimeMillis() - fSlot.displayedAt);
+        fSlot.displayedAt = 0;
+      }
+
+      // The interstitial has been used up, allow the placement to be loaded again unless others are pooled
+      fSlot.interstitials.markDismissed((AdBackend.Interstitial)ad);
+      fSlot.setState(fSlot.interstitials.impliedState());
+
+      // Top the pool back up once the dismissal has been handled
+      if (fSlot.interstitials.autoRefill && inMobiAds.get(kPlacementId) == fSlot)
+      {
+        fMainHandler.post(new Runnable() {
+          @Override
+          public void run() {
+            final CoronaActivity coronaActivity = CoronaEnvironment.getCoronaActivity();
+            if (coronaActivity != null && inMobiAds.get(kPlacementId) == fSlot) {
+              fillInterstitialPool(coronaActivity, fSlot);
+            }
+          }
+        });
+      }
 
-    @Override
-    public void onAdDismissed(InMobiInterstitial ad)
-    {
-      // Create the event
-      Map<String, Object> coronaEvent = new HashMap<>();
-      coronaEvent.put(CORONA_PHASE_EVENT, HIDDEN_EVENT);
-      coronaEvent.put(CORONA_TYPE_EVENT, kAdType);
-      coronaEvent.put(CORONA_PLACEMENT_ID_EVENT, kPlacementId);
       // Dispatch the event
-      dispatchLuaEvent(coronaEvent);
+      dispatchLuaEvent(HIDDEN_EVENT, kAdType, kPlacementId);
     }
 
 
     @Override
-    public void onUserLeftApplication(InMobiInterstitial ad)
+    public void onUserLeftApplication(AdBackend.Ad ad)
     {
       // send Corona Lua event
-      Map<String, Object> coronaEvent = new HashMap<>();
-      coronaEvent.put(CORONA_PHASE_EVENT, CLICKED_EVENT);
-      coronaEvent.put(CORONA_TYPE_EVENT, kAdType);
-      coronaEvent.put(CORONA_PLACEMENT_ID_EVENT, kPlacementId);
-      dispatchLuaEvent(coronaEvent);
+      dispatchLuaEvent(CLICKED_EVENT, kAdType, kPlacementId);
     }
 
 
     @Override
-    public void onRewardsUnlocked(InMobiInterstitial ad, Map<Object, Object> rewards)
+    public void onRewardsUnlocked(AdBackend.Ad ad, Map<Object, Object> rewards)
     {
 
       // ignore event if no reward data exists
@@ -394,161 +579,845 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener
       eventData.putAll(rewards);
 
       // send the Corona Lua event
-      Map<String, Object> coronaEvent = new HashMap<>();
-      coronaEvent.put(CORONA_PHASE_EVENT, REWARD_COMPLETED);
-      coronaEvent.put(CORONA_TYPE_EVENT, kAdType);
-      coronaEvent.put(CORONA_PLACEMENT_ID_EVENT, kPlacementId);
-      coronaEvent.put(CORONA_DATA_EVENT, eventData);
-      dispatchLuaEvent(coronaEvent);
+      dispatchLuaEvent(REWARD_COMPLETED, kAdType, kPlacementId, eventData);
     }
   }
 
-  // Clear ads
-  private int clearAds()
+  // Keep the interstitials that survived a suspend and reload the ones that were lost, dispatches how many of each (UI thread only)
+  private void revalidateAds()
   {
-    if (inMobiAds != null)
-    {
-      // Loop over the inMobiAds dict
-      for(Iterator<Map.Entry<String, Object>> it = inMobiAds.entrySet().iterator(); it.hasNext();)
-      {
-        // Get the current entry
-        Map.Entry<String, Object> entry = it.next();
-        // Get the dictionary for this Ad
-        Map<String, Object> adDict = (Map<String, Object>)inMobiAds.get(entry.getKey());
-        // Get the Ad type
-        String adUnitType = (String)adDict.get(AD_UNIT_TYPE_KEY);
-        // Is this Ad a banner?
-        boolean isBannerAd = adUnitType.equalsIgnoreCase(BANNER_AD_NAME);
-
-        // If this Ad is a banner, don't remove it from the screen
-        // NOTE: inMobi remove all Ad types from the screen on a suspend/resume, _except_ for banner Ads
-        if (!isBannerAd)
-        {
-          // Remove this entry from the inMobiAds dictionary
-          it.remove();
-          // Remove the adDict
-          adDict.clear();
-          adDict = null;
-        }
-      }
-    }
+    final CoronaActivity coronaActivity = CoronaEnvironment.getCoronaActivity();
+    final long now = SystemClock.uptimeMillis();
+    int kept = 0;
+    int reloaded = 0;
 
-    return 0;
-  }
+    // Banners stay on screen across a suspend, only interstitials can be invalidated
+    for (AdSlot slot : inMobiAds.values())
+    {
+      final InterstitialPool pool = slot.interstitials;
+      if (pool == null)
+      {
+        continue;
+      }
 
-  // Get the corona sdk version
-  private static String getCoronaVersion(LuaState L)
-  {
-    L.getGlobal("system");
-    L.getField(-1, "getInfo");
-    L.pushString("build");
-    L.call(1, 1);
-    String buildString = L.toString(-1);
-    L.pop(2);
+      final int dropped = pool.dropInvalid(now);
+      kept += pool.readyCount();
+      if (dropped > 0 && coronaActivity != null)
+      {
+        reloaded += pool.missing();
+        fillInterstitialPool(coronaActivity, slot);
+        scheduleExpiry(slot);
+      }
+      if (slot.getState() == AdSlot.State.READY)
+      {
+        slot.setState(pool.impliedState());
+      }
+    }
 
-    return buildString;
+    if (kept > 0 || reloaded > 0)
+    {
+      Hashtable<Object, Object> data = new Hashtable<>();
+      data.put("kept", kept);
+      data.put("reloaded", reloaded);
+      dispatchLuaEvent(RESUMED_EVENT, null, null, data);
+    }
   }
 
-  // Handle the beacon response
-  public class PerkBeaconListener implements JavaFunction
+  // Schedule another load attempt for a slot after a failure, returns false if the failure is final (UI thread only)
+  private boolean scheduleRetry(final AdSlot slot, final StatusCode statusCode)
   {
-    // This method is executed when the Lua function is called
-    @Override
-    public int invoke(LuaState L)
+    final RetryPolicy policy = slot.retryPolicy;
+    if (policy == null)
     {
-      //L.getField(-1, "response");
-      //Log.i(CORONA_LOG_TAG, "Network listener: response: " + L.toString(-1));
-
-      return 0;
+      return false;
     }
-  }
 
-  // Set the Corona attribution (so delivered Ads will show as coming from Corona)
-  private static Map<String, String> coronaAttributionExtras(LuaState L)
-  {
-    // Get the Corona SDK version
-    final String coronaSDKVersion = getCoronaVersion(L);
-    // The Corona extras map
-    Map<String, String> coronaExtras = null;
+    // Count one attempt per round: the other interstitials of a pool failing in the same round are refilled by the pending retry
+    if (slot.retryTask != null)
+    {
+      return true;
+    }
 
-    // If the coronaSDKVersion isn't null
-    if (coronaSDKVersion != null)
+    slot.failedAttempts++;
+    if (!policy.shouldRetry(statusCode, slot.failedAttempts))
     {
-      // Set the Corona atrribution (so delivered Ads will show as coming from Corona)
-      coronaExtras = new HashMap<String, String>();
-      coronaExtras.put("tp", "p_corona");
-      coronaExtras.put("tp-ver", coronaSDKVersion);
+      slot.failedAttempts = 0;
+      return false;
     }
 
-    return coronaExtras;
+    cancelRetry(slot);
+    slot.retryTask = new Runnable() {
+      @Override
+      public void run() {
+        slot.retryTask = null;
+        final CoronaActivity coronaActivity = CoronaEnvironment.getCoronaActivity();
+        if (coronaActivity == null || inMobiAds.get(slot.placementId) != slot)
+        {
+          return;
+        }
+
+        if (slot.isBanner)
+        {
+          loadBanner(slot);
+        }
+        else
+        {
+          fillInterstitialPool(coronaActivity, slot);
+        }
+      }
+    };
+    fMainHandler.postDelayed(slot.retryTask, policy.delayMs(slot.failedAttempts, fRetryRandom));
+
+    return true;
   }
 
-  /**
-   * <p>
-   * Note that a new LuaLoader instance will not be created for every CoronaActivity instance.
-   * That is, only one instance of this class will be created for the lifetime of the application process.
-   * This gives a plugin the option to do operations in the background while the CoronaActivity is destroyed.
-   */
-  public LuaLoader()
+  // The time before expiry at which an ad is reloaded in the background
+  private static long ttlLeadMs(final long ttlMs)
   {
-    // Set up this plugin to listen for Corona runtime events to be received by methods
-    // onLoaded(), onStarted(), onSuspended(), onResumed(), and onExiting().
-    CoronaEnvironment.addRuntimeListener(this);
+    return Math.min(ttlMs / 10, 60000);
   }
 
-  /**
-   * Called when this plugin is being loaded via the Lua require() function.
-   * <p>
-   * Note that this method will be called everytime a new CoronaActivity has been launched.
-   * This means that you'll need to re-initialize this plugin here.
-   * <p>
-   * Warning! This method is not called on the main UI thread.
-   * @param L Reference to the Lua state that the require() function was called from.
-   * @return Returns the number of values that the require() function will return.
-   *         <p>
-   *         Expected to return 1, the library that the require() function is loading.
-   */
-  @Override
-  public int invoke(LuaState L)
+  // Schedule the slot's next proactive reload or expiry on the timer wheel (UI thread only)
+  private void scheduleExpiry(final AdSlot slot)
   {
-    // Register this plugin into Lua with the following functions.
-    NamedJavaFunction[] luaFunctions = new NamedJavaFunction[]
+    long deadline = Long.MAX_VALUE;
+
+    if (slot.interstitials != null)
+    {
+      deadline = slot.interstitials.nextDeadline(ttlLeadMs(fInterstitialTtlMs));
+    }
+    // Banners on screen are kept fresh by fBannerRefresh, only the ones waiting to be shown expire
+    else if (fBannerTtlMs > 0 && slot.getState() == AdSlot.State.READY)
+    {
+      deadline = slot.loadedAt + fBannerTtlMs - ttlLeadMs(fBannerTtlMs);
+    }
+
+    if (deadline == Long.MAX_VALUE)
+    {
+      if (slot.ttlTimeout != null)
       {
-        new init(),
-        new setUserDetails(),
-        new load(),
-        new isLoaded(),
-        new show(),
-        new hide(),
-      };
-    String libName = L.toString(1);
-    L.register(libName, luaFunctions);
+        fTimerWheel.cancel(slot.ttlTimeout);
+      }
+      return;
+    }
 
-    // Returning 1 indicates that the Lua require() function will return the above Lua library.
-    return 1;
+    if (slot.ttlTimeout == null)
+    {
+      slot.ttlTimeout = new TimerWheel.Timeout() {
+        @Override
+        void expire() {
+          onAdExpiring(slot);
+        }
+      };
+    }
+    fTimerWheel.schedule(slot.ttlTimeout, deadline);
   }
 
-  // [Lua] inMobi.init()
-  private class init implements NamedJavaFunction
+  // Drop expired ads and reload the ones about to expire in the background (UI thread only)
+  private void onAdExpiring(final AdSlot slot)
   {
-    // Gets the name of the Lua function as it would appear in the Lua script
-    @Override
-    public String getName()
+    final CoronaActivity coronaActivity = CoronaEnvironment.getCoronaActivity();
+    if (coronaActivity == null || inMobiAds.get(slot.placementId) != slot)
     {
-      return "init";
+      return;
     }
 
-    // This method is executed when the Lua function is called
-    @Override
-    public int invoke(LuaState L)
+    final long now = SystemClock.uptimeMillis();
+
+    if (slot.interstitials != null)
+    {
+      final InterstitialPool pool = slot.interstitials;
+      pool.dropExpired(now);
+      if (pool.markReplacing(now, ttlLeadMs(fInterstitialTtlMs)) > 0 || pool.missing() > 0)
+      {
+        fillInterstitialPool(coronaActivity, slot);
+      }
+      if (slot.getState() == AdSlot.State.READY)
+      {
+        slot.setState(pool.impliedState());
+      }
+    }
+    else if (slot.getState() == AdSlot.State.READY)
+    {
+      // The hidden banner keeps its current creative until the new one arrives
+      loadBanner(slot);
+    }
+
+    scheduleExpiry(slot);
+  }
+
+  // Count a banner refresh, and report the refreshes with one "refreshed" event per interval (UI thread only)
+  private void reportRefresh(final AdSlot slot, final AdBackend.AdMeta meta)
+  {
+    slot.unreportedRefreshes++;
+    slot.lastRefreshMeta = meta;
+
+    final long now = SystemClock.uptimeMillis();
+    final long dueAt = slot.refreshReportedAt + fRefreshEventIntervalMs;
+    if (slot.refreshReportedAt == 0 || now >= dueAt)
+    {
+      dispatchRefreshed(slot, now);
+      return;
+    }
+
+    // Refreshes until then are folded into one event, nothing is dispatched for them now
+    if (slot.refreshReportTimeout == null)
+    {
+      slot.refreshReportTimeout = new TimerWheel.Timeout() {
+        @Override
+        void expire() {
+          if (slot.unreportedRefreshes > 0 && inMobiAds.get(slot.placementId) == slot)
+          {
+            dispatchRefreshed(slot, SystemClock.uptimeMillis());
+          }
+        }
+      };
+    }
+    if (!slot.refreshReportTimeout.isScheduled())
+    {
+      fTimerWheel.schedule(slot.refreshReportTimeout, dueAt);
+    }
+  }
+
+  private void dispatchRefreshed(final AdSlot slot, final long now)
+  {
+    Hashtable<Object, Object> data = metaData(slot.lastRefreshMeta);
+    if (data == null)
+    {
+      data = new Hashtable<>();
+    }
+    data.put("refreshes", slot.unreportedRefreshes);
+
+    slot.unreportedRefreshes = 0;
+    slot.lastRefreshMeta = null;
+    slot.refreshReportedAt = now;
+    dispatchLuaEvent(REFRESHED_EVENT, slot.adType, slot.placementId, data);
+  }
+
+  // Remove a banner that isn't on screen and let the SDK free it (UI thread only)
+  private void destroyBanner(final AdSlot slot)
+  {
+    releaseBanner(slot);
+    slot.bannerAd.destroy();
+    slot.bannerAd = null;
+  }
+
+  // Release the ads held for the given memory tier and everything below it, dispatches what was released (UI thread only)
+  private void releaseForMemory(final MemoryTrimmer.Tier tier)
+  {
+    int banners = 0;
+    int interstitials = 0;
+
+    // Hidden and never shown banners (loaded banners sit off screen until shown), pooled or not.
+    // Banners still loading are kept, so that their load() still ends in a "loaded" or "failed" event
+    for (AdSlot slot : inMobiAds.values())
+    {
+      final AdSlot.State state = slot.getState();
+      if (slot.isBanner && slot.bannerAd != null && state != AdSlot.State.SHOWING && state != AdSlot.State.LOADING)
+      {
+        fBannerPool.unpark(slot);
+        destroyBanner(slot);
+        banners++;
+      }
+    }
+
+    // Pooled interstitials beyond the first, then every interstitial that isn't on screen
+    if (tier.compareTo(MemoryTrimmer.Tier.POOLED_INTERSTITIALS) >= 0)
+    {
+      final int keep = tier == MemoryTrimmer.Tier.ALL_HIDDEN ? 0 : 1;
+      for (AdSlot slot : inMobiAds.values())
+      {
+        if (slot.interstitials == null)
+        {
+          continue;
+        }
+        final int dropped = slot.interstitials.trimReady(keep);
+        if (dropped > 0)
+        {
+          interstitials += dropped;
+          if (!fTrimmedSlots.contains(slot))
+          {
+            fTrimmedSlots.add(slot);
+          }
+          if (slot.getState() == AdSlot.State.READY)
+          {
+            slot.setState(slot.interstitials.impliedState());
+          }
+          scheduleExpiry(slot);
+        }
+      }
+    }
+
+    if (banners > 0 || interstitials > 0)
+    {
+      Hashtable<Object, Object> data = new Hashtable<>();
+      data.put("tier", tier == MemoryTrimmer.Tier.ALL_HIDDEN ? "all" : (tier == MemoryTrimmer.Tier.POOLED_INTERSTITIALS ? "interstitials" : "banners"));
+      data.put("banners", banners);
+      data.put("interstitials", interstitials);
+      dispatchLuaEvent(MEMORY_TRIM_EVENT, null, null, data);
+    }
+  }
+
+  // Load the interstitials released by a memory trim again, waits for a resume if the runtime is suspended (UI thread only).
+  // Released banners aren't reloaded: they were off screen, and the app loads them again when it wants to show them
+  private void refillAfterMemoryTrim()
+  {
+    final CoronaActivity coronaActivity = CoronaEnvironment.getCoronaActivity();
+    if (fSuspended || coronaActivity == null)
+    {
+      return;
+    }
+
+    for (AdSlot slot : fTrimmedSlots)
+    {
+      if (inMobiAds.get(slot.placementId) == slot && slot.interstitials.missing() > 0)
+      {
+        fillInterstitialPool(coronaActivity, slot);
+      }
+    }
+    fTrimmedSlots.clear();
+  }
+
+  // Cancel a pending retry (UI thread only)
+  private void cancelRetry(final AdSlot slot)
+  {
+    if (slot.retryTask != null)
+    {
+      fMainHandler.removeCallbacks(slot.retryTask);
+      slot.retryTask = null;
+    }
+  }
+
+  // Remove a banner from the screen and from the inMobiAds registry (UI thread only)
+  private void releaseBanner(final AdSlot slot)
+  {
+    // Hide the banner Ad and remove it from the view
+    slot.bannerAd.detach();
+    // Remove the banner ad from the inMobiAds registry
+    cancelRetry(slot);
+    fBannerRefresh.hidden(slot);
+    if (slot.ttlTimeout != null)
+    {
+      fTimerWheel.cancel(slot.ttlTimeout);
+    }
+    if (slot.refreshReportTimeout != null)
+    {
+      fTimerWheel.cancel(slot.refreshReportTimeout);
+    }
+    slot.setState(AdSlot.State.IDLE);
+    inMobiAds.remove(slot.placementId, slot);
+    settleLoad(slot);
+  }
+
+  // Run the deferred SDK init if it hasn't run yet, then replay the calls queued behind it (UI thread only)
+  private void initializeSdk()
+  {
+    final Runnable sdkInit = fSdkInit;
+    if (sdkInit == null)
+    {
+      return;
+    }
+    // Runs once the last run's stored state has been applied
+    if (fRestoring)
+    {
+      fSdkInitDue = true;
+      return;
+    }
+
+    fSdkInit = null;
+    if (fSdkInitIdleHandler != null)
+    {
+      Looper.myQueue().removeIdleHandler(fSdkInitIdleHandler);
+      fSdkInitIdleHandler = null;
+    }
+    sdkInit.run();
+
+    final Runnable[] calls = fPendingCalls.toArray(new Runnable[0]);
+    fPendingCalls.clear();
+    for (Runnable call : calls)
+    {
+      call.run();
+    }
+  }
+
+  // Read what the last run stored on the shared background thread, then apply it on the UI thread and run the SDK init if it came due meanwhile
+  private void restoreInBackground(final TargetingStore targetingStore, final FrequencyCaps frequencyCaps, final Boolean initConsent, final UserDetails detailsAtInit, final Hashtable<Object, Object> initData, final Runnable sdkInit)
+  {
+    AtomicFile.background(new Runnable() {
+      @Override
+      public void run() {
+        final long restoreStart = System.nanoTime();
+        final TargetingStore.Snapshot snapshot = targetingStore != null ? targetingStore.read() : null;
+        final HashMap<String, long[]> times = frequencyCaps != null ? frequencyCaps.readStored() : null;
+        final double restoreTime = (System.nanoTime() - restoreStart) / 1000000.0;
+
+        fMainHandler.post(new Runnable() {
+          @Override
+          public void run() {
+            if (times != null) {
+              frequencyCaps.restore(times);
+            }
+            if (targetingStore != null) {
+              restoreTargeting(targetingStore, snapshot, initConsent, detailsAtInit);
+              initData.put("restored", snapshot != null);
+              initData.put("restoreTime", restoreTime);
+            }
+
+            // The runtime exited meanwhile
+            if (fSdkInit != sdkInit) {
+              return;
+            }
+            fRestoring = false;
+            if (fSdkInitLazy) {
+              dispatchLuaEvent("init", null, null, initData);
+            }
+            if (fSdkInitDue) {
+              fSdkInitDue = false;
+              initializeSdk();
+            }
+          }
+        });
+      }
+    });
+  }
+
+  // Put the user details and consent stored by the last run under the ones given since init, and store the result if it differs (UI thread only)
+  private void restoreTargeting(final TargetingStore store, final TargetingStore.Snapshot snapshot, final Boolean initConsent, final UserDetails detailsAtInit)
+  {
+    synchronized (fTargetingLock)
+    {
+      final Boolean storedConsent = snapshot != null ? snapshot.hasUserConsent : null;
+      final boolean detailsSet = fUserDetails != detailsAtInit;
+
+      // Consent given to this init wins over the stored one, and so do details set since
+      fStoredConsent = initConsent != null ? initConsent : storedConsent;
+      if (snapshot != null)
+      {
+        final UserDetails details = fUserDetails.over(snapshot.details);
+        details.applyChanges(fUserDetails);
+        fUserDetails = details;
+      }
+
+      // Details set before the restore were stored without the restored ones
+      if (detailsSet || (initConsent != null && !initConsent.equals(storedConsent)))
+      {
+        store.write(fStoredConsent, fUserDetails);
+      }
+    }
+  }
+
+  // Queue a call until the SDK is initialized, returns true if it was queued (UI thread only)
+  private boolean deferUntilInitialized(final Runnable call, final boolean isLoad)
+  {
+    if (fSdkInit == null)
+    {
+      return false;
+    }
+
+    // In lazy mode the first load initializes the SDK and then runs straight away, unless the init has to wait for the restore
+    if (isLoad && fSdkInitLazy)
+    {
+      initializeSdk();
+      if (fSdkInit == null)
+      {
+        return false;
+      }
+    }
+
+    fPendingCalls.add(call);
+    return true;
+  }
+
+  // Read and validate a load of one placement, options is the stack index of the options table, null if invalid (Lua thread only)
+  private LoadRequest newLoadRequest(LuaState L, final String adUnitType, final String placementId, final int options, final String api)
+  {
+    /* Try to convert the placement id to a long (needed due to inMobi only accepting
+      Long for their ad load calls). We do this here so we can catch the user using an
+      incorrect alphanumeric placement id before we actually get to the loading call.
+    */
+    final Long placementIdValue = placementIdValue(placementId);
+    if (placementIdValue == null)
+    {
+      Log.i(CORONA_LOG_TAG, "WARNING: Invalid placementId '" + placementId + "'. Placement id's are numeric");
+      return null;
+    }
+
+    final LoadRequest request = new LoadRequest(adUnitType, placementId, placementIdValue);
+    if (L.type(options) == LuaType.TABLE)
+    {
+      request.readOptions(L, options, api);
+    }
+    request.stats = statsFor(placementId);
+    request.averageBid = request.stats.averageBid();
+    request.extras = fAttributionExtras;
+    request.calledAt = SystemClock.uptimeMillis();
+
+    return request;
+  }
+
+  // Create and load the ads for a load request, returns the slot that is now loading, null if nothing was loaded (UI thread only)
+  private AdSlot performLoad(final CoronaActivity coronaActivity, final LoadRequest request)
+  {
+    request.stats.uiHopLatency.record(SystemClock.uptimeMillis() - request.calledAt);
+    final String placementId = request.placementId;
+    final String adUnitType = request.adUnitType;
+    final long placementIdValue = request.placementIdValue;
+    final AdSlot existingSlot = inMobiAds.get(placementId);
+
+    // Loading a pooled interstitial placement again just tops its pool up
+    if (existingSlot != null && !existingSlot.isReusable() && existingSlot.interstitials != null) {
+      // One request beacon per load() from Lua, the plugin's own refreshes, retries and reloads aren't counted
+      if (existingSlot.interstitials.missing() > 0) {
+        sendBeacon(CoronaBeacon.REQUEST, placementId);
+      }
+      fillInterstitialPool(coronaActivity, existingSlot);
+    }
+    // Loading a hidden, pooled banner reloads it in place
+    else if (existingSlot != null && existingSlot.isBanner && fBannerPool.contains(existingSlot) && adUnitType.equalsIgnoreCase(BANNER_AD_NAME)) {
+      final float scale = coronaActivity.getApplicationContext().getResources().getDisplayMetrics().density + 0.5f;
+      final AdBackend.Banner bannerAd = existingSlot.bannerAd;
+
+      if (existingSlot.bannerWidth != request.bannerWidth || existingSlot.bannerHeight != request.bannerHeight) {
+        existingSlot.bannerWidth = request.bannerWidth;
+        existingSlot.bannerHeight = request.bannerHeight;
+        bannerAd.resize((int)(request.bannerWidth * scale), (int)(request.bannerHeight * scale));
+      }
+      // The plugin refreshes the banner itself, only while it is on screen
+      bannerAd.setAutoRefresh(false, request.refreshInterval);
+      existingSlot.refreshIntervalMs = request.autoRefresh ? request.refreshInterval * 1000L : 0;
+
+      existingSlot.retryPolicy = request.retryPolicy;
+      existingSlot.failedAttempts = 0;
+      cancelRetry(existingSlot);
+      existingSlot.setState(AdSlot.State.LOADING);
+      fBannerPool.touch(existingSlot);
+      loadBanner(existingSlot);
+      sendBeacon(CoronaBeacon.REQUEST, placementId);
+    }
+    else if (existingSlot == null || existingSlot.isReusable()) {
+      if (adUnitType.equalsIgnoreCase(BANNER_AD_NAME)) {
+        final float scale = coronaActivity.getApplicationContext().getResources().getDisplayMetrics().density + 0.5f;
+
+        final AdSlot slot = new AdSlot(placementId, placementIdValue, BANNER_AD_NAME, true);
+        slot.stats = request.stats;
+        slot.retryPolicy = request.retryPolicy;
+        AdBackend.Banner bannerAd = fBackend.createBanner(placementIdValue, new InMobiBannerAdListenerClass(slot));
+        // The plugin refreshes the banner itself, only while it is on screen
+        bannerAd.setAutoRefresh(false, request.refreshInterval);
+        slot.refreshIntervalMs = request.autoRefresh ? request.refreshInterval * 1000L : 0;
+
+        // put it off screen
+        bannerAd.attach((int)(request.bannerWidth * scale), (int)(request.bannerHeight * scale));
+
+        if (request.extras != null) {
+          bannerAd.setExtras(request.extras);
+        }
+
+        slot.bannerAd = bannerAd;
+        slot.bannerWidth = request.bannerWidth;
+        slot.bannerHeight = request.bannerHeight;
+        slot.setState(AdSlot.State.LOADING);
+        inMobiAds.put(placementId, slot);
+        inMobiFailures.remove(placementId);
+
+        loadBanner(slot);
+        sendBeacon(CoronaBeacon.REQUEST, placementId);
+      }
+      else if (adUnitType.equalsIgnoreCase(INTERSTITIAL_AD_NAME)) {
+        final AdSlot slot = new AdSlot(placementId, placementIdValue, INTERSTITIAL_AD_NAME, false);
+        slot.stats = request.stats;
+        slot.retryPolicy = request.retryPolicy;
+        // Without preloadDepth a single interstitial is loaded and not refilled after it is dismissed
+        slot.interstitials = new InterstitialPool(Math.max(request.preloadDepth, 1), request.preloadDepth > 0, request.extras);
+        inMobiAds.put(placementId, slot);
+        inMobiFailures.remove(placementId);
+
+        fillInterstitialPool(coronaActivity, slot);
+        sendBeacon(CoronaBeacon.REQUEST, placementId);
+      }
+      else {
+        Log.i(CORONA_LOG_TAG, "ERROR: Unsupported Ad unit type");
+      }
+    }
+
+    return inMobiAds.get(request.placementId);
+  }
+
+  // Let the slot's loadMany() batch or loadGroup() group move on once the slot has loaded or failed for good (UI thread only)
+  private static void settleLoad(final AdSlot slot)
+  {
+    if (slot.loadBatch != null)
+    {
+      slot.loadBatch.settled(slot);
+    }
+    if (slot.loadGroup != null)
+    {
+      slot.loadGroup.settled(slot);
+    }
+  }
+
+  // The placement to use for a placement id or group name, null if the group has nothing ready (any thread)
+  private String resolvePlacementId(final String name)
+  {
+    final LoadGroup group = inMobiGroups.get(name);
+    if (group == null)
+    {
+      return name;
+    }
+
+    // The first ready placement in the group's order, or the one with the highest bid
+    String best = null;
+    double bestBid = -1;
+    for (String placementId : group.placementIds)
+    {
+      final AdSlot slot = inMobiAds.get(placementId);
+      if (slot != null && slot.isReady())
+      {
+        if (!fSelectHighestBid)
+        {
+          return placementId;
+        }
+        final double bid = slot.readyBid();
+        if (bid > bestBid)
+        {
+          best = placementId;
+          bestBid = bid;
+        }
+      }
+    }
+    return best;
+  }
+
+  // The bid and creative of a loaded ad as event data, null if unknown
+  private static Hashtable<Object, Object> metaData(final AdBackend.AdMeta meta)
+  {
+    if (meta == null)
+    {
+      return null;
+    }
+
+    final Hashtable<Object, Object> data = new Hashtable<>();
+    data.put("bid", meta.bid);
+    if (meta.creativeId != null)
+    {
+      data.put("creativeId", meta.creativeId);
+    }
+    return data;
+  }
+
+  // Get (or create) the stats for a placement
+  private static AdStats statsFor(final String placementId)
+  {
+    AdStats stats = inMobiStats.get(placementId);
+    if (stats == null)
+    {
+      final AdStats created = new AdStats();
+      stats = inMobiStats.putIfAbsent(placementId, created);
+      if (stats == null)
+      {
+        stats = created;
+      }
+    }
+    return stats;
+  }
+
+  // Count an impression against the frequency caps (UI thread only)
+  private void recordImpression(final AdSlot slot)
+  {
+    final FrequencyCaps caps = fFrequencyCaps;
+    if (caps != null)
+    {
+      caps.recordImpression(slot.adType, slot.placementId, System.currentTimeMillis());
+    }
+  }
+
+  // Request a banner load (UI thread only)
+  private void loadBanner(final AdSlot slot)
+  {
+    slot.loadRequestedAt = SystemClock.uptimeMillis();
+    slot.stats.recordRequest();
+    slot.bannerAd.load();
+  }
+
+  // Create and load interstitials until the slot's pool is back at its depth (UI thread only)
+  private void fillInterstitialPool(final CoronaActivity coronaActivity, final AdSlot slot)
+  {
+    final InterstitialPool pool = slot.interstitials;
+
+    for (int i = pool.missing(); i > 0; i--)
+    {
+      AdBackend.Interstitial interstitialAd = fBackend.createInterstitial(slot.placementIdValue, new InMobiInterstitialAdListenerClass(slot));
+      if (pool.extras != null)
+      {
+        interstitialAd.setExtras(pool.extras);
+      }
+
+      pool.addLoading(interstitialAd, SystemClock.uptimeMillis());
+      slot.stats.recordRequest();
+      interstitialAd.load();
+    }
+
+    // Nothing ready yet, but at least one interstitial is on its way
+    if (pool.readyCount() == 0 && !pool.isShowing() && pool.loadingCount() > 0)
+    {
+      slot.setState(AdSlot.State.LOADING);
+    }
+  }
+
+  // Get the corona sdk version
+  private static String getCoronaVersion(LuaState L)
+  {
+    L.getGlobal("system");
+    L.getField(-1, "getInfo");
+    L.pushString("build");
+    L.call(1, 1);
+    String buildString = L.toString(-1);
+    L.pop(2);
+
+    return buildString;
+  }
+
+  // Send an ad request or impression to Corona's beacon endpoint
+  private void sendBeacon(final String event, final String placementId)
+  {
+    CoronaBeacon.sendDeviceDataToBeacon(fRuntimeTaskDispatcher, kName, kVersionNumber, event, placementId, new PerkBeaconListener());
+  }
+
+  // Handle the beacon response
+  public class PerkBeaconListener implements JavaFunction
+  {
+    // This method is executed when the Lua function is called
+    @Override
+    public int invoke(LuaState L)
+    {
+      //L.getField(-1, "response");
+      //Log.i(CORONA_LOG_TAG, "Network listener: response: " + L.toString(-1));
+
+      return 0;
+    }
+  }
+
+  // Set the Corona attribution (so delivered Ads will show as coming from Corona)
+  private static Map<String, String> coronaAttributionExtras(LuaState L)
+  {
+    // Get the Corona SDK version
+    final String coronaSDKVersion = getCoronaVersion(L);
+    // The Corona extras map
+    Map<String, String> coronaExtras = null;
+
+    // If the coronaSDKVersion isn't null
+    if (coronaSDKVersion != null)
+    {
+      // Set the Corona atrribution (so delivered Ads will show as coming from Corona)
+      coronaExtras = new HashMap<String, String>();
+      coronaExtras.put("tp", "p_corona");
+      coronaExtras.put("tp-ver", coronaSDKVersion);
+      // The same map is handed to every ad
+      coronaExtras = Collections.unmodifiableMap(coronaExtras);
+    }
+
+    return coronaExtras;
+  }
+
+  // Get the numeric value of a placement id, null if it isn't numeric (Lua thread only)
+  private Long placementIdValue(final String placementId)
+  {
+    Long value = fPlacementIdValues.get(placementId);
+    if (value == null)
+    {
+      try
+      {
+        value = Long.parseLong(placementId);
+      }
+      catch (NumberFormatException e)
+      {
+        return null;
+      }
+      fPlacementIdValues.put(placementId, value);
+    }
+    return value;
+  }
+
+  /**
+   * <p>
+   * Note that a new LuaLoader instance will not be created for every CoronaActivity instance.
+   * That is, only one instance of this class will be created for the lifetime of the application process.
+   * This gives a plugin the option to do operations in the background while the CoronaActivity is destroyed.
+   */
+  public LuaLoader()
+  {
+    // Set up this plugin to listen for Corona runtime events to be received by methods
+    // onLoaded(), onStarted(), onSuspended(), onResumed(), and onExiting().
+    CoronaEnvironment.addRuntimeListener(this);
+  }
+
+  /**
+   * Called when this plugin is being loaded via the Lua require() function.
+   * <p>
+   * Note that this method will be called everytime a new CoronaActivity has been launched.
+   * This means that you'll need to re-initialize this plugin here.
+   * <p>
+   * Warning! This method is not called on the main UI thread.
+   * @param L Reference to the Lua state that the require() function was called from.
+   * @return Returns the number of values that the require() function will return.
+   *         <p>
+   *         Expected to return 1, the library that the require() function is loading.
+   */
+  @Override
+  public int invoke(LuaState L)
+  {
+    // Register this plugin into Lua with the following functions.
+    NamedJavaFunction[] luaFunctions = new NamedJavaFunction[]
+      {
+        new init(),
+        new setUserDetails(),
+        new load(),
+        new loadMany(),
+        new loadGroup(),
+        new isLoaded(),
+        new canShow(),
+        new getState(),
+        new show(),
+        new hide(),
+        new getEventBatchStats(),
+        new getStats(),
+      };
+    String libName = L.toString(1);
+    L.register(libName, luaFunctions);
+
+    // Returning 1 indicates that the Lua require() function will return the above Lua library.
+    return 1;
+  }
+
+  // [Lua] inMobi.init()
+  private class init implements NamedJavaFunction
+  {
+    // Gets the name of the Lua function as it would appear in the Lua script
+    @Override
+    public String getName()
+    {
+      return "init";
+    }
+
+    // This method is executed when the Lua function is called
+    @Override
+    public int invoke(LuaState L)
     {
       // If the listener is null
       if (fListener == CoronaLua.REFNIL)
       {
         final String inMobiAccountId;
         String logLevel = null;
-        inMobiAds = new HashMap<>();
+        int bannerPoolSize = 0;
+        double bannerPoolTimeout = 60;
         Boolean hasUserConsent = null;
+        AdBackend backend = null;
+        String initMode = "eager";
+        String adSelection = null;
+        boolean persistUserDetails = false;
+        FrequencyCaps frequencyCaps = null;
+        double minRefreshInterval = BannerRefreshScheduler.kDefaultMinIntervalMs / 1000.0;
+        double refreshEventInterval = -1;
 
         if (CoronaLua.isListener(L, 1, kProviderName))
         {
@@ -560,31 +1429,134 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener
           return 0;
         }
 
-        if (L.type(2) == LuaType.TABLE)
-        {
-          L.getField(-1, "accountId");
-          if (L.type(-1) == LuaType.STRING)
+        if (L.type(2) == LuaType.TABLE)
+        {
+          L.getField(-1, "accountId");
+          if (L.type(-1) == LuaType.STRING)
+          {
+            inMobiAccountId = L.toString(-1);
+          }
+          else
+          {
+            Log.i(CORONA_LOG_TAG, "ERROR: inMobi.init() options.accountId (string) expected, got " + L.typeName(-1));
+            return 0;
+          }
+          L.pop(1);
+
+          L.getField(-1, "logLevel");
+          if (L.type(-1) == LuaType.STRING)
+          {
+            logLevel = L.toString(-1);
+          }
+          L.pop(1);
+
+          L.getField(-1, "hasUserConsent");
+          if (L.type(-1) == LuaType.BOOLEAN)
+          {
+            hasUserConsent = L.toBoolean(-1);
+          }
+          L.pop(1);
+
+          L.getField(-1, "persistUserDetails");
+          if (L.type(-1) == LuaType.BOOLEAN)
+          {
+            persistUserDetails = L.toBoolean(-1);
+          }
+          L.pop(1);
+
+          L.getField(-1, "frequencyCaps");
+          if (L.type(-1) == LuaType.TABLE)
           {
-            inMobiAccountId = L.toString(-1);
+            frequencyCaps = FrequencyCaps.fromLua(L, -1, new String[] {BANNER_AD_NAME, INTERSTITIAL_AD_NAME});
           }
-          else
+          L.pop(1);
+
+          L.getField(-1, "adSelection");
+          if (L.type(-1) == LuaType.STRING)
           {
-            Log.i(CORONA_LOG_TAG, "ERROR: inMobi.init() options.accountId (string) expected, got " + L.typeName(-1));
-            return 0;
+            adSelection = L.toString(-1);
+            if (!adSelection.equals("first") && !adSelection.equals("highestBid"))
+            {
+              Log.i(CORONA_LOG_TAG, "WARNING: inMobi.init() options.adSelection must be 'first' or 'highestBid', got '" + adSelection + "'. Using 'first'");
+            }
           }
           L.pop(1);
 
-          L.getField(-1, "logLevel");
+          L.getField(-1, "initMode");
           if (L.type(-1) == LuaType.STRING)
           {
-            logLevel = L.toString(-1);
+            initMode = L.toString(-1);
+            if (!initMode.equals("eager") && !initMode.equals("lazy") && !initMode.equals("idle"))
+            {
+              Log.i(CORONA_LOG_TAG, "WARNING: inMobi.init() options.initMode must be 'eager', 'lazy' or 'idle', got '" + initMode + "'. Using 'eager'");
+              initMode = "eager";
+            }
           }
           L.pop(1);
 
-          L.getField(-1, "hasUserConsent");
+          L.getField(-1, "eventBatching");
           if (L.type(-1) == LuaType.BOOLEAN)
           {
-            hasUserConsent = L.toBoolean(-1);
+            fEventBatching = L.toBoolean(-1);
+          }
+          L.pop(1);
+
+          L.getField(-1, "minRefreshInterval");
+          if (L.type(-1) == LuaType.NUMBER)
+          {
+            minRefreshInterval = L.toNumber(-1);
+          }
+          L.pop(1);
+
+          L.getField(-1, "refreshEventInterval");
+          if (L.type(-1) == LuaType.NUMBER)
+          {
+            refreshEventInterval = Math.max(0, L.toNumber(-1));
+          }
+          L.pop(1);
+
+          L.getField(-1, "bannerPoolSize");
+          if (L.type(-1) == LuaType.NUMBER)
+          {
+            bannerPoolSize = (int)L.toNumber(-1);
+          }
+          L.pop(1);
+
+          L.getField(-1, "bannerPoolTimeout");
+          if (L.type(-1) == LuaType.NUMBER)
+          {
+            bannerPoolTimeout = L.toNumber(-1);
+          }
+          L.pop(1);
+
+          L.getField(-1, "adTtl");
+          if (L.type(-1) == LuaType.TABLE)
+          {
+            L.getField(-1, BANNER_AD_NAME);
+            if (L.type(-1) == LuaType.NUMBER)
+            {
+              fBannerTtlMs = Math.max(0, (long)(L.toNumber(-1) * 1000));
+            }
+            L.pop(1);
+
+            L.getField(-1, INTERSTITIAL_AD_NAME);
+            if (L.type(-1) == LuaType.NUMBER)
+            {
+              fInterstitialTtlMs = Math.max(0, (long)(L.toNumber(-1) * 1000));
+            }
+            L.pop(1);
+          }
+          L.pop(1);
+
+          L.getField(-1, "fakeBackend");
+          if (L.type(-1) == LuaType.TABLE)
+          {
+            backend = FakeBackend.fromLua(L, -1, new FakeBackend.Scheduler() {
+              @Override
+              public void schedule(Runnable task, long delayMs) {
+                fMainHandler.postDelayed(task, delayMs);
+              }
+            });
           }
           L.pop(2);
         }
@@ -595,48 +1567,125 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener
         }
 
         final CoronaActivity coronaActivity = CoronaEnvironment.getCoronaActivity();
+
+        // The last run's user details, consent and impression times are read in the background, and applied before the SDK init
+        Hashtable<Object, Object> initData = null;
+        final UserDetails detailsAtInit;
+        synchronized (fTargetingLock) {
+          detailsAtInit = fUserDetails;
+        }
+        if (persistUserDetails && coronaActivity != null) {
+          fTargetingStore = new TargetingStore(coronaActivity.getFilesDir());
+          initData = new Hashtable<>();
+        }
+        if (frequencyCaps != null && coronaActivity != null) {
+          frequencyCaps.persistIn(coronaActivity.getFilesDir(), fMainHandler);
+        }
+        final TargetingStore kTargetingStore = initData != null ? fTargetingStore : null;
+        final FrequencyCaps kStoredCaps = coronaActivity != null ? frequencyCaps : null;
+        final boolean kRestoring = kTargetingStore != null || kStoredCaps != null;
+        fFrequencyCaps = frequencyCaps;
+        fSelectHighestBid = "highestBid".equals(adSelection);
+        fRefreshEventIntervalMs = refreshEventInterval >= 0 ? (long)(refreshEventInterval * 1000) : -1;
+
         final String kLogLevel = logLevel;
         final Boolean fHasUserConsent = hasUserConsent;
+        final int kBannerPoolSize = bannerPoolSize;
+        final long kBannerPoolTimeoutMs = (long)(bannerPoolTimeout * 1000);
+        final AdBackend kBackend = backend;
+        final String kInitMode = initMode;
+        final Hashtable<Object, Object> kInitData = initData;
+        final long kMinRefreshIntervalMs = (long)(minRefreshInterval * 1000);
+
+        // The attribution extras can't change while the app runs
+        fAttributionExtras = coronaAttributionExtras(L);
+
+        // The SDK init, which may be deferred until after the app's first frames
+        final Runnable sdkInit = new Runnable() {
+          @Override
+          public void run() {
+            // log plugin version to device console
+            Log.i(CORONA_LOG_TAG, kName + ": " + kVersionNumber + " (SDK: " + fBackend.getVersion() + ")");
+
+            // The stored consent has been settled against this init's by now
+            Boolean hasUserConsent = fHasUserConsent;
+            if (kTargetingStore != null) {
+              synchronized (fTargetingLock) {
+                hasUserConsent = fStoredConsent;
+              }
+            }
+
+            String gdpr = "1";
+            if (hasUserConsent == null) {
+              gdpr = "0";
+            }
+
+            // initialize InMobi SDK
+            JSONObject consentObject = new JSONObject();
+            try {
+              // Provide correct consent value to sdk which is obtained by User
+              consentObject.put(InMobiSdk.IM_GDPR_CONSENT_AVAILABLE, hasUserConsent);
+              // Provide 0 if GDPR is not applicable and 1 if applicable
+              consentObject.put("gdpr", gdpr);
+            } catch (JSONException e) {
+              e.printStackTrace();
+            }
+            fBackend.init(inMobiAccountId, consentObject, kLogLevel);
+
+            // send event to Corona (a lazy init has already sent it)
+            if (!fSdkInitLazy) {
+              dispatchLuaEvent("init", null, null, kInitData);
+            }
+          }
+        };
 
         if (coronaActivity != null) {
           coronaActivity.runOnUiThread(new Runnable() {
             @Override
             public void run() {
-              // log plugin version to device console
-              Log.i(CORONA_LOG_TAG, kName + ": " + kVersionNumber + " (SDK: " +InMobiSdk.getVersion() + ")");
-
-              String gdpr = "1";
-              if (fHasUserConsent == null) {
-                gdpr = "0";
+              // Set up the hidden banner pool
+              fBannerPool.configure(kBannerPoolSize, kBannerPoolTimeoutMs);
+              fBannerRefresh.setMinIntervalMs(kMinRefreshIntervalMs);
+              // Give ads back when the system runs low on memory
+              fMemoryTrimmer.register(coronaActivity);
+              // Serve fake ads instead of InMobi ones if asked to
+              if (kBackend != null) {
+                fBackend = kBackend;
               }
 
-              // initialize InMobi SDK
-              JSONObject consentObject = new JSONObject();
-              try {
-                // Provide correct consent value to sdk which is obtained by User
-                consentObject.put(InMobiSdk.IM_GDPR_CONSENT_AVAILABLE, fHasUserConsent);
-                // Provide 0 if GDPR is not applicable and 1 if applicable
-                consentObject.put("gdpr", gdpr);
-              } catch (JSONException e) {
-                e.printStackTrace();
+              fSdkInit = sdkInit;
+              fSdkInitLazy = kInitMode.equals("lazy");
+              fRestoring = kRestoring;
+              fSdkInitDue = false;
+
+              if (kInitMode.equals("idle")) {
+                // Wait until the main looper has nothing else to do, ie. the first frames have been drawn
+                fSdkInitIdleHandler = new MessageQueue.IdleHandler() {
+                  @Override
+                  public boolean queueIdle() {
+                    fSdkInitIdleHandler = null;
+                    initializeSdk();
+                    return false;
+                  }
+                };
+                Looper.myQueue().addIdleHandler(fSdkInitIdleHandler);
               }
-              InMobiSdk.init(coronaActivity, inMobiAccountId, consentObject);
-
-              if (kLogLevel != null) {
-                if (kLogLevel.equalsIgnoreCase("debug")) {
-                  InMobiSdk.setLogLevel(LogLevel.DEBUG);
-                }
-                else if (kLogLevel.equalsIgnoreCase("error")) {
-                  InMobiSdk.setLogLevel(LogLevel.ERROR);
+              else if (fSdkInitLazy) {
+                // The SDK is initialized by the first load(), the plugin can take calls straight away (or once restored)
+                if (!fRestoring) {
+                  dispatchLuaEvent("init", null, null, kInitData);
                 }
               }
-
-              // send event to Corona
-              Map<String, Object> coronaEvent = new HashMap<String, Object>();
-              coronaEvent.put(CORONA_PHASE_EVENT, "init");
-              dispatchLuaEvent(coronaEvent);
+              else {
+                initializeSdk();
+              }
             }
           });
+
+          // Queued after the setup above, so its result reaches the UI thread after it
+          if (kRestoring) {
+            restoreInBackground(kTargetingStore, kStoredCaps, fHasUserConsent, detailsAtInit, kInitData, sdkInit);
+          }
         }
       }
 
@@ -661,307 +1710,221 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener
       // If the userDetails is a table
       if (L.type(1) == LuaType.TABLE)
       {
-        // Get the gender field
-        L.getField(-1, "gender");
-
-        // If gender is a string
-        if (L.type(-1) == LuaType.STRING)
+        synchronized (fTargetingLock)
         {
-          // Get the user gender
-          String gender = L.toString(-1);
-
-          // Set the gender based on the passed type
-          if (gender.equalsIgnoreCase("male"))
+          // Read every field in one pass, on top of the values already applied
+          final UserDetails details = fUserDetails.merge(L, 1);
+          if (details == null)
           {
-            InMobiSdk.setGender(Gender.MALE);
+            return 0;
           }
-          else if (gender.equalsIgnoreCase("female"))
-          {
-            InMobiSdk.setGender(Gender.FEMALE);
+
+          // Only send what changed, and only store it again if something did
+          if (details.applyChanges(fUserDetails) > 0 && fTargetingStore != null) {
+            fTargetingStore.write(fStoredConsent, details);
           }
+          fUserDetails = details;
         }
-        L.pop(1);
+      }
+      else
+      {
+        Log.i(CORONA_LOG_TAG, "ERROR: inMobi.setUserDetails(options) options (table) expected, got " + L.typeName(1));
+        return 0;
+      }
 
-        // Get the postCode field
-        L.getField(-1, "postCode");
+      return 0;
+    }
+  }
 
-        // If postCode is a string
-        if (L.type(-1) == LuaType.STRING)
-        {
-          // Get the postCode
-          String postCode = L.toString(-1);
+  // [Lua] inMobi.load(adUnitType, placementId, [options])
+  private class load implements NamedJavaFunction
+  {
+    @Override
+    public String getName()
+    {
+      return "load";
+    }
 
-          // If the postCode is less than 1 character
-          if (postCode.length() == 0)
-          {
-            Log.i(CORONA_LOG_TAG, "ERROR: inMobi.setUserDetails(options) options.postCode (string) must not be empty. (eg. '24533')");
-            return 0;
-          }
+    @Override
+    public int invoke(LuaState L)
+    {
+      // Ensure that .init() has been called first (fListener will not be null if init is called, as it's a required param)
+      if (fListener == CoronaLua.REFNIL)
+      {
+        Log.i(CORONA_LOG_TAG, "ERROR: inMobi.load() you must call inMobi.init() before making any other inMobi.* Api calls");
+        return 0;
+      }
 
-          // Set the post code
-          InMobiSdk.setPostalCode(postCode);
-        }
-        L.pop(1);
+      // Get the Ad unit type
+      if (L.type(1) != LuaType.STRING)
+      {
+        Log.i(CORONA_LOG_TAG, "ERROR: inMobi.load(adUnitType, placementId) adUnitType (string) expected, got " + L.typeName(1));
+        return 0;
+      }
 
-        // Get the phoneAreaCode field
-        L.getField(-1, "phoneAreaCode");
+      // Get the placement id
+      if (L.type(2) != LuaType.STRING)
+      {
+        Log.i(CORONA_LOG_TAG, "ERROR: inMobi.load(adUnitType, placementId) placementId (string) expected, got " + L.typeName(2));
+        return 0;
+      }
 
-        // If phoneAreaCode is a string
-        if (L.type(-1) == LuaType.STRING)
-        {
-          // Get the phoneArea code
-          String phoneAreaCode = L.toString(-1);
+      final LoadRequest request = newLoadRequest(L, L.toString(1), L.toString(2), 3, "inMobi.load()");
+      if (request == null)
+      {
+        return 0;
+      }
 
-          // If the phoneAreaCode is less than 1 character
-          if (phoneAreaCode.length() == 0)
-          {
-            Log.i(CORONA_LOG_TAG, "ERROR: inMobi.setUserDetails(options) options.phoneAreaCode (string) must not be empty. (eg. '353')");
-            return 0;
-          }
+      final CoronaActivity coronaActivity = CoronaEnvironment.getCoronaActivity();
 
-          // Set the phoneArea code
-          InMobiSdk.setAreaCode(phoneAreaCode);
-        }
-        L.pop(1);
+      if (coronaActivity != null) {
+        Runnable runnableActivity = new Runnable() {
+          public void run() {
+            if (deferUntilInitialized(this, true)) {
+              return;
+            }
+            performLoad(coronaActivity, request);
+          }
+        };
 
-        // Get the language field
-        L.getField(-1, "language");
+        fCommandQueue.enqueue(UiCommandQueue.Kind.LOAD, request.placementId, runnableActivity);
+      }
 
-        // If language is a string
-        if (L.type(-1) == LuaType.STRING)
-        {
-          // Get the language
-          String language = L.toString(-1);
+      return 0;
+    }
+  }
 
-          // If the language is less than 1 character
-          if (language.length() == 0)
-          {
-            Log.i(CORONA_LOG_TAG, "ERROR: inMobi.setUserDetails(options) options.language (string) must not be empty. (eg. 'eng')");
-            return 0;
-          }
+  // [Lua] inMobi.loadMany(loads [, options])
+  private class loadMany implements NamedJavaFunction
+  {
+    @Override
+    public String getName()
+    {
+      return "loadMany";
+    }
 
-          // Set the language
-          InMobiSdk.setLanguage(language);
-        }
-        L.pop(1);
+    @Override
+    public int invoke(LuaState L)
+    {
+      // Ensure that .init() has been called first (fListener will not be null if init is called, as it's a required param)
+      if (fListener == CoronaLua.REFNIL)
+      {
+        Log.i(CORONA_LOG_TAG, "ERROR: inMobi.loadMany() you must call inMobi.init() before making any other inMobi.* Api calls");
+        return 0;
+      }
 
-        // Get the birthYear field
-        L.getField(-1, "birthYear");
+      if (L.type(1) != LuaType.TABLE)
+      {
+        Log.i(CORONA_LOG_TAG, "ERROR: inMobi.loadMany(loads) loads (table) expected, got " + L.typeName(1));
+        return 0;
+      }
 
-        // If birthYear is a number
+      int maxConcurrent = 0;
+      boolean orderByBid = false;
+      if (L.type(2) == LuaType.TABLE)
+      {
+        L.getField(2, "maxConcurrent");
         if (L.type(-1) == LuaType.NUMBER)
         {
-          // Get the users birth year
-          int birthYear = (int)L.toNumber(-1);
-
-          // Get the length of the birthYear (must be 4 digits long)
-          if (String.valueOf(birthYear).length() != 4)
-          {
-            Log.i(CORONA_LOG_TAG, "ERROR: inMobi.setUserDetails(options) options.birthYear (number) must be a number with at least 4 digits (eg. 1991)");
-            return 0;
-          }
-
-          // Set the birth year
-          InMobiSdk.setYearOfBirth(birthYear);
+          maxConcurrent = (int)L.toNumber(-1);
         }
         L.pop(1);
 
-        // Get the age field
-        L.getField(-1, "age");
-
-        // If age is a number
-        if (L.type(-1) == LuaType.NUMBER)
+        L.getField(2, "orderByBid");
+        if (L.type(-1) == LuaType.BOOLEAN)
         {
-          // Get the users age
-          int age = (int)L.toNumber(-1);
-
-          // If the users age is less than 1
-          if (age < 1)
-          {
-            Log.i(CORONA_LOG_TAG, "ERROR: inMobi.setUserDetails(options) options.age (number) must be equal to, or greater than 1 (years old). (eg. 25)");
-            return 0;
-          }
-
-          // Set the age
-          InMobiSdk.setAge(age);
+          orderByBid = L.toBoolean(-1);
         }
         L.pop(1);
+      }
 
-        // Get the age group field
-        L.getField(-1, "ageGroup");
-
-        // If ageGroup is a string
-        if (L.type(-1) == LuaType.STRING)
+      // Validate every load before going to the UI thread
+      final ArrayList<LoadRequest> requests = new ArrayList<>();
+      final int count = L.length(1);
+      for (int i = 1; i <= count; i++)
+      {
+        L.rawGet(1, i);
+        if (L.type(-1) == LuaType.TABLE)
         {
-          // Get the users age group
-          String ageGroup = L.toString(-1);
-          // The InMobi SDK age group (default to below 18)
-          AgeGroup imAgeGroup = AgeGroup.BELOW_18;
-
-          // If the users age group is less than 1 character
-          if (ageGroup.length() == 0)
-          {
-            Log.i(CORONA_LOG_TAG, "ERROR: inMobi.setUserDetails(options) options.ageGroup (string) must not be empty. (eg. '18AndUnder')");
-            return 0;
-          }
-
-          // Set the correct age group based on the value from Lua
-          if (ageGroup.equalsIgnoreCase("below18"))
-          {
-            imAgeGroup = AgeGroup.BELOW_18;
-          }
-          else if (ageGroup.equalsIgnoreCase("18to24"))
-          {
-            imAgeGroup = AgeGroup.BETWEEN_18_AND_24;
-          }
-          else if (ageGroup.equalsIgnoreCase("25to29"))
-          {
-            imAgeGroup = AgeGroup.BETWEEN_25_AND_29;
-          }
-          else if (ageGroup.equalsIgnoreCase("30to34"))
+          L.rawGet(-1, 1);
+          L.rawGet(-2, 2);
+          if (L.type(-2) == LuaType.STRING && L.type(-1) == LuaType.STRING)
           {
-            imAgeGroup = AgeGroup.BETWEEN_30_AND_34;
-          }
-          else if (ageGroup.equalsIgnoreCase("35to44"))
-          {
-            imAgeGroup = AgeGroup.BETWEEN_35_AND_44;
-          }
-          else if (ageGroup.equalsIgnoreCase("45to54"))
-          {
-            imAgeGroup = AgeGroup.BETWEEN_45_AND_54;
-          }
-          else if (ageGroup.equalsIgnoreCase("55to65"))
-          {
-            imAgeGroup = AgeGroup.BETWEEN_55_AND_65;
+            final String adUnitType = L.toString(-2);
+            final String placementId = L.toString(-1);
+            L.rawGet(-3, 3);
+            final LoadRequest request = newLoadRequest(L, adUnitType, placementId, -1, "inMobi.loadMany()");
+            if (request != null)
+            {
+              requests.add(request);
+            }
+            L.pop(1);
           }
-          else if (ageGroup.equalsIgnoreCase("above65"))
+          else
           {
-            imAgeGroup = AgeGroup.ABOVE_65;
+            Log.i(CORONA_LOG_TAG, "WARNING: inMobi.loadMany(loads) loads[" + i + "] adUnitType and placementId (string) expected, got " + L.typeName(-2) + " and " + L.typeName(-1));
           }
-
-          // Set the age group
-          InMobiSdk.setAgeGroup(imAgeGroup);
+          L.pop(2);
         }
-        L.pop(1);
-
-        // Get the users education field
-        L.getField(-1, "education");
-
-        // If education is a string
-        if (L.type(-1) == LuaType.STRING)
+        else
         {
-          // Get the users education
-          String education = L.toString(-1);
-          // The InMobi SDK education (default to high school or less)
-          Education imEducation = Education.HIGH_SCHOOL_OR_LESS;
+          Log.i(CORONA_LOG_TAG, "WARNING: inMobi.loadMany(loads) loads[" + i + "] (table) expected, got " + L.typeName(-1));
+        }
+        L.pop(1);
+      }
 
-          // If the users education is less than 1 character
-          if (education.length() == 0)
-          {
-            Log.i(CORONA_LOG_TAG, "ERROR: inMobi.setUserDetails(options) options.education (string) must not be empty. (eg. 'highSchoolOrLess')");
-            return 0;
-          }
+      if (requests.isEmpty())
+      {
+        return 0;
+      }
 
-          // Set the correct education based on the value from Lua
-          if (education.equalsIgnoreCase("highSchoolOrLess"))
-          {
-            imEducation = Education.HIGH_SCHOOL_OR_LESS;
-          }
-          else if (education.equalsIgnoreCase("collegeOrGraduate"))
-          {
-            imEducation = Education.COLLEGE_OR_GRADUATE;
+      // Highest priority first, then the best paying placements if asked, otherwise in the order given (the sort is stable)
+      final boolean kOrderByBid = orderByBid;
+      Collections.sort(requests, new Comparator<LoadRequest>() {
+        @Override
+        public int compare(LoadRequest a, LoadRequest b) {
+          if (a.priority != b.priority) {
+            return a.priority > b.priority ? -1 : 1;
           }
-          else if (education.equalsIgnoreCase("graduateOrAbove"))
-          {
-            imEducation = Education.POST_GRADUATE_OR_ABOVE;
+          if (kOrderByBid) {
+            return a.averageBid == b.averageBid ? 0 : (a.averageBid > b.averageBid ? -1 : 1);
           }
-
-          // Set the education
-          InMobiSdk.setEducation(imEducation);
+          return 0;
         }
-        L.pop(1);
-
-        // Get the userInterests field
-        L.getField(-1, "userInterests");
-
-        // If userInterests is a table
-        if (L.type(-1) == LuaType.TABLE)
-        {
-          // The valid user interests
-          String validUserInterests[] = {"Business", "Tech", "Travel", "Shopping", "Entertainment", "Fashion", "Fitness", "Foodie", "Gamer", "Jobs", "Sports"};
-          // The user interests string
-          String userInterests = "";
-
-          // Get each interest from the table
-          for (int i = 0; i < L.length(2); i++)
-          {
-            // Get the current object
-            L.rawGet(2, (i + 1));
-
-            // If the current user interest is a string
-            if (L.type(-1) == LuaType.STRING)
-            {
-              // Is the current user interest valid?
-              boolean isCurrentInterestValid = false;
-              // Get the current user interest
-              String currentInterest = L.toString(-1);
-
-              // Loop over the validUserInterests
-              for (int j = 0; j < 11; j++)
-              {
-                // Ensure that the current user interest matches one of the valid user interest options
-                if (currentInterest.equalsIgnoreCase(validUserInterests[j]))
-                {
-                  // Append the user interest
-                  if (i == 0)
-                  {
-                    userInterests += currentInterest;
-                  }
-                  else
-                  {
-                    userInterests = userInterests + "," + currentInterest;
-                  }
-
-                  // This is a valid user interest
-                  isCurrentInterestValid = true;
-                  break;
-                }
-              }
+      });
 
-              // If the current user interest isn't valid, then show an error
-              if (!isCurrentInterestValid)
-              {
-                Log.i(CORONA_LOG_TAG, "ERROR: inMobi.setUserDetails(options) options.userInterests - found invalid user interest");
-                return 0;
-              }
-            }
+      final CoronaActivity coronaActivity = CoronaEnvironment.getCoronaActivity();
+      final int kMaxConcurrent = maxConcurrent;
 
-            // Set the user interests
-            if (userInterests.length() > 1)
-            {
-              InMobiSdk.setInterests(userInterests);
+      if (coronaActivity != null) {
+        // One UI thread hop for the whole batch
+        fCommandQueue.enqueue(UiCommandQueue.Kind.LOAD, null, new Runnable() {
+          public void run() {
+            if (deferUntilInitialized(this, true)) {
+              return;
             }
+            final LoadBatch batch = new LoadBatch(requests, kMaxConcurrent, new LoadBatch.Loader() {
+              @Override
+              public AdSlot load(LoadRequest request) {
+                return performLoad(coronaActivity, request);
+              }
+            });
+            batch.issue();
           }
-        }
-        L.pop(1);
-      }
-      else
-      {
-        Log.i(CORONA_LOG_TAG, "ERROR: inMobi.setUserDetails(options) options (table) expected, got " + L.typeName(1));
-        return 0;
+        });
       }
 
       return 0;
     }
   }
 
-  // [Lua] inMobi.load(adUnitType, placementId, [options])
-  private class load implements NamedJavaFunction
+  // [Lua] inMobi.loadGroup(groupName, placementIds [, options])
+  private class loadGroup implements NamedJavaFunction
   {
     @Override
     public String getName()
     {
-      return "load";
+      return "loadGroup";
     }
 
     @Override
@@ -970,161 +1933,123 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener
       // Ensure that .init() has been called first (fListener will not be null if init is called, as it's a required param)
       if (fListener == CoronaLua.REFNIL)
       {
-        Log.i(CORONA_LOG_TAG, "ERROR: inMobi.load() you must call inMobi.init() before making any other inMobi.* Api calls");
+        Log.i(CORONA_LOG_TAG, "ERROR: inMobi.loadGroup() you must call inMobi.init() before making any other inMobi.* Api calls");
         return 0;
       }
 
-      final String adUnitType;
-      final String placementId;
-      int bannerWidth = 320;
-      int bannerHeight = 50;
-      boolean shouldBannerAutoRefresh = false;
-      int bannerRefreshInterval = 60;
-
-      // Get the Ad unit type
-      if (L.type(1) == LuaType.STRING)
-      {
-        adUnitType = L.toString(1);
-      }
-      else
+      if (L.type(1) != LuaType.STRING)
       {
-        Log.i(CORONA_LOG_TAG, "ERROR: inMobi.load(adUnitType, placementId) adUnitType (string) expected, got " + L.typeName(1));
+        Log.i(CORONA_LOG_TAG, "ERROR: inMobi.loadGroup(groupName, placementIds) groupName (string) expected, got " + L.typeName(1));
         return 0;
       }
+      final String groupName = L.toString(1);
 
-      // Get the placement id
-      if (L.type(2) == LuaType.STRING)
+      if (L.type(2) != LuaType.TABLE)
       {
-        placementId = L.toString(2);
-      }
-      else
-      {
-        Log.i(CORONA_LOG_TAG, "ERROR: inMobi.load(adUnitType, placementId) placementId (string) expected, got " + L.typeName(2));
+        Log.i(CORONA_LOG_TAG, "ERROR: inMobi.loadGroup(groupName, placementIds) placementIds (table) expected, got " + L.typeName(2));
         return 0;
       }
 
-      // Get the banner size (optional arg)
+      String adUnitType = INTERSTITIAL_AD_NAME;
+      LoadGroup.Strategy strategy = LoadGroup.Strategy.PARALLEL;
+      double hedgeDelay = 1;
       if (L.type(3) == LuaType.TABLE)
       {
-        L.getField(-1, "width");
-
-        if (L.type(-1) == LuaType.NUMBER)
+        L.getField(3, "adUnitType");
+        if (L.type(-1) == LuaType.STRING)
         {
-          bannerWidth = (int)L.toNumber(-1);
+          adUnitType = L.toString(-1);
         }
         L.pop(1);
 
-        L.getField(-1, "height");
-
-        if (L.type(-1) == LuaType.NUMBER)
+        L.getField(3, "strategy");
+        if (L.type(-1) == LuaType.STRING)
         {
-          bannerHeight = (int)L.toNumber(-1);
+          final String name = L.toString(-1);
+          if (name.equals("waterfall"))
+          {
+            strategy = LoadGroup.Strategy.WATERFALL;
+          }
+          else if (name.equals("hedged"))
+          {
+            strategy = LoadGroup.Strategy.HEDGED;
+          }
+          else if (!name.equals("parallel"))
+          {
+            Log.i(CORONA_LOG_TAG, "WARNING: inMobi.loadGroup() options.strategy must be 'parallel', 'waterfall' or 'hedged', got '" + name + "'. Using 'parallel'");
+          }
         }
         L.pop(1);
 
-        L.getField(-1, "autoRefresh");
-
-        if (L.type(-1) == LuaType.BOOLEAN)
+        L.getField(3, "hedgeDelay");
+        if (L.type(-1) == LuaType.NUMBER)
         {
-          shouldBannerAutoRefresh = L.toBoolean(-1);
+          hedgeDelay = L.toNumber(-1);
         }
         L.pop(1);
+      }
 
-        L.getField(-1, "refreshInterval");
-
-        if (L.type(-1) == LuaType.NUMBER)
+      // Validate every placement before going to the UI thread, the options apply to each of them
+      final ArrayList<LoadRequest> requests = new ArrayList<>();
+      final int count = L.length(2);
+      for (int i = 1; i <= count; i++)
+      {
+        L.rawGet(2, i);
+        if (L.type(-1) == LuaType.STRING)
         {
-          bannerRefreshInterval = (int)L.toNumber(-1);
+          final LoadRequest request = newLoadRequest(L, adUnitType, L.toString(-1), 3, "inMobi.loadGroup()");
+          if (request != null)
+          {
+            requests.add(request);
+          }
         }
-        L.pop(2);
+        else
+        {
+          Log.i(CORONA_LOG_TAG, "WARNING: inMobi.loadGroup(groupName, placementIds) placementIds[" + i + "] (string) expected, got " + L.typeName(-1));
+        }
+        L.pop(1);
       }
 
-      /* Try to convert the placement id to a long (needed due to inMobi only accepting
-				Long for their ad load calls). We do this here so we can catch the user using an
-				incorrect alphanumeric placement id before we actually get to the loading call.
-			*/
-      try
+      if (requests.isEmpty())
       {
-        Long pid = Long.parseLong(placementId);
-      }
-      catch (NumberFormatException e)
-      {
-        Log.i(CORONA_LOG_TAG, "WARNING: Invalid placementId '" + placementId + "'. Placement id's are numeric");
         return 0;
       }
 
+      // The group can be shown by name as soon as one of its placements is ready
+      final LoadGroup group = new LoadGroup(groupName, adUnitType, requests, strategy, (long)(hedgeDelay * 1000));
+      final LoadGroup previous = inMobiGroups.put(groupName, group);
+
       final CoronaActivity coronaActivity = CoronaEnvironment.getCoronaActivity();
-      final int kBannerWidth = bannerWidth;
-      final int kBannerHeight = bannerHeight;
-      final boolean kShouldBannerAutoRefresh = shouldBannerAutoRefresh;
-      final int kBannerRefreshInterval = bannerRefreshInterval;
-      final Map<String, String> attributionExtras = coronaAttributionExtras(L);
 
       if (coronaActivity != null) {
-        Runnable runnableActivity = new Runnable() {
+        fCommandQueue.enqueue(UiCommandQueue.Kind.LOAD, null, new Runnable() {
           public void run() {
-            final Map<String, Object> adDict = new HashMap<>();
-            final long kPlacementId = Long.parseLong(placementId);
-
-            if (inMobiAds != null && !inMobiAds.containsKey(placementId)) {
-              if (adUnitType.equalsIgnoreCase(BANNER_AD_NAME)) {
-                final float scale = coronaActivity.getApplicationContext().getResources().getDisplayMetrics().density + 0.5f;
-
-                InMobiBanner bannerAd = new InMobiBanner(coronaActivity, kPlacementId);
-                bannerAd.setListener(new InMobiBannerAdListenerClass(placementId, BANNER_AD_NAME));
-                bannerAd.setEnableAutoRefresh(kShouldBannerAutoRefresh);
-                bannerAd.setRefreshInterval(kBannerRefreshInterval);
-
-                LayoutParams layoutParams = new LayoutParams(
-                  (int)(kBannerWidth * scale),
-                  (int)(kBannerHeight * scale)
-                );
-
-                // put it off screen
-                layoutParams.topMargin = 10000;
-
-                bannerAd.setLayoutParams(layoutParams);
-                coronaActivity.getOverlayView().addView(bannerAd);
-
-                if (attributionExtras != null) {
-                  bannerAd.setExtras(attributionExtras);
-                }
-
-                bannerAd.load();
-                bannerAd.setVisibility(View.INVISIBLE);
-
-                adDict.put(BANNER_LAYOUT, layoutParams);
-                adDict.put(BANNER_WIDTH_KEY, kBannerWidth);
-                adDict.put(BANNER_HEIGHT_KEY, kBannerHeight);
-                adDict.put(AD_VIEW_KEY, bannerAd);
-
-                CoronaBeacon.sendDeviceDataToBeacon(fRuntimeTaskDispatcher, kName, kVersionNumber, CoronaBeacon.REQUEST, placementId, new PerkBeaconListener());
-              }
-              else if (adUnitType.equalsIgnoreCase(INTERSTITIAL_AD_NAME)) {
-                InMobiInterstitial interstitialAd = new InMobiInterstitial(coronaActivity, kPlacementId, new InMobiInterstitialAdListenerClass(placementId, INTERSTITIAL_AD_NAME));
-                if (attributionExtras != null) {
-                  interstitialAd.setExtras(attributionExtras);
-                }
-
-                interstitialAd.load();
-                adDict.put(AD_VIEW_KEY, interstitialAd);
-                CoronaBeacon.sendDeviceDataToBeacon(fRuntimeTaskDispatcher, kName, kVersionNumber, CoronaBeacon.REQUEST, placementId, new PerkBeaconListener());
+            if (deferUntilInitialized(this, true)) {
+              return;
+            }
+            if (previous != null) {
+              previous.cancel();
+            }
+            group.start(fMainHandler, new LoadBatch.Loader() {
+              @Override
+              public AdSlot load(LoadRequest request) {
+                return performLoad(coronaActivity, request);
               }
-              else {
-                Log.i(CORONA_LOG_TAG, "ERROR: Unsupported Ad unit type");
+            }, new LoadGroup.Listener() {
+              @Override
+              public void filled(LoadGroup group, AdSlot slot) {
+                Hashtable<Object, Object> data = new Hashtable<>();
+                data.put("placementId", slot.placementId);
+                dispatchLuaEvent(LOADED_EVENT, group.adType, group.name, data);
               }
 
-              // Only add this Ads properties to the adDict/inMobi dict if it was created successfully
-              if (adDict.containsKey(AD_VIEW_KEY)) {
-                adDict.put(AD_UNIT_TYPE_KEY, adUnitType);
-                adDict.put(HAS_LOADED_KEY, false);
-                inMobiAds.put(placementId, adDict);
+              @Override
+              public void failed(LoadGroup group) {
+                dispatchLuaErrorEvent(FAILED_EVENT, group.adType, group.name, "No placement in group '" + group.name + "' filled");
               }
-            }
+            });
           }
-        };
-
-        coronaActivity.runOnUiThread(runnableActivity);
+        });
       }
 
       return 0;
@@ -1168,13 +2093,20 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener
         return 0;
       }
 
-      // Ensure the Ad exists in the inMobiAds dict
-      if (inMobiAds.containsKey(placementId))
+      // A group has loaded if any of its placements has an ad ready
+      if (inMobiGroups.containsKey(placementId))
       {
-        // Get the adDict for this Ad
-        Map<String, Object> adDict = (Map<String, Object>)inMobiAds.get(placementId);
-        // Check if the Ad has loaded
-        hasLoaded = Boolean.TRUE.equals(adDict.get(HAS_LOADED_KEY));
+        hasLoaded = resolvePlacementId(placementId) != null;
+      }
+      else
+      {
+        // Get the slot for this Ad (lock-free, safe to read from the Lua thread)
+        final AdSlot slot = inMobiAds.get(placementId);
+        if (slot != null)
+        {
+          // Check if the Ad has loaded
+          hasLoaded = slot.hasLoaded();
+        }
       }
 
       // Push the result
@@ -1184,6 +2116,161 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener
     }
   }
 
+  // [Lua] inMobi.canShow(placementId)
+  private class canShow implements NamedJavaFunction
+  {
+    // Gets the name of the Lua function as it would appear in the Lua script
+    @Override
+    public String getName()
+    {
+      return "canShow";
+    }
+
+    // This method is executed when the Lua function is called
+    @Override
+    public int invoke(LuaState L)
+    {
+      // Ensure that .init() has been called first (fListener will not be null if init is called, as it's a required param)
+      if (fListener == CoronaLua.REFNIL)
+      {
+        Log.i(CORONA_LOG_TAG, "ERROR: inMobi.canShow(placementId) you must call inMobi.init() before making any other inMobi.* Api calls");
+        return 0;
+      }
+
+      // Get the placement id
+      if (L.type(1) != LuaType.STRING)
+      {
+        Log.i(CORONA_LOG_TAG, "ERROR: inMobi.canShow(placementId) placementId (string) expected, got " + L.typeName(1));
+        return 0;
+      }
+      // A group name stands for the group's best ready placement
+      final String name = L.toString(1);
+      final String resolved = resolvePlacementId(name);
+      final String placementId = resolved != null ? resolved : name;
+
+      // Both reads are lock-free, nothing is sent to the UI thread
+      final AdSlot slot = inMobiAds.get(placementId);
+      final FrequencyCaps caps = fFrequencyCaps;
+      long waitMs = 0;
+      if (caps != null)
+      {
+        waitMs = Math.max(0, caps.nextAllowedAt(slot != null ? slot.adType : null, placementId) - System.currentTimeMillis());
+      }
+
+      // Whether show() would show an ad now, and how many seconds the caps hold it back
+      L.pushBoolean(slot != null && slot.hasLoaded() && waitMs == 0);
+      L.pushNumber(waitMs / 1000.0);
+
+      return 2;
+    }
+  }
+
+  // [Lua] inMobi.getState(placementId)
+  private class getState implements NamedJavaFunction
+  {
+    // Gets the name of the Lua function as it would appear in the Lua script
+    @Override
+    public String getName()
+    {
+      return "getState";
+    }
+
+    // This method is executed when the Lua function is called
+    @Override
+    public int invoke(LuaState L)
+    {
+      // Ensure that .init() has been called first (fListener will not be null if init is called, as it's a required param)
+      if (fListener == CoronaLua.REFNIL)
+      {
+        Log.i(CORONA_LOG_TAG, "ERROR: inMobi.getState(placementId) you must call inMobi.init() before making any other inMobi.* Api calls");
+        return 0;
+      }
+
+      // Get the placement id
+      if (L.type(1) != LuaType.STRING)
+      {
+        Log.i(CORONA_LOG_TAG, "ERROR: inMobi.getState(placementId) placementId (string) expected, got " + L.typeName(1));
+        return 0;
+      }
+      final String placementId = placementForState(L.toString(1));
+
+      // Every read is lock-free, nothing is sent to the UI thread
+      final AdSlot slot = inMobiAds.get(placementId);
+      // The state and the time it was entered are read together, a placement that failed for good has no slot
+      final AdSlot.StateChange change = slot != null ? slot.getStateChange() : inMobiFailures.get(placementId);
+      final long now = SystemClock.uptimeMillis();
+      String state = "idle";
+      long since = now;
+      if (change != null)
+      {
+        since = change.at;
+        switch (change.state)
+        {
+          case LOADING:
+            state = "loading";
+            break;
+          case READY:
+            if (slot.isReady())
+            {
+              final FrequencyCaps caps = fFrequencyCaps;
+              state = caps != null && !caps.allows(slot.adType, slot.placementId, System.currentTimeMillis()) ? "capped" : "ready";
+            }
+            else
+            {
+              // The loaded ad expired, it has been idle since then
+              since = Math.min(slot.readyUntil(), now);
+            }
+            break;
+          case SHOWING:
+            state = "showing";
+            break;
+          case FAILED:
+            state = "failed";
+            break;
+          default:
+            break;
+        }
+      }
+
+      // Push the state and the seconds spent in it
+      L.pushString(state);
+      L.pushNumber(Math.max(0, now - since) / 1000.0);
+
+      return 2;
+    }
+  }
+
+  // The placement whose state getState() reports: a group's best ready placement, else its first one loading,
+  // else its first one loaded or failed before (any thread)
+  private String placementForState(final String name)
+  {
+    final LoadGroup group = inMobiGroups.get(name);
+    if (group == null)
+    {
+      return name;
+    }
+
+    final String resolved = resolvePlacementId(name);
+    if (resolved != null)
+    {
+      return resolved;
+    }
+    String first = null;
+    for (String placementId : group.placementIds)
+    {
+      final AdSlot slot = inMobiAds.get(placementId);
+      if (slot != null && slot.getState() == AdSlot.State.LOADING)
+      {
+        return placementId;
+      }
+      if (first == null && (slot != null || inMobiFailures.containsKey(placementId)))
+      {
+        first = placementId;
+      }
+    }
+    return first != null ? first : name;
+  }
+
   // [Lua] inMobi.show(placementId)
   private class show implements NamedJavaFunction
   {
@@ -1209,10 +2296,15 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener
         return 0;
       }
 
-      // Get the placement id
+      // Get the placement id, a group name stands for the group's best ready placement
       if (L.type(1) == LuaType.STRING)
       {
-        placementId = L.toString(1);
+        placementId = resolvePlacementId(L.toString(1));
+        if (placementId == null)
+        {
+          Log.i(CORONA_LOG_TAG, "WARNING: inMobi.show(placementId, options) group '" + L.toString(1) + "' has no ad ready");
+          return 0;
+        }
       }
       else
       {
@@ -1239,10 +2331,27 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener
         L.pop(2);
       }
 
+      // Refuse the show straight away if the frequency caps don't allow it
+      final FrequencyCaps caps = fFrequencyCaps;
+      if (caps != null)
+      {
+        final AdSlot cappedSlot = inMobiAds.get(placementId);
+        final String adType = cappedSlot != null ? cappedSlot.adType : null;
+        // Re-showing a banner already on screen (eg. to align it) isn't an impression
+        final boolean isShowing = cappedSlot != null && cappedSlot.getState() == AdSlot.State.SHOWING;
+        if (!isShowing && !caps.allows(adType, placementId, System.currentTimeMillis()))
+        {
+          dispatchLuaEvent(CAPPED_EVENT, adType, placementId);
+          return 0;
+        }
+      }
+
       // Get the corona activity
       final CoronaActivity coronaActivity = CoronaEnvironment.getCoronaActivity();
       // Set the banner alignment
       final String kBannerAlignY = bannerAlignY;
+      // When show() was called, for the show latency stats
+      final long kCalledAt = SystemClock.uptimeMillis();
 
       // If the corona activity isn't null
       if (coronaActivity != null)
@@ -1252,26 +2361,43 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener
         {
           public void run()
           {
-            // Ensure the Ad exists in the inMobi dict
-            if (inMobiAds.containsKey(placementId))
+            if (deferUntilInitialized(this, false))
+            {
+              return;
+            }
+
+            // Get the slot for this ad
+            final AdSlot slot = inMobiAds.get(placementId);
+
+            // Ensure the Ad exists in the inMobi registry
+            if (slot != null)
             {
-              // Get the adDict for this ad
-              Map<String, Object> adDict = (Map<String, Object>)inMobiAds.get(placementId);
+              slot.stats.uiHopLatency.record(SystemClock.uptimeMillis() - kCalledAt);
+              slot.showRequestedAt = kCalledAt;
+
               // Get the adUnitType
-              String adUnitType = (String)adDict.get(AD_UNIT_TYPE_KEY);
-              // Check if the Ad has loaded
-              boolean hasLoaded = Boolean.TRUE.equals(adDict.get(HAS_LOADED_KEY));
+              String adUnitType = slot.adType;
+              // Check if the Ad has loaded (banners may be re-shown to change their alignment)
+              AdSlot.State state = slot.getState();
+              boolean hasLoaded = slot.isBanner ? slot.hasLoaded() : state == AdSlot.State.READY;
 
               // If the Ad has loaded
               if (hasLoaded)
               {
+                // Check the caps again where impressions are recorded, shows queued in the same frame all passed the check above
+                final FrequencyCaps currentCaps = fFrequencyCaps;
+                final boolean isReshow = slot.isBanner && state == AdSlot.State.SHOWING;
+                if (currentCaps != null && !isReshow && !currentCaps.allows(adUnitType, placementId, System.currentTimeMillis()))
+                {
+                  dispatchLuaEvent(CAPPED_EVENT, adUnitType, placementId);
+                  return;
+                }
+
                 // Show a banner Ad
-                if (adUnitType.equalsIgnoreCase(BANNER_AD_NAME))
+                if (slot.isBanner)
                 {
-                  // Send the device data to the beacon endpoint
-                  CoronaBeacon.sendDeviceDataToBeacon(fRuntimeTaskDispatcher, kName, kVersionNumber, CoronaBeacon.IMPRESSION, placementId, new PerkBeaconListener());
-                  LayoutParams layoutParams = (LayoutParams)adDict.get(BANNER_LAYOUT);
-                  layoutParams.topMargin = 0;
+                  // Take the banner back out of the hidden pool
+                  fBannerPool.unpark(slot);
                   String chosenBannerAlignY = "top";
                   boolean isValidAlignment = false;
                   String bannerAlignOptions[] = {"top", "center", "bottom"};
@@ -1296,46 +2422,58 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener
                   }
 
                   // Get the banner Ad
-                  InMobiBanner bannerAd = (InMobiBanner)adDict.get(AD_VIEW_KEY);
+                  AdBackend.Banner bannerAd = slot.bannerAd;
 
                   // Set the banners vertical aligment
-                  if (chosenBannerAlignY.equalsIgnoreCase("top"))
-                  {
-                    layoutParams.gravity = Gravity.CENTER_HORIZONTAL | Gravity.TOP;
-                  }
-                  else if (chosenBannerAlignY.equalsIgnoreCase("center"))
+                  int gravity = Gravity.CENTER_HORIZONTAL | Gravity.TOP;
+                  if (chosenBannerAlignY.equalsIgnoreCase("center"))
                   {
-                    layoutParams.gravity = Gravity.CENTER_HORIZONTAL | Gravity.CENTER;
+                    gravity = Gravity.CENTER_HORIZONTAL | Gravity.CENTER;
                   }
                   else if (chosenBannerAlignY.equalsIgnoreCase("bottom"))
                   {
-                    layoutParams.gravity = Gravity.CENTER_HORIZONTAL | Gravity.BOTTOM;
+                    gravity = Gravity.CENTER_HORIZONTAL | Gravity.BOTTOM;
                   }
 
                   // Show the banner Ad
-                  bannerAd.setVisibility(View.VISIBLE);
-
-                  // Create the displayed event
-                  Map<String, Object> coronaEvent = new HashMap<String, Object>();
-                  coronaEvent.put(CORONA_PHASE_EVENT, DISPLAYED_EVENT);
-                  coronaEvent.put(CORONA_TYPE_EVENT, adUnitType);
-                  coronaEvent.put(CORONA_PLACEMENT_ID_EVENT, placementId);
-                  dispatchLuaEvent(coronaEvent);
+                  final boolean wasShowing = state == AdSlot.State.SHOWING;
+                  bannerAd.show(gravity);
+                  slot.setState(AdSlot.State.SHOWING);
+                  scheduleExpiry(slot);
+                  fBannerRefresh.shown(slot);
+
+                  // Re-showing a banner to change its alignment isn't a new impression
+                  if (!wasShowing)
+                  {
+                    slot.displayedAt = SystemClock.uptimeMillis();
+                    slot.stats.showLatency.record(slot.displayedAt - kCalledAt);
+                    slot.stats.recordImpression();
+                    // Count the impression for the beacon endpoint and the frequency caps
+                    sendBeacon(CoronaBeacon.IMPRESSION, placementId);
+                    recordImpression(slot);
+                  }
+
+                  // Dispatch the displayed event
+                  dispatchLuaEvent(DISPLAYED_EVENT, adUnitType, placementId);
                 }
-                else if (adUnitType.equalsIgnoreCase(INTERSTITIAL_AD_NAME))
+                else
                 {
-                  // Get the interstitial Ad
-                  InMobiInterstitial interstitialAd = (InMobiInterstitial)adDict.get(AD_VIEW_KEY);
+                  // Take a ready, unexpired interstitial Ad from the pool
+                  AdBackend.Interstitial interstitialAd = slot.interstitials.takeReady(SystemClock.uptimeMillis(), fSelectHighestBid);
+                  slot.setState(slot.interstitials.impliedState());
+                  scheduleExpiry(slot);
+                  if (interstitialAd == null)
+                  {
+                    Log.i(CORONA_LOG_TAG, "WARNING: inMobi.show(placementId, options) placementId '" + placementId + "' has expired");
+                    return;
+                  }
                   interstitialAd.show();
 
-                  // Send Corona Lua event
-                  Map<String, Object> coronaEvent = new HashMap<String, Object>();
-                  coronaEvent.put(CORONA_PHASE_EVENT, DISPLAYED_EVENT);
-                  coronaEvent.put(CORONA_TYPE_EVENT, adUnitType);
-                  coronaEvent.put(CORONA_PLACEMENT_ID_EVENT, placementId);
-                  dispatchLuaEvent(coronaEvent);
+                  // Dispatch the displayed event
+                  dispatchLuaEvent(DISPLAYED_EVENT, adUnitType, placementId);
 
-                  CoronaBeacon.sendDeviceDataToBeacon(fRuntimeTaskDispatcher, kName, kVersionNumber, CoronaBeacon.IMPRESSION, placementId, new PerkBeaconListener());
+                  sendBeacon(CoronaBeacon.IMPRESSION, placementId);
+                  recordImpression(slot);
                 }
               }
               else
@@ -1350,8 +2488,8 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener
           }
         };
 
-        // Run the activity on the uiThread
-        coronaActivity.runOnUiThread(runnableActivity);
+        // Run the activity on the uiThread (merged with a following hide of the same banner)
+        fCommandQueue.enqueue(UiCommandQueue.Kind.SHOW, placementId, runnableActivity);
       }
 
       return 0;
@@ -1404,29 +2542,39 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener
         {
           public void run()
           {
-            // Ensure the Ad exists in the inMobiAds dict
-            if (inMobiAds.containsKey(placementId))
+            if (deferUntilInitialized(this, false))
             {
-              // Get the adDict for this Ad
-              Map<String, Object> adDict = (Map<String, Object>)inMobiAds.get(placementId);
-              // Get the adUnitType
-              final String adUnitType = (String)adDict.get(AD_UNIT_TYPE_KEY);
-              // If the adUnitType is a banner
-              if (adUnitType.equalsIgnoreCase(BANNER_AD_NAME))
+              return;
+            }
+
+            // Get the slot for this Ad
+            final AdSlot slot = inMobiAds.get(placementId);
+
+            // Ensure the Ad exists in the inMobiAds registry
+            if (slot != null)
+            {
+              // If the Ad is a banner
+              if (slot.isBanner)
               {
-                // Get the banner Ad
-                InMobiBanner bannerAd = (InMobiBanner)adDict.get(AD_VIEW_KEY);
-                // Hide the banner Ad
-                bannerAd.setVisibility(View.GONE);
-                // Remove the banner Ad from the view
-                coronaActivity.getOverlayView().removeView(bannerAd);
-                // Remove the banner ad from the inMobiAds dict
-                inMobiAds.remove(placementId);
-                // Null the banner Ad
-                bannerAd = null;
-                // Remove the adDict
-                adDict.clear();
-                adDict = null;
+                // Keep the banner attached but out of layout so it can be shown again without reloading
+                if (fBannerPool.isEnabled())
+                {
+                  slot.bannerAd.hide();
+                  if (slot.getState() == AdSlot.State.SHOWING)
+                  {
+                    slot.setState(AdSlot.State.READY);
+                  }
+                  fBannerPool.park(slot);
+                  fBannerRefresh.hidden(slot);
+                  scheduleExpiry(slot);
+                }
+                else
+                {
+                  // Remove the banner Ad from the view and the registry
+                  releaseBanner(slot);
+                  // Release the banner Ad
+                  slot.bannerAd = null;
+                }
               }
               else
               {
@@ -1441,13 +2589,100 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener
         };
 
         // Run the activity on the uiThread
-        coronaActivity.runOnUiThread(runnableActivity);
+        fCommandQueue.enqueue(UiCommandQueue.Kind.HIDE, placementId, runnableActivity);
       }
 
       return 0;
     }
   }
 
+  // [Lua] inMobi.getEventBatchStats()
+  private class getEventBatchStats implements NamedJavaFunction
+  {
+    // Gets the name of the Lua function as it would appear in the Lua script
+    @Override
+    public String getName()
+    {
+      return "getEventBatchStats";
+    }
+
+    // This method is executed when the Lua function is called
+    @Override
+    public int invoke(LuaState L)
+    {
+      // The counters are only written by the drain task, which runs on this thread
+      L.newTable(0, 6);
+      L.pushBoolean(fEventBatching);
+      L.setField(-2, "enabled");
+      L.pushNumber(fEventDrainCount);
+      L.setField(-2, "drains");
+      L.pushNumber(fEventDrainedTotal);
+      L.setField(-2, "events");
+      L.pushNumber(fEventLastDrainSize);
+      L.setField(-2, "lastBatchSize");
+      L.pushNumber(fEventMaxDrainSize);
+      L.setField(-2, "maxBatchSize");
+
+      // The load, show and hide calls sent to the UI thread
+      L.newTable(0, 3);
+      L.pushNumber(fCommandQueue.queuedCount());
+      L.setField(-2, "queued");
+      L.pushNumber(fCommandQueue.drainCount());
+      L.setField(-2, "drains");
+      L.pushNumber(fCommandQueue.mergedCount());
+      L.setField(-2, "merged");
+      L.setField(-2, "commands");
+
+      return 1;
+    }
+  }
+
+  // [Lua] inMobi.getStats([placementId])
+  private class getStats implements NamedJavaFunction
+  {
+    // Gets the name of the Lua function as it would appear in the Lua script
+    @Override
+    public String getName()
+    {
+      return "getStats";
+    }
+
+    // This method is executed when the Lua function is called
+    @Override
+    public int invoke(LuaState L)
+    {
+      // Stats for a single placement
+      if (L.type(1) == LuaType.STRING)
+      {
+        final AdStats stats = inMobiStats.get(L.toString(1));
+        if (stats != null)
+        {
+          stats.push(L);
+        }
+        else
+        {
+          L.pushNil();
+        }
+        return 1;
+      }
+      else if (L.getTop() >= 1 && L.type(1) != LuaType.NIL)
+      {
+        Log.i(CORONA_LOG_TAG, "ERROR: inMobi.getStats([placementId]) placementId (string) expected, got " + L.typeName(1));
+        return 0;
+      }
+
+      // Stats for every placement, keyed by placement id
+      L.newTable(0, inMobiStats.size());
+      for (Map.Entry<String, AdStats> entry : inMobiStats.entrySet())
+      {
+        entry.getValue().push(L);
+        L.setField(-2, entry.getKey());
+      }
+
+      return 1;
+    }
+  }
+
   /**
    * Called after the Corona runtime has been created and just before executing the "main.lua" file.
    * <p>
@@ -1479,6 +2714,16 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener
   {
   }
 
+  // Store impressions still waiting to be written by the frequency caps (UI thread only)
+  private void flushFrequencyCaps()
+  {
+    final FrequencyCaps caps = fFrequencyCaps;
+    if (caps != null)
+    {
+      caps.flush();
+    }
+  }
+
   /**
    * Called just after the Corona runtime has been suspended which pauses all rendering, audio, timers,
    * and other Corona related operations. This can happen when another Android activity (ie: window) has
@@ -1490,6 +2735,15 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener
   @Override
   public void onSuspended(CoronaRuntime runtime)
   {
+    // Save the impressions and stop refreshing banners nobody can see
+    fMainHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        fSuspended = true;
+        flushFrequencyCaps();
+        fBannerRefresh.pause();
+      }
+    });
   }
 
   /**
@@ -1501,8 +2755,17 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener
   @Override
   public void onResumed(CoronaRuntime runtime)
   {
-    // Clear leftover ads
-    clearAds();
+    // Keep the ads that are still valid, and pick the banner refreshes back up
+    fMainHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        fSuspended = false;
+        revalidateAds();
+        fBannerRefresh.resume();
+        // Refill what a memory trim released while suspended
+        refillAfterMemoryTrim();
+      }
+    });
   }
 
   /**
@@ -1524,11 +2787,41 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener
       fListener = CoronaLua.REFNIL;
     }
 
-    // Clear the inMobiAds dict
-    if (inMobiAds != null) {
-      inMobiAds.clear();
-      inMobiAds = null;
+    // Clear the inMobiAds registry and the groups over it, stopping their pending hedge and waterfall steps
+    inMobiAds.clear();
+    inMobiFailures.clear();
+    for (LoadGroup group : inMobiGroups.values())
+    {
+      group.cancel();
     }
+    inMobiGroups.clear();
+    // Forget the pooled banners and expiry timers, they go away with the activity
+    fMainHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        fBannerPool.clear();
+        fTimerWheel.clear();
+        fBannerRefresh.clear();
+        fMemoryTrimmer.unregister();
+        fTrimmedSlots.clear();
+        // The runtime is gone, keep the latest impressions for the next run
+        flushFrequencyCaps();
+        // A deferred SDK init that hasn't run yet is dropped with its queued calls
+        if (fSdkInitIdleHandler != null) {
+          Looper.myQueue().removeIdleHandler(fSdkInitIdleHandler);
+          fSdkInitIdleHandler = null;
+        }
+        fSdkInit = null;
+        fRestoring = false;
+        fSdkInitDue = false;
+        fPendingCalls.clear();
+      }
+    });
+    // Drop any calls that haven't reached the UI thread and any undelivered events
+    fCommandQueue.clear();
+    fEventBatching = false;
+    fPendingEvents.set(null);
+    fDrainScheduled.set(false);
     // Null the task dispatcher
     fRuntimeTaskDispatcher = null;
   }
@@ -0,0 +1,130 @@
+//
+//  MemoryTrimmer.java
+//  inMobi Plugin
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.inMobi;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Handler;
+
+/**
+ * Releases the ads the plugin holds when the system runs low on memory.
+ * <p>
+ * Memory trim levels are mapped to tiers, each releasing more than the one before: off screen
+ * banners first, then pooled interstitials beyond the first, then everything that isn't on screen.
+ * A tier is only released once until memory pressure eases, which is assumed once no trim has been
+ * requested for a while; the released ads are then refilled. Callbacks arrive on the UI thread.
+ */
+final class MemoryTrimmer implements ComponentCallbacks2
+{
+  enum Tier
+  {
+    NONE,
+    OFFSCREEN_BANNERS,
+    POOLED_INTERSTITIALS,
+    ALL_HIDDEN
+  }
+
+  // Carries out the release and the refill (UI thread)
+  interface Policy
+  {
+    void release(Tier tier);
+    void refill();
+  }
+
+  // How long without a trim request before memory pressure is considered eased
+  private static final long kCalmMs = 30000;
+
+  private final Handler fHandler;
+  private final Policy fPolicy;
+  private Context fContext = null;
+  // The highest tier released since the last refill
+  private Tier fReleased = Tier.NONE;
+
+  private final Runnable fRefillTask = new Runnable() {
+    @Override
+    public void run() {
+      fReleased = Tier.NONE;
+      fPolicy.refill();
+    }
+  };
+
+  MemoryTrimmer(final Handler handler, final Policy policy)
+  {
+    fHandler = handler;
+    fPolicy = policy;
+  }
+
+  void register(final Context context)
+  {
+    unregister();
+    fContext = context.getApplicationContext();
+    fContext.registerComponentCallbacks(this);
+  }
+
+  void unregister()
+  {
+    if (fContext != null) {
+      fContext.unregisterComponentCallbacks(this);
+      fContext = null;
+    }
+    fHandler.removeCallbacks(fRefillTask);
+    fReleased = Tier.NONE;
+  }
+
+  static Tier tierFor(final int level)
+  {
+    if (level >= TRIM_MEMORY_MODERATE || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+      return Tier.ALL_HIDDEN;
+    }
+    if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_LOW) {
+      return Tier.POOLED_INTERSTITIALS;
+    }
+    if (level == TRIM_MEMORY_RUNNING_MODERATE) {
+      return Tier.OFFSCREEN_BANNERS;
+    }
+    // TRIM_MEMORY_UI_HIDDEN only means the app went to the background
+    return Tier.NONE;
+  }
+
+  @Override
+  public void onTrimMemory(final int level)
+  {
+    trim(tierFor(level));
+  }
+
+  @Override
+  public void onLowMemory()
+  {
+    trim(Tier.ALL_HIDDEN);
+  }
+
+  @Override
+  public void onConfigurationChanged(final Configuration configuration)
+  {
+    // NOP
+  }
+
+  private void trim(final Tier tier)
+  {
+    if (tier == Tier.NONE) {
+      return;
+    }
+
+    if (tier.compareTo(fReleased) > 0) {
+      fReleased = tier;
+      fPolicy.release(tier);
+    }
+
+    // Refill once the trims stop coming
+    fHandler.removeCallbacks(fRefillTask);
+    fHandler.postDelayed(fRefillTask, kCalmMs);
+  }
+}
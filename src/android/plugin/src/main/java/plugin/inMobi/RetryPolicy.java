@@ -0,0 +1,166 @@
+//
+//  RetryPolicy.java
+//  inMobi Plugin
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.inMobi;
+
+import java.util.EnumSet;
+import java.util.Random;
+
+import android.util.Log;
+
+import com.inmobi.ads.InMobiAdRequestStatus.StatusCode;
+import com.naef.jnlua.LuaState;
+import com.naef.jnlua.LuaType;
+
+/**
+ * How failed loads of a placement are retried.
+ * <p>
+ * The delay before retry {@code n} is {@code baseDelay * 2^(n - 1)}, capped at {@code maxDelay},
+ * with up to {@code jitter} of it randomly taken off so that placements failing together don't
+ * retry together.
+ */
+final class RetryPolicy
+{
+  // Corona log tag name
+  private static final String CORONA_LOG_TAG = "Corona";
+
+  // The total number of load attempts, including the first one
+  final int maxAttempts;
+  // The delay before the first retry, in milliseconds
+  final long baseDelayMs;
+  // The longest delay between retries, in milliseconds
+  final long maxDelayMs;
+  // The fraction of each delay that may be randomly removed (0 - 1)
+  final double jitter;
+  // The failures that are worth retrying
+  final EnumSet<StatusCode> retryOn;
+
+  RetryPolicy(final int maxAttempts, final long baseDelayMs, final long maxDelayMs, final double jitter, final EnumSet<StatusCode> retryOn)
+  {
+    this.maxAttempts = Math.max(1, maxAttempts);
+    this.baseDelayMs = Math.max(0, baseDelayMs);
+    this.maxDelayMs = Math.max(this.baseDelayMs, maxDelayMs);
+    this.jitter = Math.max(0, Math.min(jitter, 1));
+    this.retryOn = retryOn;
+  }
+
+  // Whether another attempt should be made after the given number of consecutive failures
+  boolean shouldRetry(final StatusCode code, final int failedAttempts)
+  {
+    return failedAttempts < maxAttempts && code != null && retryOn.contains(code);
+  }
+
+  // The delay before the retry that follows the given number of consecutive failures
+  long delayMs(final int failedAttempts, final Random random)
+  {
+    final int shift = Math.min(Math.max(failedAttempts - 1, 0), 30);
+    final long delay = Math.min(baseDelayMs << shift, maxDelayMs);
+    return delay - (long)(delay * jitter * random.nextDouble());
+  }
+
+  // The failures retried when retryOn isn't given
+  static EnumSet<StatusCode> defaultRetryOn()
+  {
+    return EnumSet.of(
+      StatusCode.NO_FILL,
+      StatusCode.NETWORK_UNREACHABLE,
+      StatusCode.REQUEST_TIMED_OUT,
+      StatusCode.SERVER_ERROR,
+      StatusCode.INTERNAL_ERROR
+    );
+  }
+
+  // Look up a status code by name (ignoring case), null if there is no such code
+  static StatusCode statusCodeNamed(final String name)
+  {
+    for (StatusCode code : StatusCode.values())
+    {
+      if (code.name().equalsIgnoreCase(name))
+      {
+        return code;
+      }
+    }
+    return null;
+  }
+
+  // Read a policy from the retry table at the given stack index, null if the table is invalid; api names the Lua function for warnings
+  static RetryPolicy fromLua(LuaState L, int index, final String api)
+  {
+    int maxAttempts = 3;
+    double baseDelay = 2;
+    double maxDelay = 60;
+    double jitter = 0.5;
+    EnumSet<StatusCode> retryOn = defaultRetryOn();
+
+    // Keep addressing the table correctly while values are pushed above it
+    index = L.absIndex(index);
+
+    L.getField(index, "maxAttempts");
+    if (L.type(-1) == LuaType.NUMBER)
+    {
+      maxAttempts = (int)L.toNumber(-1);
+    }
+    L.pop(1);
+
+    L.getField(index, "baseDelay");
+    if (L.type(-1) == LuaType.NUMBER)
+    {
+      baseDelay = L.toNumber(-1);
+    }
+    L.pop(1);
+
+    L.getField(index, "maxDelay");
+    if (L.type(-1) == LuaType.NUMBER)
+    {
+      maxDelay = L.toNumber(-1);
+    }
+    L.pop(1);
+
+    L.getField(index, "jitter");
+    if (L.type(-1) == LuaType.NUMBER)
+    {
+      jitter = L.toNumber(-1);
+    }
+    L.pop(1);
+
+    L.getField(index, "retryOn");
+    if (L.type(-1) == LuaType.TABLE)
+    {
+      retryOn = EnumSet.noneOf(StatusCode.class);
+
+      for (int i = 1; i <= L.length(-1); i++)
+      {
+        L.rawGet(-1, i);
+        if (L.type(-1) == LuaType.STRING)
+        {
+          final String name = L.toString(-1);
+          final StatusCode match = statusCodeNamed(name);
+          if (match != null)
+          {
+            retryOn.add(match);
+          }
+          else
+          {
+            Log.i(CORONA_LOG_TAG, "WARNING: " + api + " options.retry.retryOn - unknown status code '" + name + "'");
+          }
+        }
+        L.pop(1);
+      }
+    }
+    L.pop(1);
+
+    if (maxAttempts < 1 || baseDelay < 0 || maxDelay < 0)
+    {
+      Log.i(CORONA_LOG_TAG, "ERROR: " + api + " options.retry - maxAttempts must be at least 1 and delays must not be negative");
+      return null;
+    }
+
+    return new RetryPolicy(maxAttempts, (long)(baseDelay * 1000), (long)(maxDelay * 1000), jitter, retryOn);
+  }
+}
@@ -0,0 +1,142 @@
+//
+//  TargetingStore.java
+//  inMobi Plugin
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.inMobi;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import android.util.Log;
+
+import com.inmobi.sdk.InMobiSdk.AgeGroup;
+import com.inmobi.sdk.InMobiSdk.Education;
+import com.inmobi.sdk.InMobiSdk.Gender;
+
+/**
+ * Keeps the last user details and consent in the app's private files directory, so they can be
+ * applied at the next start before the first ad request.
+ * <p>
+ * The record is an {@link AtomicFile} written in the background. The SDK's targeting enums are
+ * stored by name, so a reordered or extended enum in a later SDK can't restore the wrong value;
+ * names the SDK no longer knows are dropped.
+ */
+final class TargetingStore
+{
+  // Corona log tag name
+  private static final String CORONA_LOG_TAG = "Corona";
+
+  private static final String kFileName = "plugin.inMobi.targeting";
+  // "IMTG"
+  private static final int kMagic = 0x494d5447;
+  // Version 1 stored the enums by ordinal and is ignored
+  private static final int kVersion = 2;
+
+  // The restored state
+  static final class Snapshot
+  {
+    // null if consent was never given
+    final Boolean hasUserConsent;
+    final UserDetails details;
+
+    Snapshot(final Boolean hasUserConsent, final UserDetails details)
+    {
+      this.hasUserConsent = hasUserConsent;
+      this.details = details;
+    }
+  }
+
+  private final AtomicFile fFile;
+
+  TargetingStore(final File directory)
+  {
+    fFile = new AtomicFile(directory, kFileName, kMagic, kVersion, "user details");
+  }
+
+  // Read the stored state, null if there is none or it can't be read
+  Snapshot read()
+  {
+    return fFile.read(new AtomicFile.Reader<Snapshot>() {
+      @Override
+      public Snapshot read(DataInputStream in) throws IOException {
+        final byte consent = in.readByte();
+        final UserDetails details = new UserDetails();
+        details.gender = readEnum(in, Gender.class);
+        details.postCode = readString(in);
+        details.areaCode = readString(in);
+        details.language = readString(in);
+        details.birthYear = in.readInt();
+        details.age = in.readInt();
+        details.ageGroup = readEnum(in, AgeGroup.class);
+        details.education = readEnum(in, Education.class);
+        details.interests = readString(in);
+
+        return new Snapshot(consent < 0 ? null : Boolean.valueOf(consent == 1), details);
+      }
+    });
+  }
+
+  // Replace the stored state in the background (details must not be modified afterwards)
+  void write(final Boolean hasUserConsent, final UserDetails details)
+  {
+    fFile.writeInBackground(new AtomicFile.Writer() {
+      @Override
+      public void write(DataOutputStream out) throws IOException {
+        out.writeByte(hasUserConsent == null ? -1 : (hasUserConsent ? 1 : 0));
+        writeEnum(out, details.gender);
+        writeString(out, details.postCode);
+        writeString(out, details.areaCode);
+        writeString(out, details.language);
+        out.writeInt(details.birthYear);
+        out.writeInt(details.age);
+        writeEnum(out, details.ageGroup);
+        writeEnum(out, details.education);
+        writeString(out, details.interests);
+      }
+    });
+  }
+
+  private static <E extends Enum<E>> E readEnum(DataInputStream in, Class<E> type) throws IOException
+  {
+    final String name = readString(in);
+    if (name == null)
+    {
+      return null;
+    }
+    try
+    {
+      return Enum.valueOf(type, name);
+    }
+    catch (IllegalArgumentException e)
+    {
+      Log.i(CORONA_LOG_TAG, "WARNING: inMobi ignored the stored " + type.getSimpleName() + " " + name + ", unknown to this InMobi SDK");
+      return null;
+    }
+  }
+
+  private static void writeEnum(DataOutputStream out, Enum<?> value) throws IOException
+  {
+    writeString(out, value != null ? value.name() : null);
+  }
+
+  private static String readString(DataInputStream in) throws IOException
+  {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException
+  {
+    out.writeBoolean(value != null);
+    if (value != null)
+    {
+      out.writeUTF(value);
+    }
+  }
+}
@@ -0,0 +1,188 @@
+//
+//  TimerWheel.java
+//  inMobi Plugin
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.inMobi;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+/**
+ * A hashed timer wheel driven by one task on a Handler.
+ * <p>
+ * Timeouts are bucketed by tick, so many placements expiring around the same time cost one
+ * Handler message instead of one each. The wheel sleeps until the tick of its earliest timeout
+ * rather than waking up every tick, and doesn't run at all while it holds no timeouts.
+ * UI thread only.
+ */
+final class TimerWheel
+{
+  // A timeout that can be scheduled on the wheel
+  abstract static class Timeout
+  {
+    // When the timeout is due, in SystemClock.uptimeMillis() time (it fires on the tick containing it)
+    long deadline;
+    private Timeout fPrev;
+    private Timeout fNext;
+    private int fBucket = -1;
+    // The tick the timeout fires on
+    private long fDueTick;
+
+    boolean isScheduled()
+    {
+      return fBucket >= 0;
+    }
+
+    // Called on the UI thread once the deadline has passed
+    abstract void expire();
+  }
+
+  private static final int kBucketCount = 64;
+  // The extra list holding the timeouts due on the current tick while they fire
+  private static final int kDueList = kBucketCount;
+
+  private final Handler fHandler;
+  private final long fTickMs;
+  private final Timeout[] fBuckets = new Timeout[kBucketCount + 1];
+  private int fCount = 0;
+  private boolean fTicking = false;
+  // The tick the pending task runs on
+  private long fNextTick = 0;
+  // The last tick whose bucket has been processed
+  private long fLastTick = 0;
+
+  private final Runnable fTick = new Runnable() {
+    @Override
+    public void run() {
+      fTicking = false;
+      tick(SystemClock.uptimeMillis());
+    }
+  };
+
+  TimerWheel(final Handler handler, final long tickMs)
+  {
+    fHandler = handler;
+    fTickMs = tickMs;
+  }
+
+  // Schedule (or reschedule) a timeout
+  void schedule(final Timeout timeout, final long deadline)
+  {
+    cancel(timeout);
+
+    // Never file a timeout under a tick that has already been processed
+    if (!fTicking) {
+      fLastTick = SystemClock.uptimeMillis() / fTickMs;
+    }
+    final long tick = Math.max(deadline / fTickMs, fLastTick + 1);
+
+    timeout.deadline = deadline;
+    timeout.fDueTick = tick;
+    link(timeout, (int)(tick % kBucketCount));
+    fCount++;
+
+    // Wake up earlier if this timeout is due before the pending tick
+    if (!fTicking || tick < fNextTick) {
+      postTick(tick);
+    }
+  }
+
+  // Remove a timeout if it is scheduled
+  void cancel(final Timeout timeout)
+  {
+    if (!timeout.isScheduled()) {
+      return;
+    }
+
+    if (timeout.fPrev != null) {
+      timeout.fPrev.fNext = timeout.fNext;
+    }
+    else {
+      fBuckets[timeout.fBucket] = timeout.fNext;
+    }
+    if (timeout.fNext != null) {
+      timeout.fNext.fPrev = timeout.fPrev;
+    }
+    timeout.fPrev = null;
+    timeout.fNext = null;
+    timeout.fBucket = -1;
+    fCount--;
+  }
+
+  // Drop every timeout and stop ticking
+  void clear()
+  {
+    for (int i = 0; i < fBuckets.length; i++) {
+      while (fBuckets[i] != null) {
+        cancel(fBuckets[i]);
+      }
+    }
+    fHandler.removeCallbacks(fTick);
+    fTicking = false;
+  }
+
+  private void link(final Timeout timeout, final int bucket)
+  {
+    timeout.fBucket = bucket;
+    timeout.fPrev = null;
+    timeout.fNext = fBuckets[bucket];
+    if (timeout.fNext != null) {
+      timeout.fNext.fPrev = timeout;
+    }
+    fBuckets[bucket] = timeout;
+  }
+
+  private void postTick(final long tick)
+  {
+    fHandler.removeCallbacks(fTick);
+    fTicking = true;
+    fNextTick = tick;
+    fHandler.postAtTime(fTick, tick * fTickMs);
+  }
+
+  private void tick(final long now)
+  {
+    final long current = now / fTickMs;
+    // Process every bucket passed since the last tick, at most one full turn
+    final long from = Math.max(fLastTick + 1, current - kBucketCount + 1);
+
+    // Move the due timeouts to the due list first, so that expire() can cancel or reschedule any of them
+    for (long t = from; t <= current; t++) {
+      // Timeouts further out than one turn of the wheel stay in their bucket until their turn comes round
+      Timeout timeout = fBuckets[(int)(t % kBucketCount)];
+      while (timeout != null) {
+        final Timeout next = timeout.fNext;
+        if (timeout.fDueTick <= current) {
+          cancel(timeout);
+          link(timeout, kDueList);
+          fCount++;
+        }
+        timeout = next;
+      }
+    }
+    fLastTick = current;
+
+    // Fire the due timeouts still linked, one at a time
+    while (fBuckets[kDueList] != null) {
+      final Timeout timeout = fBuckets[kDueList];
+      cancel(timeout);
+      timeout.expire();
+    }
+
+    // Sleep until the earliest remaining timeout is due (this replaces any tick posted by expire())
+    if (fCount > 0) {
+      long earliest = Long.MAX_VALUE;
+      for (int i = 0; i < kBucketCount; i++) {
+        for (Timeout timeout = fBuckets[i]; timeout != null; timeout = timeout.fNext) {
+          earliest = Math.min(earliest, timeout.fDueTick);
+        }
+      }
+      postTick(Math.max(earliest, current + 1));
+    }
+  }
+}
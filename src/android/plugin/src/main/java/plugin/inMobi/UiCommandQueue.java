@@ -0,0 +1,290 @@
+//
+//  UiCommandQueue.java
+//  inMobi Plugin
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.inMobi;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import android.os.Handler;
+
+/**
+ * Carries load, show and hide calls from the Lua thread to the UI thread.
+ * <p>
+ * Calls made in a burst are drained by one posted task instead of one message each. Banner calls
+ * that cancel each other out are merged before they run: a show followed by a hide only hides,
+ * repeated shows keep the last one, and repeated hides keep the first one. Calls are queued from
+ * any thread and run on the UI thread in the order they were made. Commands are recycled through a
+ * free list like {@link AdEventPool}'s, so queueing a call doesn't allocate once the queue has warmed up.
+ */
+final class UiCommandQueue
+{
+  enum Kind
+  {
+    LOAD,
+    SHOW,
+    HIDE
+  }
+
+  // Tells the queue which placements hold banners (called on the UI thread)
+  interface BannerLookup
+  {
+    boolean isBanner(String placementId);
+  }
+
+  private static final class Command
+  {
+    Kind kind;
+    // null for a load of several placements
+    String placementId;
+    Runnable action;
+    // Link used by the pending stack and the free list
+    Command next;
+    // The previous command kept for the same placement in this drain
+    Command previous;
+    boolean merged;
+  }
+
+  // The maximum number of idle commands kept around
+  private static final int kMaxIdle = 32;
+
+  private final Handler fHandler;
+  private final BannerLookup fBannerLookup;
+  // Commands waiting for the next drain, newest first
+  private final AtomicReference<Command> fPending = new AtomicReference<>();
+  private final AtomicBoolean fDrainScheduled = new AtomicBoolean(false);
+  // The last command kept per placement while merging, a burst only touches a few (UI thread only)
+  private String[] fLastIds = new String[8];
+  private Command[] fLastCommands = new Command[8];
+  private int fLastCount;
+  private Command fFree;
+  private int fFreeCount;
+
+  // Counters, read by inMobi.getEventBatchStats()
+  private volatile long fQueued;
+  private volatile long fDrains;
+  private volatile long fMerged;
+
+  private final Runnable fDrainTask = new Runnable() {
+    @Override
+    public void run() {
+      drain();
+    }
+  };
+
+  UiCommandQueue(final Handler handler, final BannerLookup bannerLookup)
+  {
+    fHandler = handler;
+    fBannerLookup = bannerLookup;
+  }
+
+  // Queue a call, placementId is null for a call covering several placements
+  void enqueue(final Kind kind, final String placementId, final Runnable action)
+  {
+    final Command command = acquire();
+    command.kind = kind;
+    command.placementId = placementId;
+    command.action = action;
+    Command head;
+    do {
+      head = fPending.get();
+      command.next = head;
+    } while (!fPending.compareAndSet(head, command));
+    fQueued++;
+
+    if (fDrainScheduled.compareAndSet(false, true)) {
+      fHandler.post(fDrainTask);
+    }
+  }
+
+  // Drop every queued call
+  void clear()
+  {
+    Command command = fPending.getAndSet(null);
+    while (command != null) {
+      final Command next = command.next;
+      release(command);
+      command = next;
+    }
+  }
+
+  long queuedCount()
+  {
+    return fQueued;
+  }
+
+  long drainCount()
+  {
+    return fDrains;
+  }
+
+  long mergedCount()
+  {
+    return fMerged;
+  }
+
+  private void drain()
+  {
+    // Calls queued from here on get a drain of their own
+    fDrainScheduled.set(false);
+    Command command = fPending.getAndSet(null);
+    if (command == null) {
+      return;
+    }
+
+    // Put the commands back in call order
+    Command first = null;
+    while (command != null) {
+      final Command next = command.next;
+      command.next = first;
+      first = command;
+      command = next;
+    }
+
+    merge(first);
+    fDrains++;
+
+    for (command = first; command != null;) {
+      final Command next = command.next;
+      if (!command.merged) {
+        command.action.run();
+      }
+      release(command);
+      command = next;
+    }
+  }
+
+  // Get a command, allocating only when the free list is empty
+  private Command acquire()
+  {
+    synchronized (this) {
+      final Command command = fFree;
+      if (command != null) {
+        fFree = command.next;
+        command.next = null;
+        fFreeCount--;
+        return command;
+      }
+    }
+
+    return new Command();
+  }
+
+  private void release(final Command command)
+  {
+    command.kind = null;
+    command.placementId = null;
+    command.action = null;
+    command.previous = null;
+    command.merged = false;
+
+    synchronized (this) {
+      if (fFreeCount < kMaxIdle) {
+        command.next = fFree;
+        fFree = command;
+        fFreeCount++;
+      }
+      else {
+        command.next = null;
+      }
+    }
+  }
+
+  // Mark the banner calls that are cancelled out by later calls in the same drain
+  private void merge(final Command first)
+  {
+    long merged = 0;
+
+    for (Command command = first; command != null; command = command.next) {
+      if (command.kind == Kind.LOAD) {
+        // A load changes what later calls act on, don't merge across it
+        if (command.placementId != null) {
+          forgetLast(lastIndex(command.placementId));
+        }
+        else {
+          clearLast();
+        }
+        continue;
+      }
+
+      final int index = lastIndex(command.placementId);
+      Command previous = index >= 0 ? fLastCommands[index] : null;
+      if (previous != null && fBannerLookup.isBanner(command.placementId)) {
+        if (previous.kind == Kind.SHOW) {
+          // A hide or a newer show supersedes the show
+          previous.merged = true;
+          merged++;
+          previous = previous.previous;
+        }
+        if (previous != null && previous.kind == Kind.HIDE && command.kind == Kind.HIDE) {
+          // The banner is already hidden
+          command.merged = true;
+          merged++;
+          fLastCommands[index] = previous;
+          continue;
+        }
+      }
+
+      command.previous = previous;
+      if (index >= 0) {
+        fLastCommands[index] = command;
+      }
+      else {
+        addLast(command);
+      }
+    }
+
+    clearLast();
+    if (merged > 0) {
+      fMerged += merged;
+    }
+  }
+
+  // Where the last command kept for a placement is, -1 if there is none
+  private int lastIndex(final String placementId)
+  {
+    for (int i = 0; i < fLastCount; i++) {
+      if (fLastIds[i].equals(placementId)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private void addLast(final Command command)
+  {
+    if (fLastCount == fLastIds.length) {
+      fLastIds = Arrays.copyOf(fLastIds, fLastCount * 2);
+      fLastCommands = Arrays.copyOf(fLastCommands, fLastCount * 2);
+    }
+    fLastIds[fLastCount] = command.placementId;
+    fLastCommands[fLastCount] = command;
+    fLastCount++;
+  }
+
+  private void forgetLast(final int index)
+  {
+    if (index < 0) {
+      return;
+    }
+    fLastCount--;
+    fLastIds[index] = fLastIds[fLastCount];
+    fLastCommands[index] = fLastCommands[fLastCount];
+    fLastIds[fLastCount] = null;
+    fLastCommands[fLastCount] = null;
+  }
+
+  private void clearLast()
+  {
+    Arrays.fill(fLastIds, 0, fLastCount, null);
+    Arrays.fill(fLastCommands, 0, fLastCount, null);
+    fLastCount = 0;
+  }
+}
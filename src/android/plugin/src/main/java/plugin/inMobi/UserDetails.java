@@ -0,0 +1,357 @@
+//
+//  UserDetails.java
+//  inMobi Plugin
+//
+//  Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.inMobi;
+
+import java.util.HashMap;
+import java.util.Locale;
+
+import android.util.Log;
+
+import com.inmobi.sdk.InMobiSdk;
+import com.inmobi.sdk.InMobiSdk.AgeGroup;
+import com.inmobi.sdk.InMobiSdk.Education;
+import com.inmobi.sdk.InMobiSdk.Gender;
+import com.naef.jnlua.LuaState;
+import com.naef.jnlua.LuaType;
+
+/**
+ * A snapshot of the targeting values given to inMobi.setUserDetails().
+ * <p>
+ * Each call is read on top of the last applied snapshot, and only the values that changed are
+ * sent to the SDK. Unset values are null (or 0 for numbers). A snapshot isn't changed once it has
+ * been applied, so applied snapshots can be handed between threads.
+ */
+final class UserDetails
+{
+  // Corona log tag name
+  private static final String CORONA_LOG_TAG = "Corona";
+
+  // Lua values to SDK values, keyed by the lower case Lua value
+  private static final HashMap<String, Gender> kGenders = new HashMap<>();
+  private static final HashMap<String, AgeGroup> kAgeGroups = new HashMap<>();
+  private static final HashMap<String, Education> kEducations = new HashMap<>();
+  private static final HashMap<String, String> kInterests = new HashMap<>();
+
+  static
+  {
+    kGenders.put("male", Gender.MALE);
+    kGenders.put("female", Gender.FEMALE);
+
+    kAgeGroups.put("below18", AgeGroup.BELOW_18);
+    kAgeGroups.put("18to24", AgeGroup.BETWEEN_18_AND_24);
+    kAgeGroups.put("25to29", AgeGroup.BETWEEN_25_AND_29);
+    kAgeGroups.put("30to34", AgeGroup.BETWEEN_30_AND_34);
+    kAgeGroups.put("35to44", AgeGroup.BETWEEN_35_AND_44);
+    kAgeGroups.put("45to54", AgeGroup.BETWEEN_45_AND_54);
+    kAgeGroups.put("55to65", AgeGroup.BETWEEN_55_AND_65);
+    kAgeGroups.put("above65", AgeGroup.ABOVE_65);
+
+    kEducations.put("highschoolorless", Education.HIGH_SCHOOL_OR_LESS);
+    kEducations.put("collegeorgraduate", Education.COLLEGE_OR_GRADUATE);
+    kEducations.put("graduateorabove", Education.POST_GRADUATE_OR_ABOVE);
+
+    for (String interest : new String[] {"Business", "Tech", "Travel", "Shopping", "Entertainment", "Fashion", "Fitness", "Foodie", "Gamer", "Jobs", "Sports"}) {
+      kInterests.put(interest.toLowerCase(Locale.US), interest);
+    }
+  }
+
+  Gender gender;
+  String postCode;
+  String areaCode;
+  String language;
+  int birthYear;
+  int age;
+  AgeGroup ageGroup;
+  Education education;
+  // Comma separated
+  String interests;
+
+  UserDetails copy()
+  {
+    final UserDetails copy = new UserDetails();
+    copy.gender = gender;
+    copy.postCode = postCode;
+    copy.areaCode = areaCode;
+    copy.language = language;
+    copy.birthYear = birthYear;
+    copy.age = age;
+    copy.ageGroup = ageGroup;
+    copy.education = education;
+    copy.interests = interests;
+    return copy;
+  }
+
+  // A copy of the given snapshot with the values set in this one on top
+  UserDetails over(final UserDetails base)
+  {
+    final UserDetails details = base.copy();
+    if (gender != null)
+    {
+      details.gender = gender;
+    }
+    if (postCode != null)
+    {
+      details.postCode = postCode;
+    }
+    if (areaCode != null)
+    {
+      details.areaCode = areaCode;
+    }
+    if (language != null)
+    {
+      details.language = language;
+    }
+    if (birthYear != 0)
+    {
+      details.birthYear = birthYear;
+    }
+    if (age != 0)
+    {
+      details.age = age;
+    }
+    if (ageGroup != null)
+    {
+      details.ageGroup = ageGroup;
+    }
+    if (education != null)
+    {
+      details.education = education;
+    }
+    if (interests != null)
+    {
+      details.interests = interests;
+    }
+    return details;
+  }
+
+  // Read the options table at the given stack index on top of a copy of this snapshot, null if a value is invalid
+  UserDetails merge(LuaState L, int index)
+  {
+    final UserDetails details = copy();
+
+    // Keep addressing the table correctly while values are pushed above it
+    index = L.absIndex(index);
+
+    // One pass over the table (the value is at -1 and the key at -2)
+    L.pushNil();
+    while (L.next(index))
+    {
+      if (L.type(-2) == LuaType.STRING && !details.read(L, L.toString(-2)))
+      {
+        L.pop(2);
+        return null;
+      }
+      L.pop(1);
+    }
+
+    return details;
+  }
+
+  // Read the value at the top of the stack into the given field, returns false if it is invalid
+  private boolean read(LuaState L, final String key)
+  {
+    final LuaType type = L.type(-1);
+
+    switch (key)
+    {
+      case "gender":
+        if (type == LuaType.STRING)
+        {
+          final Gender value = kGenders.get(L.toString(-1).toLowerCase(Locale.US));
+          if (value != null)
+          {
+            gender = value;
+          }
+        }
+        break;
+
+      case "postCode":
+        if (type == LuaType.STRING)
+        {
+          postCode = L.toString(-1);
+          if (postCode.length() == 0)
+          {
+            Log.i(CORONA_LOG_TAG, "ERROR: inMobi.setUserDetails(options) options.postCode (string) must not be empty. (eg. '24533')");
+            return false;
+          }
+        }
+        break;
+
+      case "phoneAreaCode":
+        if (type == LuaType.STRING)
+        {
+          areaCode = L.toString(-1);
+          if (areaCode.length() == 0)
+          {
+            Log.i(CORONA_LOG_TAG, "ERROR: inMobi.setUserDetails(options) options.phoneAreaCode (string) must not be empty. (eg. '353')");
+            return false;
+          }
+        }
+        break;
+
+      case "language":
+        if (type == LuaType.STRING)
+        {
+          language = L.toString(-1);
+          if (language.length() == 0)
+          {
+            Log.i(CORONA_LOG_TAG, "ERROR: inMobi.setUserDetails(options) options.language (string) must not be empty. (eg. 'eng')");
+            return false;
+          }
+        }
+        break;
+
+      case "birthYear":
+        if (type == LuaType.NUMBER)
+        {
+          birthYear = (int)L.toNumber(-1);
+          if (String.valueOf(birthYear).length() != 4)
+          {
+            Log.i(CORONA_LOG_TAG, "ERROR: inMobi.setUserDetails(options) options.birthYear (number) must be a number with at least 4 digits (eg. 1991)");
+            return false;
+          }
+        }
+        break;
+
+      case "age":
+        if (type == LuaType.NUMBER)
+        {
+          age = (int)L.toNumber(-1);
+          if (age < 1)
+          {
+            Log.i(CORONA_LOG_TAG, "ERROR: inMobi.setUserDetails(options) options.age (number) must be equal to, or greater than 1 (years old). (eg. 25)");
+            return false;
+          }
+        }
+        break;
+
+      case "ageGroup":
+        if (type == LuaType.STRING)
+        {
+          final String value = L.toString(-1);
+          if (value.length() == 0)
+          {
+            Log.i(CORONA_LOG_TAG, "ERROR: inMobi.setUserDetails(options) options.ageGroup (string) must not be empty. (eg. '18AndUnder')");
+            return false;
+          }
+          // Unknown age groups default to below 18
+          final AgeGroup group = kAgeGroups.get(value.toLowerCase(Locale.US));
+          ageGroup = group != null ? group : AgeGroup.BELOW_18;
+        }
+        break;
+
+      case "education":
+        if (type == LuaType.STRING)
+        {
+          final String value = L.toString(-1);
+          if (value.length() == 0)
+          {
+            Log.i(CORONA_LOG_TAG, "ERROR: inMobi.setUserDetails(options) options.education (string) must not be empty. (eg. 'highSchoolOrLess')");
+            return false;
+          }
+          // Unknown educations default to high school or less
+          final Education level = kEducations.get(value.toLowerCase(Locale.US));
+          education = level != null ? level : Education.HIGH_SCHOOL_OR_LESS;
+        }
+        break;
+
+      case "userInterests":
+        if (type == LuaType.TABLE)
+        {
+          final StringBuilder builder = new StringBuilder();
+          final int count = L.length(-1);
+          for (int i = 1; i <= count; i++)
+          {
+            L.rawGet(-1, i);
+            if (L.type(-1) == LuaType.STRING)
+            {
+              final String interest = L.toString(-1);
+              if (!kInterests.containsKey(interest.toLowerCase(Locale.US)))
+              {
+                Log.i(CORONA_LOG_TAG, "ERROR: inMobi.setUserDetails(options) options.userInterests - found invalid user interest");
+                L.pop(1);
+                return false;
+              }
+              if (builder.length() > 0)
+              {
+                builder.append(',');
+              }
+              builder.append(interest);
+            }
+            L.pop(1);
+          }
+          if (builder.length() > 1)
+          {
+            interests = builder.toString();
+          }
+        }
+        break;
+
+      default:
+        break;
+    }
+
+    return true;
+  }
+
+  // Send the values that differ from the previous snapshot to the SDK, returns how many were sent
+  int applyChanges(final UserDetails previous)
+  {
+    int changes = 0;
+
+    if (gender != null && gender != previous.gender)
+    {
+      InMobiSdk.setGender(gender);
+      changes++;
+    }
+    if (postCode != null && !postCode.equals(previous.postCode))
+    {
+      InMobiSdk.setPostalCode(postCode);
+      changes++;
+    }
+    if (areaCode != null && !areaCode.equals(previous.areaCode))
+    {
+      InMobiSdk.setAreaCode(areaCode);
+      changes++;
+    }
+    if (language != null && !language.equals(previous.language))
+    {
+      InMobiSdk.setLanguage(language);
+      changes++;
+    }
+    if (birthYear != 0 && birthYear != previous.birthYear)
+    {
+      InMobiSdk.setYearOfBirth(birthYear);
+      changes++;
+    }
+    if (age != 0 && age != previous.age)
+    {
+      InMobiSdk.setAge(age);
+      changes++;
+    }
+    if (ageGroup != null && ageGroup != previous.ageGroup)
+    {
+      InMobiSdk.setAgeGroup(ageGroup);
+      changes++;
+    }
+    if (education != null && education != previous.education)
+    {
+      InMobiSdk.setEducation(education);
+      changes++;
+    }
+    if (interests != null && !interests.equals(previous.interests))
+    {
+      InMobiSdk.setInterests(interests);
+      changes++;
+    }
+
+    return changes;
+  }
+}